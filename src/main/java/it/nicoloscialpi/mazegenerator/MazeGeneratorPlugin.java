@@ -1,11 +1,17 @@
 package it.nicoloscialpi.mazegenerator;
 
 import it.nicoloscialpi.mazegenerator.command.MazeCommand;
+import it.nicoloscialpi.mazegenerator.loadbalancer.SchedulerBackend;
+import it.nicoloscialpi.mazegenerator.maze.BuildCheckpoint;
+import it.nicoloscialpi.mazegenerator.maze.CheckpointStore;
+import it.nicoloscialpi.mazegenerator.maze.MappedWordStore;
+import it.nicoloscialpi.mazegenerator.maze.MazeStreamPlacer;
 import it.nicoloscialpi.mazegenerator.themes.ThemeConfigurationReader;
 
 import it.nicoloscialpi.mazegenerator.themes.Themes;
 import org.bukkit.plugin.java.JavaPlugin;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -17,6 +23,8 @@ public final class MazeGeneratorPlugin extends JavaPlugin {
     public void onEnable() {
         plugin = this;
         saveDefaultConfig();
+        SchedulerBackend backend = SchedulerBackend.select(this);
+        getLogger().info("Scheduling backend: " + (backend.isRegionized() ? "Folia regions" : "main thread"));
         // Register command executor and tab-completer
         MazeCommand mazeCommand = new MazeCommand(this);
         Objects.requireNonNull(getCommand("maze")).setExecutor(mazeCommand);
@@ -28,12 +36,20 @@ public final class MazeGeneratorPlugin extends JavaPlugin {
             getLogger().info("Theme found: " + s);
         });
         MessageFileReader.read(this, "messages.yml");
+        // Grid files of builds interrupted by a crash or an unclean shutdown
+        MappedWordStore.deleteStale(MazeStreamPlacer.gridDirectory());
+        MazeStreamPlacer.deleteStaleSpillFiles();
+        List<BuildCheckpoint> interrupted = CheckpointStore.loadAll();
+        if (!interrupted.isEmpty()) {
+            getLogger().info(interrupted.size() + " interrupted maze build(s) can be continued with /maze resume");
+        }
     }
 
     @Override
     public void onDisable() {
-        // Cancel tasks and unregister listeners
-        getServer().getScheduler().cancelTasks(this);
+        // Keep running builds resumable, then cancel tasks and unregister listeners
+        it.nicoloscialpi.mazegenerator.loadbalancer.LoadBalancer.suspendAll();
+        SchedulerBackend.current().cancelAll();
         it.nicoloscialpi.mazegenerator.loadbalancer.LoadBalancer.shutdown();
     }
 
@@ -1,19 +1,28 @@
 package it.nicoloscialpi.mazegenerator.command;
 
 import it.nicoloscialpi.mazegenerator.MessageFileReader;
+import it.nicoloscialpi.mazegenerator.loadbalancer.AsyncJobPipeline;
+import it.nicoloscialpi.mazegenerator.loadbalancer.JobProducer;
 import it.nicoloscialpi.mazegenerator.loadbalancer.LoadBalancer;
+import it.nicoloscialpi.mazegenerator.maze.BuildCheckpoint;
+import it.nicoloscialpi.mazegenerator.maze.CheckpointStore;
+import it.nicoloscialpi.mazegenerator.maze.MazeAlgorithmType;
 import it.nicoloscialpi.mazegenerator.maze.MazeStreamPlacer;
 import it.nicoloscialpi.mazegenerator.themes.Theme;
 import it.nicoloscialpi.mazegenerator.themes.Themes;
+import it.nicoloscialpi.mazegenerator.undo.UndoJournal;
+import it.nicoloscialpi.mazegenerator.undo.UndoProducer;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.command.*;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.*;
 
 public class MazeCommand implements CommandExecutor, TabCompleter {
@@ -24,12 +33,18 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
             "cellSize","wallHeight",
             "hasExits","additionalExits",
             "hasRoom","roomSizeX","roomSizeZ",
-            "erosion","closed","hollow","themeName"
+            "erosion","closed","hollow","themeName",
+            "seed","algorithm","priority"
     );
+    private static final List<String> ALGORITHMS = MazeAlgorithmType.keys();
     private static final List<String> SUBCOMMANDS = Arrays.asList(
-            "stop", "confirm", "cancel", "status", "help", "reload"
+            "stop", "confirm", "cancel", "status", "help", "reload", "resume", "undo"
     );
 
+    // Let a sender resume or undo builds other players (or the console) started, not just their own
+    private static final String RESUME_OTHERS = "mazegenerator.resume.others";
+    private static final String UNDO_OTHERS = "mazegenerator.undo.others";
+
     private final JavaPlugin plugin;
     private static final Map<UUID, PendingBuild> PENDING = new HashMap<>();
 
@@ -44,6 +59,9 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
         boolean hasRoom = false; int roomSizeX = 3, roomSizeZ = 3;
         double erosion = 0.0; boolean closed = false; boolean hollow = false;
         String themeName = "desert";
+        long seed = java.util.concurrent.ThreadLocalRandom.current().nextLong();
+        String algorithm = "backtracker";
+        int priority = 0;
     }
 
     private MazeOptions parseOptions(CommandSender sender, String[] args) {
@@ -71,15 +89,32 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
         p.getString("themeName").ifPresent(v -> opt.themeName = v.toLowerCase(Locale.ROOT));
         p.getBool("closed").ifPresent(v -> opt.closed = v);
         p.getBool("hollow").ifPresent(v -> opt.hollow = v);
+        p.getString("seed").ifPresent(v -> opt.seed = parseSeed(v));
+        p.getString("algorithm").ifPresent(v -> opt.algorithm = v.toLowerCase(Locale.ROOT));
+        p.getInt("priority").ifPresent(v -> opt.priority = v);
         return opt;
     }
 
+    // Numeric seeds are used as-is; any other text (e.g. seed:spawn-maze) is hashed so it is still reproducible
+    private static long parseSeed(String raw) {
+        try {
+            return Long.parseLong(raw);
+        } catch (NumberFormatException e) {
+            long h = 1125899906842597L;
+            for (int i = 0; i < raw.length(); i++) {
+                h = 31 * h + raw.charAt(i);
+            }
+            return h;
+        }
+    }
+
     private record PendingBuild(MazeOptions options, Theme theme, Location origin) {}
 
     private Optional<String> validate(MazeOptions o, CommandSender sender) {
         if (o.mazeSizeX < 1 || o.mazeSizeZ < 1) return Optional.of("Invalid maze size");
         if (o.cellSize < 1 || o.wallHeight < 1) return Optional.of("Invalid cellSize/wallHeight");
         if (o.erosion < 0.0 || o.erosion > 1.0) return Optional.of("Erosion must be in [0,1]");
+        if (o.priority < 0) return Optional.of("Priority must be 0 or more");
         World w = sender.getServer().getWorld(o.world);
         if (w == null) return Optional.of("World not found: " + o.world);
         int minY = w.getMinHeight();
@@ -88,6 +123,9 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
             int maxBaseY = maxY - o.wallHeight;
             return Optional.of("Y is out of build range for this world (allowed " + minY + ".." + maxBaseY + ")");
         }
+        if (!ALGORITHMS.contains(o.algorithm)) {
+            return Optional.of("Unknown algorithm: " + o.algorithm + " (use one of " + String.join(", ", ALGORITHMS) + ")");
+        }
         if (Themes.getThemes() == null || !Themes.getThemes().containsKey(o.themeName)) {
             return Optional.of("Unknown theme: " + o.themeName);
         }
@@ -116,6 +154,10 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
                     return handleHelp(sender);
                 case "reload":
                     return handleReload(sender);
+                case "resume":
+                    return handleResume(sender, args);
+                case "undo":
+                    return handleUndo(sender, args);
                 default:
                     break;
             }
@@ -124,27 +166,66 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
         return handleGeneration(sender, args);
     }
 
-    private void startBuild(CommandSender sender, MazeOptions opt, Theme theme, Location origin) {
+    /**
+     * @return false if the build could not be set up, which has been reported to the sender
+     */
+    private boolean startBuild(CommandSender sender, MazeOptions opt, Theme theme, Location origin) {
         if (sender instanceof Player p) {
             MazePreviewer.stopPreview(p);
         }
-        MazeStreamPlacer streamPlacer = new MazeStreamPlacer(
-                theme,
-                origin,
-                opt.wallHeight,
-                opt.cellSize,
-                opt.closed,
-                opt.hollow,
-                opt.mazeSizeX,
-                opt.mazeSizeZ,
-                opt.additionalExits,
-                opt.erosion,
-                opt.hasRoom,
-                opt.roomSizeX,
-                opt.roomSizeZ,
-                opt.hasExits
-        );
-        LoadBalancer lb = new LoadBalancer(plugin, sender, streamPlacer);
+        MazeStreamPlacer streamPlacer;
+        try {
+            if (plugin.getConfig().getBoolean("checkpoints.enabled", true)) {
+                BuildCheckpoint checkpoint = new BuildCheckpoint(UUID.randomUUID(),
+                        sender instanceof Player p ? p.getUniqueId() : null, origin.getWorld().getUID(),
+                        origin.getBlockX(), origin.getBlockY(), origin.getBlockZ(), opt.themeName, opt.wallHeight,
+                        opt.cellSize, opt.closed, opt.hollow, opt.mazeSizeX, opt.mazeSizeZ, opt.additionalExits,
+                        opt.erosion, opt.hasRoom, opt.roomSizeX, opt.roomSizeZ, opt.hasExits, opt.seed, opt.algorithm,
+                        opt.priority, null, 0);
+                streamPlacer = new MazeStreamPlacer(theme, origin, checkpoint);
+            } else {
+                streamPlacer = new MazeStreamPlacer(
+                        theme,
+                        origin,
+                        opt.wallHeight,
+                        opt.cellSize,
+                        opt.closed,
+                        opt.hollow,
+                        opt.mazeSizeX,
+                        opt.mazeSizeZ,
+                        opt.additionalExits,
+                        opt.erosion,
+                        opt.hasRoom,
+                        opt.roomSizeX,
+                        opt.roomSizeZ,
+                        opt.hasExits,
+                        opt.seed,
+                        opt.algorithm,
+                        sender instanceof Player p ? p.getUniqueId() : null
+                );
+            }
+        } catch (RuntimeException | OutOfMemoryError e) {
+            reportStartFailure(sender, e);
+            return false;
+        }
+        sender.sendMessage("Maze seed: " + opt.seed + " (reuse with seed:" + opt.seed + ")");
+        runBuild(sender, streamPlacer, opt.priority);
+        return true;
+    }
+
+    // The placer has already released whatever it had set up when its constructor throws
+    private void reportStartFailure(CommandSender sender, Throwable e) {
+        sender.sendMessage("Could not start the maze: " + e.getMessage());
+        plugin.getLogger().log(java.util.logging.Level.WARNING, "Cannot start maze build", e);
+    }
+
+    private void runBuild(CommandSender sender, JobProducer source, int priority) {
+        JobProducer producer = source;
+        ConfigurationSection async = plugin.getConfig().getConfigurationSection("async-generation");
+        if (async != null && async.getBoolean("enabled", true)) {
+            producer = new AsyncJobPipeline(source, async.getInt("low-watermark", 64), async.getInt("high-watermark", 512));
+        }
+        LoadBalancer lb = new LoadBalancer(plugin, sender, producer, priority);
         lb.start();
     }
 
@@ -152,7 +233,7 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
         String[] lines = new String[]{
                 "--- MazeGenerator Help ---",
                 "Usage: /maze key:value [key:value ...]",
-                "Subcommands: /maze help, /maze stop, /maze status, /maze confirm, /maze cancel, /maze reload",
+                "Subcommands: /maze help, /maze stop, /maze status, /maze confirm, /maze cancel, /maze reload, /maze resume, /maze undo",
                 "",
                 "Core keys:",
                 "  x,y,z,world          -> placement origin",
@@ -162,6 +243,9 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
                 "  erosion              -> 0..1 occasional holes",
                 "  closed,hollow        -> roof over paths / shell walls",
                 "  themeName            -> theme from themes.yml",
+                "  seed                 -> number or text; same seed + options = same maze",
+                "  algorithm            -> backtracker (default), tiled, eller, kruskal, growingtree",
+                "  priority             -> share of the build budget vs other builds (0 = your permission weight)",
                 "",
                 "Examples:",
                 "  /maze mazeSizeX:51 mazeSizeZ:51 cellSize:2 wallHeight:4 themeName:forest",
@@ -172,6 +256,8 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
                 "  - Use hollow:true and larger cellSize to reduce blocks",
                 "  - Tweak config.yml (millis-per-tick, jobs-batch-cells, max-blocks-per-job) to protect TPS",
                 "  - /maze stop cancels active builds; /maze status shows progress",
+                "  - /maze resume lists builds interrupted by a restart; /maze resume <id> continues one",
+                "  - /maze undo restores what the latest maze replaced; /maze undo list shows older ones",
                 "  - /maze reload reloads config, messages, themes"
         };
         for (String line : lines) sender.sendMessage(line);
@@ -179,8 +265,21 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
 
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
-        List<String> suggestions = new ArrayList<>(ACCEPTABLE_ARGS);
         String last = args.length > 0 ? args[args.length - 1] : "";
+        if (args.length == 2 && args[0].equalsIgnoreCase("resume")) {
+            List<String> ids = new ArrayList<>();
+            CheckpointStore.cached().stream().filter(c -> mayActOn(sender, c.owner(), RESUME_OTHERS))
+                    .forEach(c -> ids.add(c.id().toString().substring(0, 8)));
+            return ids;
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("undo")) {
+            List<String> ids = new ArrayList<>();
+            ids.add("list");
+            UndoJournal.cached().stream().filter(j -> mayActOn(sender, j.owner(), UNDO_OTHERS))
+                    .forEach(j -> ids.add(j.id().toString().substring(0, 8)));
+            return ids;
+        }
+        List<String> suggestions = new ArrayList<>(ACCEPTABLE_ARGS);
 
         for (String a : args) {
             String[] kv = a.split(":", 2);
@@ -222,6 +321,16 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
                     suggestions.add("wallHeight:3");
                     suggestions.add("wallHeight:4");
                     break;
+                case "algorithm":
+                    ALGORITHMS.forEach(a -> suggestions.add("algorithm:" + a));
+                    break;
+                case "seed":
+                    suggestions.add("seed:" + java.util.concurrent.ThreadLocalRandom.current().nextLong());
+                    break;
+                case "priority":
+                    suggestions.add("priority:1");
+                    suggestions.add("priority:4");
+                    break;
                 default:
                     break;
             }
@@ -285,7 +394,11 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
         if (lb == null) {
             sender.sendMessage("No active maze for you right now.");
         } else {
-            sender.sendMessage(String.format("Maze progress: %.2f%% (budget %dms)", lb.getProgressPercentage(), lb.getCurrentMillisPerTick()));
+            sender.sendMessage(String.format("Maze progress: %.2f%% (budget %.1f of %.1fms, weight %d)", lb.getProgressPercentage(),
+                    lb.getShareMillis(), lb.getBudgetMillis(), lb.getWeight()));
+            if (lb.getStats() != null) {
+                sender.sendMessage("Placement " + lb.getStats().summary());
+            }
         }
         return true;
     }
@@ -307,6 +420,136 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    /**
+     * {@code /maze resume} lists checkpointed builds that are not running; {@code /maze resume <id>} continues one
+     * (any unique prefix of its id works). Other senders' builds need {@code mazegenerator.resume.others}.
+     */
+    private boolean handleResume(CommandSender sender, String[] args) {
+        List<BuildCheckpoint> saved = CheckpointStore.loadAll().stream()
+                .filter(c -> mayActOn(sender, c.owner(), RESUME_OTHERS)).toList();
+        if (args.length < 2) {
+            if (saved.isEmpty()) {
+                sender.sendMessage("No interrupted mazes to resume.");
+                return true;
+            }
+            sender.sendMessage("Interrupted mazes (continue with /maze resume <id>):");
+            for (BuildCheckpoint c : saved) {
+                World world = sender.getServer().getWorld(c.worldId());
+                sender.sendMessage(String.format("  %s: %dx%d %s at %s %d,%d,%d, %d cells placed, by %s",
+                        c.id().toString().substring(0, 8), c.sizeN(), c.sizeM(), c.algorithm(),
+                        world != null ? world.getName() : "(unloaded world)", c.x(), c.y(), c.z(), c.placedCells(),
+                        ownerName(sender, c.owner())));
+            }
+            return true;
+        }
+        String prefix = args[1].toLowerCase(Locale.ROOT);
+        List<BuildCheckpoint> matches = saved.stream().filter(c -> c.id().toString().startsWith(prefix)).toList();
+        if (matches.size() != 1) {
+            sender.sendMessage(matches.isEmpty() ? "No interrupted maze with id " + args[1] + "." : "Id " + args[1] + " is ambiguous, type more of it.");
+            return true;
+        }
+        BuildCheckpoint checkpoint = matches.get(0);
+        World world = sender.getServer().getWorld(checkpoint.worldId());
+        if (world == null) {
+            sender.sendMessage("The maze's world is not loaded.");
+            return true;
+        }
+        if (Themes.getThemes() == null || !Themes.getThemes().containsKey(checkpoint.themeName())) {
+            sender.sendMessage("Unknown theme: " + checkpoint.themeName());
+            return true;
+        }
+        Location origin = new Location(world, checkpoint.x(), checkpoint.y(), checkpoint.z());
+        MazeStreamPlacer streamPlacer;
+        try {
+            streamPlacer = new MazeStreamPlacer(Themes.getTheme(checkpoint.themeName()), origin, checkpoint);
+        } catch (IllegalStateException e) {
+            sender.sendMessage(e.getMessage());
+            return true;
+        } catch (RuntimeException | OutOfMemoryError e) {
+            reportStartFailure(sender, e);
+            return true;
+        }
+        sender.sendMessage("Resuming maze " + checkpoint.id().toString().substring(0, 8) + " (seed " + checkpoint.seed()
+                + ") after " + checkpoint.placedCells() + " placed cells.");
+        runBuild(sender, streamPlacer, checkpoint.priority());
+        return true;
+    }
+
+    /**
+     * @return whether the sender started the build (owner null: the console) or has the permission to act on others'
+     */
+    private static boolean mayActOn(CommandSender sender, UUID owner, String othersPermission) {
+        UUID self = sender instanceof Player p ? p.getUniqueId() : null;
+        return Objects.equals(owner, self) || sender.hasPermission(othersPermission);
+    }
+
+    private static String ownerName(CommandSender sender, UUID owner) {
+        if (owner == null) {
+            return "console";
+        }
+        String name = sender.getServer().getOfflinePlayer(owner).getName();
+        return name != null ? name : owner.toString().substring(0, 8);
+    }
+
+    /**
+     * {@code /maze undo} restores the blocks the sender's most recent maze replaced; {@code /maze undo list} lists
+     * the mazes they can undo and {@code /maze undo <id>} undoes one of them (any unique prefix of its id works).
+     * Other senders' mazes need {@code mazegenerator.undo.others}.
+     */
+    private boolean handleUndo(CommandSender sender, String[] args) {
+        List<UndoJournal.Info> journals = UndoJournal.list().stream()
+                .filter(j -> mayActOn(sender, j.owner(), UNDO_OTHERS)).toList();
+        if (journals.isEmpty()) {
+            sender.sendMessage("No mazes to undo.");
+            return true;
+        }
+        if (args.length >= 2 && args[1].equalsIgnoreCase("list")) {
+            sender.sendMessage("Mazes that can be undone, newest first (undo with /maze undo <id>):");
+            for (UndoJournal.Info j : journals) {
+                World world = sender.getServer().getWorld(j.worldId());
+                sender.sendMessage(String.format("  %s: %s from %d,%d,%d to %d,%d,%d, %d chunks, by %s",
+                        j.id().toString().substring(0, 8), world != null ? world.getName() : "(unloaded world)",
+                        j.minX(), j.minY(), j.minZ(), j.maxX() - 1, j.maxY() - 1, j.maxZ() - 1, j.chunks(),
+                        ownerName(sender, j.owner())));
+            }
+            return true;
+        }
+        UUID self = sender instanceof Player p ? p.getUniqueId() : null;
+        // Without an id only the sender's own latest maze is undone, never someone else's
+        UndoJournal.Info journal = journals.stream().filter(j -> Objects.equals(j.owner(), self)).findFirst().orElse(null);
+        if (args.length < 2 && journal == null) {
+            sender.sendMessage("You have no mazes to undo. Pick one with /maze undo list.");
+            return true;
+        }
+        if (args.length >= 2) {
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            List<UndoJournal.Info> matches = journals.stream().filter(j -> j.id().toString().startsWith(prefix)).toList();
+            if (matches.size() != 1) {
+                sender.sendMessage(matches.isEmpty() ? "No maze to undo with id " + args[1] + "." : "Id " + args[1] + " is ambiguous, type more of it.");
+                return true;
+            }
+            journal = matches.get(0);
+        }
+        World world = sender.getServer().getWorld(journal.worldId());
+        if (world == null) {
+            sender.sendMessage("The maze's world is not loaded.");
+            return true;
+        }
+        UndoProducer producer;
+        try {
+            producer = new UndoProducer(world, journal);
+        } catch (IllegalStateException e) {
+            sender.sendMessage(e.getMessage());
+            return true;
+        } catch (IOException e) {
+            sender.sendMessage("Cannot read the undo data of maze " + journal.id().toString().substring(0, 8) + ": " + e.getMessage());
+            return true;
+        }
+        sender.sendMessage("Undoing maze " + journal.id().toString().substring(0, 8) + " (" + journal.chunks() + " chunks).");
+        runBuild(sender, producer, 0);
+        return true;
+    }
+
     private boolean handleGeneration(CommandSender sender, String[] args) {
         MazeOptions opt = parseOptions(sender, args);
         Optional<String> err = validate(opt, sender);
@@ -327,8 +570,9 @@ public class MazeCommand implements CommandExecutor, TabCompleter {
             boolean requestConfirm = plugin.getConfig().getBoolean("request-confirm", true);
             if (!requestConfirm) {
                 MazePreviewer.stopPreview(p);
-                startBuild(sender, opt, theme, origin);
-                sender.sendMessage(MessageFileReader.getMessage("build-no-preview"));
+                if (startBuild(sender, opt, theme, origin)) {
+                    sender.sendMessage(MessageFileReader.getMessage("build-no-preview"));
+                }
                 return true;
             }
 
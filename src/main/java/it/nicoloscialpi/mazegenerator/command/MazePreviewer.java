@@ -1,19 +1,18 @@
 package it.nicoloscialpi.mazegenerator.command;
 
+import it.nicoloscialpi.mazegenerator.loadbalancer.SchedulerBackend;
 import org.bukkit.Color;
 import org.bukkit.Location;
 import org.bukkit.Particle;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Renders a persistent particle outline for the maze footprint until confirmed/cancelled.
@@ -21,7 +20,7 @@ import java.util.UUID;
 public final class MazePreviewer {
     private MazePreviewer() {}
 
-    private static final Map<UUID, BukkitTask> ACTIVE = new HashMap<>();
+    private static final Map<UUID, SchedulerBackend.Task> ACTIVE = new ConcurrentHashMap<>();
 
     public static void showPreview(JavaPlugin plugin, Player player, Location origin, int mazeSizeX, int mazeSizeZ, int cellSize, int wallHeight) {
         if (plugin == null || player == null || origin == null || player.getWorld() == null) return;
@@ -71,20 +70,17 @@ public final class MazePreviewer {
             }
         }
 
-        BukkitTask task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                spawnAll(perimeter, dust);
-                spawnAll(heightLines, dust);
-            }
-        }.runTaskTimer(plugin, 0L, 10L); // every 0.5s
+        SchedulerBackend.Task task = SchedulerBackend.current().runAtFixedRate(() -> {
+            spawnAll(perimeter, dust);
+            spawnAll(heightLines, dust);
+        }, 10L); // every 0.5s
 
         ACTIVE.put(player.getUniqueId(), task);
     }
 
     public static void stopPreview(Player player) {
         if (player == null) return;
-        BukkitTask task = ACTIVE.remove(player.getUniqueId());
+        SchedulerBackend.Task task = ACTIVE.remove(player.getUniqueId());
         if (task != null) {
             task.cancel();
         }
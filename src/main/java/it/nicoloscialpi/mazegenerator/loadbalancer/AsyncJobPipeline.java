@@ -0,0 +1,205 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link JobProducer} (carving and job grouping) on a dedicated worker thread.
+ * Ready jobs go through a bounded single-producer/single-consumer queue: the worker fills it up to the
+ * high watermark and then sleeps until the tick thread has drained it below the low watermark, so the
+ * main-thread budget is spent on world writes only.
+ * The delegate's generation state is only ever touched by the worker thread; progress is published as snapshots.
+ * Stats and checkpoints go straight to the delegate, which keeps them thread safe. The delegate is closed only once
+ * the worker is out of it: if the worker is still busy in a long {@code getJobs} call when the pipeline is closed,
+ * it closes the delegate itself on its way out.
+ */
+public class AsyncJobPipeline implements JobProducer {
+
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long CLOSE_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final JobProducer delegate;
+    private final SpscRingBuffer<LoadBalancerJob> ready;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final Thread worker;
+    private final long closeWaitMillis;
+
+    private volatile boolean started = false;
+    private volatile boolean stopped = false;
+    private volatile boolean finished = false;
+    // Close handoff: close() sets closeOnExit, the worker sets exited; whichever sees the other's flag closes
+    private volatile boolean closeOnExit = false;
+    private volatile boolean exited = false;
+    private final AtomicBoolean delegateClosed = new AtomicBoolean();
+    private volatile Throwable failure;
+    private volatile double progress = 0.0;
+    private volatile PhaseProgressSnapshot phaseProgress;
+
+    public AsyncJobPipeline(JobProducer delegate, int lowWatermark, int highWatermark) {
+        this(delegate, lowWatermark, highWatermark, CLOSE_WAIT_MILLIS);
+    }
+
+    /**
+     * @param closeWaitMillis how long {@link #close()} waits for the worker before handing the close over to it
+     */
+    AsyncJobPipeline(JobProducer delegate, int lowWatermark, int highWatermark, long closeWaitMillis) {
+        this.delegate = delegate;
+        this.closeWaitMillis = closeWaitMillis;
+        this.highWatermark = Math.max(1, highWatermark);
+        this.lowWatermark = Math.max(1, Math.min(lowWatermark, this.highWatermark));
+        this.ready = new SpscRingBuffer<>(this.highWatermark);
+        this.worker = new Thread(this::runWorker, "MazeGenerator-pipeline-" + THREAD_IDS.incrementAndGet());
+        this.worker.setDaemon(true);
+    }
+
+    @Override
+    public List<LoadBalancerJob> getJobs() {
+        ensureStarted();
+        Throwable error = failure;
+        if (error != null) {
+            throw new IllegalStateException("Maze generation failed on the pipeline thread", error);
+        }
+        List<LoadBalancerJob> jobs = new ArrayList<>(Math.min(lowWatermark, ready.size()));
+        LoadBalancerJob job;
+        while (jobs.size() < lowWatermark && (job = ready.poll()) != null) {
+            jobs.add(job);
+        }
+        if (ready.size() < lowWatermark) {
+            LockSupport.unpark(worker);
+        }
+        return jobs;
+    }
+
+    @Override
+    public boolean isPending() {
+        ensureStarted();
+        // "finished" is written after the last offer, so reading it first never misses queued jobs
+        return !finished || !ready.isEmpty();
+    }
+
+    @Override
+    public double getProgressPercentage() {
+        return progress;
+    }
+
+    @Override
+    public PhaseProgressSnapshot getPhaseProgress() {
+        return phaseProgress;
+    }
+
+    @Override
+    public PlacementStats getStats() {
+        return delegate.getStats();
+    }
+
+    @Override
+    public String getMessagePrefix() {
+        return delegate.getMessagePrefix();
+    }
+
+    @Override
+    public CompletableFuture<Void> checkpoint() {
+        return delegate.checkpoint();
+    }
+
+    @Override
+    public void discardCheckpoint() {
+        delegate.discardCheckpoint();
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+        if (!started || Thread.currentThread() == worker) {
+            closeDelegate();
+            return;
+        }
+        LockSupport.unpark(worker);
+        try {
+            worker.join(closeWaitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Still inside the delegate (e.g. a long carving step): it closes the delegate once it gets out
+        closeOnExit = true;
+        if (exited) {
+            closeDelegate();
+        }
+    }
+
+    private void closeDelegate() {
+        if (delegateClosed.compareAndSet(false, true)) {
+            delegate.close();
+        }
+    }
+
+    private void ensureStarted() {
+        if (!started) {
+            started = true;
+            worker.start();
+        }
+    }
+
+    private void runWorker() {
+        ArrayDeque<LoadBalancerJob> overflow = new ArrayDeque<>();
+        try {
+            while (!stopped) {
+                while (!overflow.isEmpty() && ready.offer(overflow.peekFirst())) {
+                    overflow.pollFirst();
+                }
+                if (!overflow.isEmpty() || ready.size() >= highWatermark) {
+                    // Full: sleep until the consumer drains below the low watermark
+                    while (!stopped && ready.size() >= lowWatermark) {
+                        LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                    }
+                    continue;
+                }
+                List<LoadBalancerJob> next = delegate.getJobs();
+                publishProgress();
+                if (next.isEmpty()) {
+                    if (!delegate.isPending()) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                overflow.addAll(next);
+            }
+            // Exhausted: hand over whatever is still buffered locally
+            while (!stopped && !overflow.isEmpty()) {
+                if (ready.offer(overflow.peekFirst())) {
+                    overflow.pollFirst();
+                } else {
+                    LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            publishProgress();
+            finished = true;
+            exited = true;
+            if (closeOnExit) {
+                closeDelegate();
+            }
+        }
+    }
+
+    private void publishProgress() {
+        try {
+            progress = delegate.getProgressPercentage();
+            phaseProgress = delegate.getPhaseProgress();
+        } catch (RuntimeException ignored) {
+            // Progress is best effort; the previous snapshot stays visible
+        }
+    }
+}
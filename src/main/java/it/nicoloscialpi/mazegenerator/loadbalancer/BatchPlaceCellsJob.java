@@ -1,44 +1,90 @@
 package it.nicoloscialpi.mazegenerator.loadbalancer;
 
-import it.nicoloscialpi.mazegenerator.MazeGeneratorPlugin;
-import it.nicoloscialpi.mazegenerator.themes.Theme;
-import org.bukkit.Material;
-import org.bukkit.NamespacedKey;
+import it.nicoloscialpi.mazegenerator.ownership.OwnershipBitset;
+import it.nicoloscialpi.mazegenerator.themes.CompiledTheme;
+import it.nicoloscialpi.mazegenerator.undo.UndoJournal;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.persistence.PersistentDataType;
-import com.jeff_media.customblockdata.CustomBlockData;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static it.nicoloscialpi.mazegenerator.maze.MazeGenerator.WALL;
 
 /**
  * Places multiple cells within the same chunk in a single job to reduce scheduling overhead.
+ * Cells wider than one block are split at chunk borders by the producer, so a job never writes outside its chunk.
+ * Work is split in stages: planning (looping over the cells and sampling theme materials) produces a
+ * {@link PlacementPlan} and may run on a worker pool via {@link #planAsync(Executor)}. Once the chunk's earlier jobs
+ * have applied, larger jobs take one {@link ChunkSnapshot} of it on the thread owning the chunk and compare the plan
+ * against it on the same pool, keeping only the blocks that actually change. Smaller jobs skip the snapshot and write
+ * every planned block. Applying is the only part that runs on the main thread, and it only writes blocks.
+ * The job is deferred until its plan and its comparison are ready.
+ * The changes may be applied over several ticks ({@link #computeSlice(long)}); the chunk's later jobs wait until the
+ * last slice has run.
+ * The build's first job in a chunk snapshots it before any write and hands the snapshot to the build's
+ * {@link UndoJournal}.
+ * Materials are drawn from a stream seeded by the build seed and the block column, so a column gets the same
+ * blocks however the cells were grouped into jobs, e.g. when a resumed build places part of a chunk again.
  */
-public class BatchPlaceCellsJob implements LoadBalancerJob, ChunkAwareJob {
+public class BatchPlaceCellsJob implements ChunkBoundJob, SliceableJob {
+
+    public static final String COST_KEY = "batch-place";
 
     private final World world;
     private final int chunkX;
     private final int chunkZ;
-    private final Theme theme;
+    private final CompiledTheme theme;
     private final int height;
     private final int cellSize;
     private final boolean closed;
     private final boolean hollow;
     private final boolean setBlockData;
+    private final long seed;
+    private final PlacementStats stats;
+    private final ChunkResidency residency;
+    private final int snapshotMinBlocks;
+    // Records the chunk's original blocks before the build's first write into it, or null
+    private final UndoJournal undo;
+    // Position among the chunk's jobs: applies only after the jobs created before it
+    private final int sequence;
+    // Pool planning and comparing run on, or null to do both on the thread owning the chunk
+    private Executor executor;
+    // Plan being built off-thread, or null to plan on the thread owning the chunk
+    private volatile CompletableFuture<PlacementPlan> planned;
+    // Plan entries that differ from the chunk, started once the job is next in its chunk; only set on the owning thread
+    private CompletableFuture<PlacementPlan> changes;
+    // Only touched while planning
+    private PlacementPlan plan;
+    // Maze ownership of every planned position, merged into the chunk's marks when applying starts, or null
+    private OwnershipBitset marks;
+    // Changes being applied and how many of them have been; only touched on the thread owning the chunk
+    private PlacementPlan applying;
+    private int applied = 0;
+    // Set once the chunk has been seen unloaded by this job, i.e. the job's writes go into a freshly loaded chunk
+    private volatile boolean coldChunk = false;
+    // Run once the last slice has been applied, or null
+    private Runnable onApplied;
 
-    // Packed cells: [worldX, worldY, worldZ, type]
+    // Packed cell pieces: [worldX, worldY, worldZ, type, xFrom, xTo, zFrom, zTo], offsets relative to the cell origin
     private final int[][] cells;
 
     public BatchPlaceCellsJob(World world,
                               int chunkX,
                               int chunkZ,
-                              Theme theme,
+                              CompiledTheme theme,
                               int height,
                               int cellSize,
                               boolean closed,
                               boolean hollow,
                               boolean setBlockData,
-                              int[][] cells) {
+                              int[][] cells,
+                              long seed,
+                              PlacementStats stats,
+                              ChunkResidency residency,
+                              int snapshotMinBlocks,
+                              UndoJournal undo) {
         this.world = world;
         this.chunkX = chunkX;
         this.chunkZ = chunkZ;
@@ -49,111 +95,289 @@ public class BatchPlaceCellsJob implements LoadBalancerJob, ChunkAwareJob {
         this.hollow = hollow;
         this.setBlockData = setBlockData;
         this.cells = cells;
+        this.seed = seed;
+        this.stats = stats;
+        this.residency = residency;
+        this.snapshotMinBlocks = snapshotMinBlocks;
+        this.undo = undo;
+        this.sequence = residency.retain(chunkX, chunkZ);
+    }
+
+    /**
+     * Sets a callback run on the applying thread once the whole job has been applied, e.g. to track checkpoints.
+     */
+    public void onApplied(Runnable callback) {
+        this.onApplied = callback;
+    }
+
+    /**
+     * Starts planning on the given executor; the job then stays deferred until the plan is done.
+     */
+    public void planAsync(Executor executor) {
+        this.executor = executor;
+        planned = CompletableFuture.supplyAsync(this::plan, executor);
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    @Override
+    public int getChunkZ() {
+        return chunkZ;
     }
 
     @Override
     public boolean prepareChunks() {
-        return ChunkLoadLimiter.ensureLoaded(world, chunkX, chunkZ);
+        CompletableFuture<PlacementPlan> pending = planned;
+        if (pending != null && !pending.isDone()) {
+            return false;
+        }
+        if (!residency.isNext(chunkX, chunkZ, sequence)) {
+            return false;
+        }
+        noteChunkState();
+        if (!residency.ensureLoaded(chunkX, chunkZ)) {
+            return false;
+        }
+        if (changes == null) {
+            if (pending != null && pending.isCompletedExceptionally()) {
+                // computeSlice rethrows the failure
+                return true;
+            }
+            changes = compareWithChunk(pending != null ? pending.join() : plan());
+            planned = null;
+        }
+        return changes.isDone();
     }
 
     @Override
-    public void compute() {
+    public boolean prefetchChunks() {
+        noteChunkState();
+        return residency.prefetch(chunkX, chunkZ);
+    }
+
+    private void noteChunkState() {
+        if (!coldChunk && !world.isChunkLoaded(chunkX, chunkZ)) {
+            coldChunk = true;
+        }
+    }
+
+    @Override
+    public String getCostKey() {
+        return COST_KEY;
+    }
+
+    @Override
+    public boolean wasChunkLoaded() {
+        return !coldChunk;
+    }
+
+    @Override
+    public long getRemainingBlocks() {
+        if (applying != null) {
+            return applying.size() - applied;
+        }
+        CompletableFuture<PlacementPlan> diff = changes;
+        if (diff != null && diff.isDone() && !diff.isCompletedExceptionally()) {
+            return diff.join().size();
+        }
+        CompletableFuture<PlacementPlan> pending = planned;
+        if (pending != null && pending.isDone() && !pending.isCompletedExceptionally()) {
+            return pending.join().size();
+        }
+        return plannedBlocks();
+    }
+
+    @Override
+    public boolean computeSlice(long maxBlocks) {
+        if (applying == null) {
+            CompletableFuture<PlacementPlan> pending = planned;
+            // A failed plan or comparison rethrows here and stops the build like any other job error
+            applying = changes != null ? changes.join() : pending != null ? pending.join() : plan();
+            planned = null;
+            changes = null;
+            if (marks != null) {
+                residency.ownership(chunkX, chunkZ).or(marks);
+                marks = null;
+            }
+        }
+        int end = (int) Math.min(applying.size(), applied + Math.max(1L, maxBlocks));
+        apply(applying, applied, end);
+        applied = end;
+        if (applied < applying.size()) {
+            return false;
+        }
+        stats.recordCells(applying.cells());
+        applying = null;
+        residency.release(chunkX, chunkZ);
+        if (onApplied != null) {
+            onApplied.run();
+        }
+        return true;
+    }
+
+    /**
+     * Planning stage: no world access, safe off the main thread.
+     */
+    private PlacementPlan plan() {
+        plan = new PlacementPlan((int) Math.min(Integer.MAX_VALUE, plannedBlocks()));
+        marks = setBlockData ? new OwnershipBitset() : null;
         for (int[] c : cells) {
-            placeCell(c[0], c[1], c[2], (byte) c[3]);
+            planCell(c[0], c[1], c[2], (byte) c[3], c[4], c[5], c[6], c[7]);
+            plan.addCells(originsIn(c[4], c[5], c[6], c[7]));
+        }
+        PlacementPlan done = plan;
+        plan = null;
+        return done;
+    }
+
+    /**
+     * Runs on the thread owning the chunk once the chunk's earlier jobs have applied: takes the job's one snapshot of
+     * the chunk, when it is large enough to compare against or is the build's first write there (for undo), and starts
+     * comparing the plan against it on the planning pool.
+     * @return entries of the plan to write; the whole plan if no snapshot was taken
+     */
+    private CompletableFuture<PlacementPlan> compareWithChunk(PlacementPlan full) {
+        boolean firstWrite = undo != null && undo.claimChunk(chunkX, chunkZ);
+        boolean compare = snapshotMinBlocks > 0 && full.size() >= snapshotMinBlocks;
+        if (!firstWrite && !compare) {
+            return CompletableFuture.completedFuture(full);
+        }
+        // Taken now, so it already holds the writes of the chunk's earlier jobs
+        ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+        if (firstWrite) {
+            undo.capture(chunkX, chunkZ, snapshot);
         }
+        int minY = world.getMinHeight();
+        int maxY = world.getMaxHeight();
+        if (executor == null) {
+            return CompletableFuture.completedFuture(changedEntries(full, snapshot, minY, maxY));
+        }
+        return CompletableFuture.supplyAsync(() -> changedEntries(full, snapshot, minY, maxY), executor);
     }
 
-    private void placeCell(int worldX, int worldY, int worldZ, byte type) {
-        // Floor (full fill)
-        for (int x = 0; x < cellSize; x++) {
-            for (int z = 0; z < cellSize; z++) {
-                Material material = theme.getRandomFloorMaterial();
-                setBlock(worldX + x, worldY + 0, worldZ + z, material);
+    /**
+     * Comparing stage: reads only the snapshot, safe off the main thread. Positions outside the world's height are
+     * dropped, as they cannot be placed anyway.
+     */
+    private PlacementPlan changedEntries(PlacementPlan full, ChunkSnapshot snapshot, int minY, int maxY) {
+        PlacementPlan changed = new PlacementPlan(full.size());
+        changed.addCells(full.cells());
+        for (int i = 0; i < full.size(); i++) {
+            int y = full.y(i);
+            if (y >= minY && y < maxY && snapshot.getBlockType(full.x(i), y, full.z(i)) != theme.material(full.block(i))) {
+                changed.addEntry(full, i);
             }
         }
+        return changed;
+    }
+
+    /**
+     * Apply stage on the main thread: writes entries {@code [from, to)} of the changes, without reading the world.
+     */
+    private void apply(PlacementPlan plan, int from, int to) {
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
+        for (int i = from; i < to; i++) {
+            world.getBlockAt(baseX + plan.x(i), plan.y(i), baseZ + plan.z(i)).setBlockData(theme.blockData(plan.block(i)), false);
+            stats.recordBlockWrite();
+        }
+    }
 
-        // Middle layers
-        for (int y = 1; y < height; y++) {
-            if (type == WALL) {
-                if (hollow) {
-                    // Perimeter only
-                    for (int x = 0; x < cellSize; x++) {
-                        Material m1 = theme.getRandomWallMaterial();
-                        setBlock(worldX + x, worldY + y, worldZ + 0, m1);
-                        Material m2 = theme.getRandomWallMaterial();
-                        setBlock(worldX + x, worldY + y, worldZ + (cellSize - 1), m2);
-                    }
-                    for (int z = 1; z < cellSize - 1; z++) {
-                        Material m3 = theme.getRandomWallMaterial();
-                        setBlock(worldX + 0, worldY + y, worldZ + z, m3);
-                        Material m4 = theme.getRandomWallMaterial();
-                        setBlock(worldX + (cellSize - 1), worldY + y, worldZ + z, m4);
-                    }
-                } else {
-                    for (int x = 0; x < cellSize; x++) {
-                        for (int z = 0; z < cellSize; z++) {
-                            Material material = theme.getRandomWallMaterial();
-                            setBlock(worldX + x, worldY + y, worldZ + z, material);
+    private long plannedBlocks() {
+        long blocks = 0;
+        for (int[] c : cells) {
+            blocks += (long) (c[5] - c[4]) * (c[7] - c[6]);
+        }
+        return blocks * (height + 1);
+    }
+
+    /**
+     * Plans the part of a cell run that lies in this job's chunk: offsets {@code [xFrom, xTo)} and {@code [zFrom, zTo)}
+     * relative to the origin of the first cell. A run covers consecutive cells of one type along Z, so a dense wall
+     * region becomes a few tight loops over whole columns. Hollow walls are decided per cell, so the pieces line up.
+     */
+    private void planCell(int worldX, int worldY, int worldZ, byte type, int xFrom, int xTo, int zFrom, int zTo) {
+        boolean wall = type == WALL;
+        boolean roofed = closed || wall;
+        for (int x = xFrom; x < xTo; x++) {
+            boolean edgeX = isEdge(x);
+            int bx = worldX + x;
+            for (int z = zFrom; z < zTo; z++) {
+                int bz = worldZ + z;
+                SplittableRandom random = columnRandom(bx, bz);
+                // Hollow cells only get wall and top blocks on their perimeter
+                boolean solid = !hollow || edgeX || isEdge(z);
+
+                // Floor (full fill)
+                setBlock(bx, worldY, bz, theme.floor(random));
+
+                // Middle layers
+                if (wall) {
+                    if (solid) {
+                        for (int y = 1; y < height; y++) {
+                            setBlock(bx, worldY + y, bz, theme.wall(random));
                         }
                     }
-                }
-            } else {
-                // Clear space
-                for (int x = 0; x < cellSize; x++) {
-                    for (int z = 0; z < cellSize; z++) {
-                        setBlock(worldX + x, worldY + y, worldZ + z, Material.AIR);
+                } else {
+                    // Clear space
+                    for (int y = 1; y < height; y++) {
+                        setBlock(bx, worldY + y, bz, CompiledTheme.AIR);
                     }
                 }
-            }
-        }
 
-        // Top layer at y=height
-        int yTop = height;
-        if (closed || type == WALL) {
-            if (hollow) {
-                for (int x = 0; x < cellSize; x++) {
-                    Material m1 = theme.getRandomTopMaterial();
-                    setBlock(worldX + x, worldY + yTop, worldZ + 0, m1);
-                    Material m2 = theme.getRandomTopMaterial();
-                    setBlock(worldX + x, worldY + yTop, worldZ + (cellSize - 1), m2);
-                }
-                for (int z = 1; z < cellSize - 1; z++) {
-                    Material m3 = theme.getRandomTopMaterial();
-                    setBlock(worldX + 0, worldY + yTop, worldZ + z, m3);
-                    Material m4 = theme.getRandomTopMaterial();
-                    setBlock(worldX + (cellSize - 1), worldY + yTop, worldZ + z, m4);
-                }
-            } else {
-                for (int x = 0; x < cellSize; x++) {
-                    for (int z = 0; z < cellSize; z++) {
-                        Material material = theme.getRandomTopMaterial();
-                        setBlock(worldX + x, worldY + yTop, worldZ + z, material);
-                    }
-                }
-            }
-        } else {
-            // Open top for paths
-            for (int x = 0; x < cellSize; x++) {
-                for (int z = 0; z < cellSize; z++) {
-                    setBlock(worldX + x, worldY + yTop, worldZ + z, Material.AIR);
+                // Top layer at y=height; open top for paths
+                if (!roofed) {
+                    setBlock(bx, worldY + height, bz, CompiledTheme.AIR);
+                } else if (solid) {
+                    setBlock(bx, worldY + height, bz, theme.top(random));
                 }
             }
         }
     }
 
-    private void setBlock(int x, int y, int z, Material material) {
-        Block block = world.getBlockAt(x, y, z);
-        if (block.getType() == material) {
-            if (!setBlockData) return;
-        } else {
-            block.setType(material, false);
+    /**
+     * @return material stream of one block column, fixed by the build seed and the column's position
+     */
+    private SplittableRandom columnRandom(int x, int z) {
+        long column = ((long) x << 32) ^ (z & 0xFFFFFFFFL);
+        return new SplittableRandom(seed ^ column * 0x9E3779B97F4A7C15L);
+    }
+
+    private boolean isEdge(int offset) {
+        int inCell = offset % cellSize;
+        return inCell == 0 || inCell == cellSize - 1;
+    }
+
+    /**
+     * @return cells whose origin corner lies in the piece, so every cell is counted exactly once
+     */
+    private long originsIn(int xFrom, int xTo, int zFrom, int zTo) {
+        if (xFrom != 0) {
+            return 0;
         }
-        if (setBlockData) {
-            CustomBlockData data = new CustomBlockData(block, MazeGeneratorPlugin.plugin);
-            NamespacedKey key = new NamespacedKey(MazeGeneratorPlugin.plugin, "block");
-            data.set(key, PersistentDataType.STRING, "BLOCK");
+        return ceilDiv(zTo, cellSize) - ceilDiv(zFrom, cellSize);
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    /**
+     * @param paletteIndex block to place, as an index into the compiled theme's palette
+     */
+    private void setBlock(int x, int y, int z, int paletteIndex) {
+        plan.add(x & 15, y, z & 15, paletteIndex);
+        if (marks != null) {
+            marks.mark(x & 15, y, z & 15);
         }
     }
 
 }
-
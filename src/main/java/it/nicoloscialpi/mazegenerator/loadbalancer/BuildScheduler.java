@@ -0,0 +1,201 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Owns the per-tick maze budget ({@code millis-per-tick}, autotuned by an {@link MsptController}) and shares it between all running builds
+ * through one {@link FairShare}, so the total maze work per tick stays bounded however many builds run at once.
+ * Weights come from the {@code mazegenerator.weight.<n>} permissions (capped by a build's {@code priority}); with
+ * {@code fair-share.admin-preemption}, builds of senders with {@code mazegenerator.preempt} pause all others.
+ * It also owns the {@link CostModel} all builds size their job slices with, saved whenever the last build finishes.
+ */
+public final class BuildScheduler {
+
+    private static BuildScheduler instance;
+
+    private final JavaPlugin plugin;
+    private final FairShare fairShare = new FairShare();
+    private final RegionBudget regionBudget;
+    private final CostModel costModel = new CostModel(0.1, 1500);
+    private final File costModelFile;
+    private SchedulerBackend.Task task;
+
+    private volatile double budgetMillis;
+    // Null when autotune is off
+    private MsptController controller;
+
+    private BuildScheduler(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.costModelFile = new File(plugin.getDataFolder(), "cost-model.yml");
+        loadSettings();
+        this.regionBudget = new RegionBudget(getBudgetNanos());
+        try {
+            costModel.load(costModelFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().warning("Could not read " + costModelFile.getName() + ", starting from the initial estimate: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the budget settings; called whenever the first build starts after an idle period, so config reloads apply.
+     */
+    private void loadSettings() {
+        FileConfiguration config = plugin.getConfig();
+        this.budgetMillis = Math.max(1, config.getInt("millis-per-tick", 6));
+        this.controller = !config.getBoolean("autotune.enabled", true) ? null : new MsptController(
+                budgetMillis,
+                config.getDouble("autotune.min-millis-per-tick", 1),
+                Math.max(budgetMillis, config.getDouble("autotune.max-millis-per-tick", 20)),
+                config.getDouble("autotune.mspt-ceiling", 40),
+                config.getDouble("autotune.gain-proportional", 0.2),
+                config.getDouble("autotune.gain-integral", 0.1),
+                config.getDouble("autotune.backoff", 0.5));
+        costModel.configure(config.getBoolean("cost-model.enabled", true),
+                config.getDouble("cost-model.smoothing", 0.1),
+                config.getDouble("cost-model.initial-nanos-per-block", 1500));
+    }
+
+    /**
+     * Feeds a finished tick to the autotune controller. Main thread; Folia has no global tick, so the budget stays at
+     * {@code millis-per-tick} there.
+     */
+    void onTickEnd(double tickMillis, long timeRemainingNanos) {
+        MsptController c = controller;
+        if (c != null && task != null) {
+            budgetMillis = c.update(tickMillis, Bukkit.getAverageTickTime(), timeRemainingNanos < 0);
+        }
+    }
+
+    /**
+     * Applies the budget to an already running scheduler, if there is one.
+     */
+    static synchronized void tickEnded(double tickMillis, long timeRemainingNanos) {
+        if (instance != null) {
+            instance.onTickEnd(tickMillis, timeRemainingNanos);
+        }
+    }
+
+    public static synchronized BuildScheduler get(JavaPlugin plugin) {
+        if (instance == null) {
+            instance = new BuildScheduler(plugin);
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the shared task and forgets all builds, e.g. on plugin disable or reload.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.stopTask();
+            instance.fairShare.clear();
+            instance = null;
+        }
+    }
+
+    /**
+     * Weight of a build started by the sender: the highest {@code mazegenerator.weight.<n>} permission it has
+     * (up to {@code fair-share.max-weight}), lowered to {@code priority} if that is smaller.
+     * @param priority requested weight, or 0 for none
+     */
+    public int weightFor(CommandSender sender, int priority) {
+        int weight = Math.max(1, plugin.getConfig().getInt("fair-share.default-weight", 1));
+        int maxWeight = Math.max(weight, plugin.getConfig().getInt("fair-share.max-weight", 8));
+        if (sender != null) {
+            for (int w = maxWeight; w > weight; w--) {
+                if (sender.hasPermission("mazegenerator.weight." + w)) {
+                    weight = w;
+                    break;
+                }
+            }
+        }
+        return priority > 0 ? Math.max(1, Math.min(weight, priority)) : weight;
+    }
+
+    /**
+     * @return true if builds of this sender pause all other builds while they run
+     */
+    public boolean preempts(CommandSender sender) {
+        return sender != null
+                && plugin.getConfig().getBoolean("fair-share.admin-preemption", false)
+                && sender.hasPermission("mazegenerator.preempt");
+    }
+
+    synchronized void add(FairShare.Build build, int weight, boolean preempts) {
+        fairShare.add(build, weight, preempts);
+        if (task == null) {
+            loadSettings();
+            regionBudget.setBudgetNanos(getBudgetNanos());
+            task = SchedulerBackend.current().runAtFixedRate(this::run, 1L);
+        }
+    }
+
+    synchronized void remove(FairShare.Build build) {
+        fairShare.remove(build);
+        if (fairShare.isEmpty()) {
+            stopTask();
+        }
+    }
+
+    private void stopTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+            saveCostModel();
+        }
+    }
+
+    private void saveCostModel() {
+        try {
+            costModel.save(costModelFile);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not save " + costModelFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the current per-tick budget of all builds together, in milliseconds
+     */
+    public double getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    private long getBudgetNanos() {
+        return (long) (budgetMillis * 1_000_000L);
+    }
+
+    /**
+     * Per-thread budget that region dispatchers (Folia) share, so region threads are bounded across builds too.
+     */
+    RegionBudget getRegionBudget() {
+        return regionBudget;
+    }
+
+    CostModel getCostModel() {
+        return costModel;
+    }
+
+    /**
+     * @return the time granted to the build in its last tick, in nanoseconds
+     */
+    long getLastGrantNanos(FairShare.Build build) {
+        return fairShare.getLastGrantNanos(build);
+    }
+
+    private void run() {
+        long budgetNanos = getBudgetNanos();
+        if (SchedulerBackend.current().isRegionized()) {
+            // Folia has no global tick start event to reset the chunk load budget
+            ChunkLoadLimiter.resetBudget();
+        }
+        regionBudget.setBudgetNanos(budgetNanos);
+        fairShare.share(budgetNanos);
+    }
+}
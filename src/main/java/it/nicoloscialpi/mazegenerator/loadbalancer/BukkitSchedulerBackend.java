@@ -0,0 +1,48 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Paper/Spigot backend: every task runs on the main thread, which owns every chunk.
+ */
+final class BukkitSchedulerBackend implements SchedulerBackend {
+
+    private final JavaPlugin plugin;
+
+    BukkitSchedulerBackend(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Task runAtFixedRate(Runnable task, long periodTicks) {
+        BukkitTask scheduled = plugin.getServer().getScheduler().runTaskTimer(plugin, task, 0L, Math.max(1L, periodTicks));
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        if (delayTicks <= 0) {
+            plugin.getServer().getScheduler().runTask(plugin, task);
+        } else {
+            plugin.getServer().getScheduler().runTaskLater(plugin, task, delayTicks);
+        }
+    }
+
+    @Override
+    public boolean ownsChunk(World world, int chunkX, int chunkZ) {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return false;
+    }
+
+    @Override
+    public void cancelAll() {
+        plugin.getServer().getScheduler().cancelTasks(plugin);
+    }
+}
@@ -2,7 +2,7 @@ package it.nicoloscialpi.mazegenerator.loadbalancer;
 
 /**
  * Jobs that need chunks loaded before execution can implement this to allow the load balancer
- * to respect the configured per-tick chunk load budget.
+ * to respect the configured chunk load concurrency and to prefetch chunks of upcoming jobs.
  */
 public interface ChunkAwareJob extends LoadBalancerJob {
 
@@ -11,4 +11,12 @@ public interface ChunkAwareJob extends LoadBalancerJob {
      * @return true if chunks are loaded and the job can proceed this tick; false to defer.
      */
     boolean prepareChunks();
+
+    /**
+     * Starts loading the chunks this job will need without waiting for them.
+     * @return false if the chunk loader has no free slot, so the caller can stop looking further ahead
+     */
+    default boolean prefetchChunks() {
+        return true;
+    }
 }
@@ -0,0 +1,16 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.bukkit.World;
+
+/**
+ * A job whose world access stays inside one chunk, so it can run on whichever thread owns that chunk.
+ * On Folia these jobs are dispatched to the region of their chunk instead of running on the load balancer's thread.
+ */
+public interface ChunkBoundJob extends ChunkAwareJob {
+
+    World getWorld();
+
+    int getChunkX();
+
+    int getChunkZ();
+}
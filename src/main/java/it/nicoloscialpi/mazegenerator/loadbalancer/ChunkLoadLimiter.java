@@ -1,18 +1,32 @@
 package it.nicoloscialpi.mazegenerator.loadbalancer;
 
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.Chunk;
 import org.bukkit.World;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
 /**
- * Simple per-tick chunk load budget enforcer.
+ * Asynchronous chunk load pipeline shared by all builds.
+ * Missing chunks are requested with {@link World#getChunkAtAsync(int, int)}; at most
+ * {@code chunk-loads-per-tick} requests are in flight at once, so generating a chunk never blocks the tick.
+ * Jobs only run once their chunk is loaded; the load balancer prefetches chunks of upcoming jobs.
+ * Synchronized, since on Folia jobs of different regions ask for chunks from several threads at once.
  */
 public final class ChunkLoadLimiter {
 
-    private static int remainingLoads = 0;
-    private static int budgetPerTick = 0;
-    private static int consumedLoads = 0;
+    private static int maxInFlight = 0;
+    private static int startedThisTick = 0;
     private static boolean forceChunkLoad = true;
     private static JavaPlugin plugin;
+    // Pending async loads per world, keyed by packed chunk coordinates
+    private static final Map<UUID, Map<Long, CompletableFuture<Chunk>>> IN_FLIGHT = new HashMap<>();
+    private static int inFlightCount = 0;
 
     private ChunkLoadLimiter() {}
 
@@ -20,41 +34,99 @@ public final class ChunkLoadLimiter {
         plugin = pluginInstance;
     }
 
-    public static void resetBudget() {
+    /**
+     * Called at the start of every tick: refreshes config and forgets loads that have completed.
+     */
+    public static synchronized void resetBudget() {
         if (plugin == null) return;
-        budgetPerTick = Math.max(0, plugin.getConfig().getInt("chunk-loads-per-tick", 0));
-        remainingLoads = budgetPerTick;
-        consumedLoads = 0;
+        maxInFlight = Math.max(0, plugin.getConfig().getInt("chunk-loads-per-tick", 0));
+        startedThisTick = 0;
         forceChunkLoad = plugin.getConfig().getBoolean("force-chunk-load", true);
+        pruneCompleted();
     }
 
     /**
      * Ensure the given chunk is loaded respecting budget/config.
-     * @return true if the chunk is loaded (already loaded or loaded now); false if loading is disallowed or budget is exhausted.
+     * @return true if the chunk is loaded; false if loading is disallowed or still in progress.
+     */
+    public static synchronized boolean ensureLoaded(World world, int chunkX, int chunkZ) {
+        return ensureLoaded(world, chunkX, chunkZ, null);
+    }
+
+    /**
+     * Same as {@link #ensureLoaded(World, int, int)}, counting started loads into the build's stats.
+     * Never blocks: a missing chunk is requested asynchronously and the job is deferred until it arrives.
      */
-    public static boolean ensureLoaded(World world, int chunkX, int chunkZ) {
+    public static synchronized boolean ensureLoaded(World world, int chunkX, int chunkZ, PlacementStats stats) {
         if (world.isChunkLoaded(chunkX, chunkZ)) return true;
+        prefetch(world, chunkX, chunkZ, stats);
+        return false;
+    }
+
+    /**
+     * Starts an async load for the chunk if it is not loaded, not already requested and a slot is free.
+     * @return false once no more loads can be started right now, so callers can stop looking ahead
+     */
+    public static synchronized boolean prefetch(World world, int chunkX, int chunkZ, PlacementStats stats) {
         if (!forceChunkLoad) {
             return false;
         }
-        if (remainingLoads <= 0) {
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            return true;
+        }
+        Map<Long, CompletableFuture<Chunk>> pending = IN_FLIGHT.computeIfAbsent(world.getUID(), k -> new HashMap<>());
+        long key = ChunkKeys.pack(chunkX, chunkZ);
+        CompletableFuture<Chunk> existing = pending.get(key);
+        if (existing != null) {
+            if (!existing.isDone()) {
+                return true;
+            }
+            // Loaded earlier but unloaded again before the job ran: request it once more
+            pending.remove(key);
+            inFlightCount--;
+        }
+        if (inFlightCount >= maxInFlight) {
             return false;
         }
-        remainingLoads--;
-        consumedLoads++;
-        world.getChunkAt(chunkX, chunkZ);
+        pending.put(key, world.getChunkAtAsync(chunkX, chunkZ));
+        inFlightCount++;
+        startedThisTick++;
+        if (stats != null) {
+            stats.recordChunkLoad();
+        }
         return true;
     }
 
-    public static int getRemainingLoads() {
-        return remainingLoads;
+    private static void pruneCompleted() {
+        Iterator<Map<Long, CompletableFuture<Chunk>>> worlds = IN_FLIGHT.values().iterator();
+        while (worlds.hasNext()) {
+            Map<Long, CompletableFuture<Chunk>> pending = worlds.next();
+            Iterator<CompletableFuture<Chunk>> futures = pending.values().iterator();
+            while (futures.hasNext()) {
+                if (futures.next().isDone()) {
+                    futures.remove();
+                    inFlightCount--;
+                }
+            }
+            if (pending.isEmpty()) {
+                worlds.remove();
+            }
+        }
+    }
+
+    public static synchronized boolean hasFreeSlot() {
+        return forceChunkLoad && inFlightCount < maxInFlight;
+    }
+
+    public static synchronized int getInFlight() {
+        return inFlightCount;
     }
 
-    public static int getBudgetPerTick() {
-        return budgetPerTick;
+    public static synchronized int getMaxInFlight() {
+        return maxInFlight;
     }
 
-    public static int getConsumedLoads() {
-        return consumedLoads;
+    public static synchronized int getStartedThisTick() {
+        return startedThisTick;
     }
 }
@@ -0,0 +1,220 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import it.nicoloscialpi.mazegenerator.ownership.MazeOwnership;
+import it.nicoloscialpi.mazegenerator.ownership.OwnershipBitset;
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the chunks of one build resident while they still have queued jobs.
+ * Every job is counted against its chunk when it is created; once the chunk is loaded it gets a plugin
+ * chunk ticket, so the server cannot unload it between ticks, and the ticket is dropped as soon as the
+ * chunk's last job has run. A build pins at most {@code max-pinned-chunks} chunks at once.
+ * The same point flushes the chunk's maze ownership marks, so its persistent data is written once per visit.
+ * Jobs of one chunk also get a sequence number, so they apply in creation order even when they become ready
+ * out of order (e.g. the wall pass and the carve pass writing the same cell).
+ * Tickets are shared between builds through a global refcount, since plugin tickets are per plugin.
+ * Job counting is thread safe (jobs may be created on the pipeline thread). Everything else runs on the thread owning
+ * the chunk: the main thread on Paper, the chunk's region on Folia, where several regions share this object.
+ */
+public final class ChunkResidency {
+
+    // Builds holding a ticket per chunk, per world
+    private static final Map<UUID, Map<Long, Integer>> TICKETS = new HashMap<>();
+
+    private final Plugin plugin;
+    private final World world;
+    private final int maxPinned;
+    private final PlacementStats stats;
+    private final SchedulerBackend scheduler;
+    private final ConcurrentHashMap<Long, ChunkJobs> pendingJobs = new ConcurrentHashMap<>();
+    private final Set<Long> pinned = new HashSet<>();
+    // Chunks a job of this build has run in; seeing one unloaded again means it has to be reloaded
+    private final Set<Long> visited = new HashSet<>();
+    // Positions placed by jobs that ran, per chunk, until the chunk's last job has run
+    private final Map<Long, OwnershipBitset> ownership = new HashMap<>();
+
+    public ChunkResidency(Plugin plugin, World world, int maxPinned, PlacementStats stats, SchedulerBackend scheduler) {
+        this.plugin = plugin;
+        this.world = world;
+        this.maxPinned = Math.max(0, maxPinned);
+        this.stats = stats;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Jobs created and completed for one chunk since it last had none pending.
+     */
+    private static final class ChunkJobs {
+        int created;
+        int completed;
+    }
+
+    /**
+     * Counts a newly created job against its chunk. Safe to call from any thread.
+     * @return the job's position among the chunk's pending jobs, for {@link #isNext(int, int, int)}
+     */
+    public int retain(int chunkX, int chunkZ) {
+        int[] sequence = new int[1];
+        pendingJobs.compute(ChunkKeys.pack(chunkX, chunkZ), (k, jobs) -> {
+            ChunkJobs counts = jobs != null ? jobs : new ChunkJobs();
+            synchronized (counts) {
+                sequence[0] = counts.created++;
+            }
+            return counts;
+        });
+        return sequence[0];
+    }
+
+    /**
+     * @return true if every job created for the chunk before the one with this sequence number has completed
+     */
+    public boolean isNext(int chunkX, int chunkZ, int sequence) {
+        ChunkJobs jobs = pendingJobs.get(ChunkKeys.pack(chunkX, chunkZ));
+        if (jobs == null) {
+            return true;
+        }
+        synchronized (jobs) {
+            return jobs.completed >= sequence;
+        }
+    }
+
+    /**
+     * Called after a job has run; releases the chunk's ticket once no jobs for it are left.
+     */
+    public synchronized void release(int chunkX, int chunkZ) {
+        long key = ChunkKeys.pack(chunkX, chunkZ);
+        visited.add(key);
+        ChunkJobs left = pendingJobs.computeIfPresent(key, (k, jobs) -> {
+            synchronized (jobs) {
+                jobs.completed++;
+                return jobs.completed >= jobs.created ? null : jobs;
+            }
+        });
+        if (left == null) {
+            flushOwnership(key);
+            unpin(key);
+        } else if (!pinned.contains(key)) {
+            // Without a ticket the chunk may unload before its next job
+            flushOwnership(key);
+        }
+    }
+
+    /**
+     * @return the ownership marks of a chunk whose jobs are running; merged into the chunk once they are done
+     */
+    public synchronized OwnershipBitset ownership(int chunkX, int chunkZ) {
+        return ownership.computeIfAbsent(ChunkKeys.pack(chunkX, chunkZ), k -> new OwnershipBitset());
+    }
+
+    /**
+     * {@link ChunkLoadLimiter#ensureLoaded(World, int, int, PlacementStats)}, pinning the chunk once it is loaded.
+     */
+    public synchronized boolean ensureLoaded(int chunkX, int chunkZ) {
+        countReload(chunkX, chunkZ);
+        if (!ChunkLoadLimiter.ensureLoaded(world, chunkX, chunkZ, stats)) {
+            return false;
+        }
+        pin(chunkX, chunkZ);
+        return true;
+    }
+
+    /**
+     * {@link ChunkLoadLimiter#prefetch(World, int, int, PlacementStats)}; chunks whose load has completed get pinned
+     * so they stay loaded until their jobs come up.
+     */
+    public synchronized boolean prefetch(int chunkX, int chunkZ) {
+        countReload(chunkX, chunkZ);
+        boolean more = ChunkLoadLimiter.prefetch(world, chunkX, chunkZ, stats);
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            pin(chunkX, chunkZ);
+        }
+        return more;
+    }
+
+    public synchronized int getPinnedCount() {
+        return pinned.size();
+    }
+
+    /**
+     * Drops every ticket this build still holds. Called when the build finishes or is stopped; chunks owned by
+     * another thread are released on their owner.
+     */
+    public synchronized void releaseAll() {
+        Set<Long> keys = new HashSet<>(ownership.keySet());
+        keys.addAll(pinned);
+        for (long key : keys) {
+            scheduler.executeAtChunk(world, ChunkKeys.x(key), ChunkKeys.z(key), () -> releaseNow(key));
+        }
+        pendingJobs.clear();
+        visited.clear();
+    }
+
+    private synchronized void releaseNow(long key) {
+        flushOwnership(key);
+        unpin(key);
+    }
+
+    private void flushOwnership(long key) {
+        OwnershipBitset marks = ownership.remove(key);
+        int chunkX = ChunkKeys.x(key);
+        int chunkZ = ChunkKeys.z(key);
+        // Jobs only run in loaded chunks; a chunk unloaded since then is not loaded again just for this
+        if (marks != null && world.isChunkLoaded(chunkX, chunkZ)) {
+            MazeOwnership.merge(world.getChunkAt(chunkX, chunkZ), marks);
+        }
+    }
+
+    private void countReload(int chunkX, int chunkZ) {
+        long key = ChunkKeys.pack(chunkX, chunkZ);
+        if (!world.isChunkLoaded(chunkX, chunkZ) && visited.remove(key)) {
+            stats.recordChunkReload();
+        }
+    }
+
+    private void pin(int chunkX, int chunkZ) {
+        long key = ChunkKeys.pack(chunkX, chunkZ);
+        if (pinned.size() >= maxPinned || pinned.contains(key) || !pendingJobs.containsKey(key)) {
+            return;
+        }
+        pinned.add(key);
+        stats.setPinnedChunks(pinned.size());
+        boolean first;
+        synchronized (TICKETS) {
+            first = TICKETS.computeIfAbsent(world.getUID(), k -> new HashMap<>()).merge(key, 1, Integer::sum) == 1;
+        }
+        if (first) {
+            world.getChunkAt(chunkX, chunkZ).addPluginChunkTicket(plugin);
+        }
+    }
+
+    private void unpin(long key) {
+        if (!pinned.remove(key)) {
+            return;
+        }
+        stats.setPinnedChunks(pinned.size());
+        synchronized (TICKETS) {
+            Map<Long, Integer> tickets = TICKETS.get(world.getUID());
+            if (tickets == null || tickets.computeIfPresent(key, (k, count) -> count <= 1 ? null : count - 1) != null) {
+                return;
+            }
+            if (tickets.isEmpty()) {
+                TICKETS.remove(world.getUID());
+            }
+        }
+        int chunkX = ChunkKeys.x(key);
+        int chunkZ = ChunkKeys.z(key);
+        // getChunkAt would load it synchronously; an unloaded chunk no longer holds the ticket anyway
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            world.getChunkAt(chunkX, chunkZ).removePluginChunkTicket(plugin);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Online estimate of the time one block write takes, per job type and split by whether the job's chunk was
+ * already loaded or had to be loaded for it (first writes into a fresh chunk cost more).
+ * Each estimate is an exponentially weighted moving average of measured slices; {@link #runSlice(SliceableJob, long)}
+ * uses it to cut a job to the time left in the tick instead of running it whole.
+ * Estimates are kept in {@code cost-model.yml} across restarts, so a fresh server does not start from a guess.
+ * Synchronized, since on Folia region threads run and measure jobs at the same time.
+ */
+public final class CostModel {
+
+    // Slices smaller than this are mostly fixed overhead and would skew the per-block estimate
+    static final long MIN_SAMPLE_BLOCKS = 32;
+    // Smallest slice handed out, so a job always makes progress once it gets to run
+    static final long MIN_SLICE_BLOCKS = 64;
+    private static final String ESTIMATES = "nanos-per-block";
+
+    private final LongSupplier clock;
+    private final Map<String, Double> nanosPerBlock = new HashMap<>();
+    private boolean enabled = true;
+    private double smoothing;
+    private double initialNanosPerBlock;
+
+    public CostModel(double smoothing, double initialNanosPerBlock) {
+        this(smoothing, initialNanosPerBlock, System::nanoTime);
+    }
+
+    CostModel(double smoothing, double initialNanosPerBlock, LongSupplier clock) {
+        this.clock = clock;
+        configure(true, smoothing, initialNanosPerBlock);
+    }
+
+    /**
+     * @param enabled if false, jobs run whole again (estimates are still learned)
+     * @param smoothing weight of a new measurement in the moving average, 0..1
+     * @param initialNanosPerBlock estimate used for a job type nothing has been learned about yet
+     */
+    public synchronized void configure(boolean enabled, double smoothing, double initialNanosPerBlock) {
+        this.enabled = enabled;
+        this.smoothing = Math.max(0.01, Math.min(1.0, smoothing));
+        this.initialNanosPerBlock = Math.max(1.0, initialNanosPerBlock);
+    }
+
+    /**
+     * @return estimated nanoseconds per block write; falls back to the other chunk state, then to the initial guess
+     */
+    public synchronized double estimateNanosPerBlock(String costKey, boolean chunkLoaded) {
+        Double estimate = nanosPerBlock.get(key(costKey, chunkLoaded));
+        if (estimate == null) {
+            estimate = nanosPerBlock.get(key(costKey, !chunkLoaded));
+        }
+        return estimate != null ? estimate : initialNanosPerBlock;
+    }
+
+    /**
+     * @return how many block writes are expected to fit in {@code nanos}, at least {@link #MIN_SLICE_BLOCKS}
+     */
+    public synchronized long blocksWithin(String costKey, boolean chunkLoaded, long nanos) {
+        if (!enabled) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(MIN_SLICE_BLOCKS, (long) (nanos / estimateNanosPerBlock(costKey, chunkLoaded)));
+    }
+
+    /**
+     * Folds one measured slice into the estimate of its job type and chunk state.
+     */
+    public synchronized void record(String costKey, boolean chunkLoaded, long blocks, long nanos) {
+        if (blocks < MIN_SAMPLE_BLOCKS || nanos <= 0) {
+            return;
+        }
+        double sample = (double) nanos / blocks;
+        nanosPerBlock.merge(key(costKey, chunkLoaded), sample,
+                (previous, current) -> previous + smoothing * (current - previous));
+    }
+
+    /**
+     * Runs as much of the job as is expected to fit in {@code nanos} and learns from the time it took.
+     * @return true once the job is complete
+     */
+    public boolean runSlice(SliceableJob job, long nanos) {
+        String costKey = job.getCostKey();
+        boolean chunkLoaded = job.wasChunkLoaded();
+        long maxBlocks = blocksWithin(costKey, chunkLoaded, nanos);
+        long before = job.getRemainingBlocks();
+        long start = clock.getAsLong();
+        boolean done = job.computeSlice(maxBlocks);
+        long elapsed = clock.getAsLong() - start;
+        record(costKey, chunkLoaded, done ? before : before - job.getRemainingBlocks(), elapsed);
+        return done;
+    }
+
+    /**
+     * @return the learned estimates, e.g. for the console status line
+     */
+    public synchronized String summary() {
+        if (nanosPerBlock.isEmpty()) {
+            return "ns/block: " + Math.round(initialNanosPerBlock) + " (initial)";
+        }
+        StringBuilder out = new StringBuilder("ns/block:");
+        nanosPerBlock.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry ->
+                out.append(' ').append(entry.getKey()).append('=').append(Math.round(entry.getValue())));
+        return out.toString();
+    }
+
+    /**
+     * Replaces the estimates with the ones saved in the file, if it exists and can be read.
+     */
+    public synchronized void load(File file) throws IOException, InvalidConfigurationException {
+        if (!file.exists()) {
+            return;
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.load(file);
+        ConfigurationSection section = yaml.getConfigurationSection(ESTIMATES);
+        if (section == null) {
+            return;
+        }
+        nanosPerBlock.clear();
+        for (String costKey : section.getKeys(false)) {
+            for (boolean chunkLoaded : new boolean[]{true, false}) {
+                double estimate = section.getDouble(costKey + "." + state(chunkLoaded), -1);
+                if (estimate > 0) {
+                    nanosPerBlock.put(key(costKey, chunkLoaded), estimate);
+                }
+            }
+        }
+    }
+
+    public synchronized void save(File file) throws IOException {
+        YamlConfiguration yaml = new YamlConfiguration();
+        for (Map.Entry<String, Double> entry : nanosPerBlock.entrySet()) {
+            yaml.set(ESTIMATES + "." + entry.getKey(), Math.round(entry.getValue() * 10) / 10.0);
+        }
+        yaml.save(file);
+    }
+
+    private static String key(String costKey, boolean chunkLoaded) {
+        return costKey.toLowerCase(Locale.ROOT) + "." + state(chunkLoaded);
+    }
+
+    private static String state(boolean chunkLoaded) {
+        return chunkLoaded ? "loaded" : "cold";
+    }
+}
@@ -0,0 +1,127 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Weighted deficit round robin over running builds: every tick each build is credited its weighted share of the
+ * budget and runs until the credit is used up. Running over is charged to the build's next tick, and credit is not
+ * banked while a build has nothing to do. Time left over by builds that had nothing ready goes to builds that used
+ * their whole grant. Preempting builds, while any is running, get the whole budget between them.
+ * Builds may be added and removed from any thread; {@link #share(long)} runs on the scheduler's thread.
+ */
+final class FairShare {
+
+    // Leftover time below this is not worth another round
+    private static final long MIN_SLICE_NANOS = 100_000L;
+
+    /**
+     * A build the scheduler gives time to.
+     */
+    interface Build {
+        /**
+         * Runs for about {@code budgetNanos} at most (a job in progress may overrun it).
+         * @return nanoseconds actually used; less than granted if the build ran out of ready work
+         */
+        long tick(long budgetNanos);
+    }
+
+    private static final class Share {
+        final Build build;
+        final int weight;
+        final boolean preempts;
+        long deficitNanos = 0;
+        volatile long lastGrantNanos = 0;
+
+        Share(Build build, int weight, boolean preempts) {
+            this.build = build;
+            this.weight = weight;
+            this.preempts = preempts;
+        }
+    }
+
+    private final CopyOnWriteArrayList<Share> shares = new CopyOnWriteArrayList<>();
+    private int rotation = 0;
+
+    void add(Build build, int weight, boolean preempts) {
+        shares.add(new Share(build, Math.max(1, weight), preempts));
+    }
+
+    void remove(Build build) {
+        shares.removeIf(share -> share.build == build);
+    }
+
+    void clear() {
+        shares.clear();
+    }
+
+    boolean isEmpty() {
+        return shares.isEmpty();
+    }
+
+    long getLastGrantNanos(Build build) {
+        for (Share share : shares) {
+            if (share.build == build) {
+                return share.lastGrantNanos;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Hands out one tick's budget.
+     * @return nanoseconds used by all builds together
+     */
+    long share(long budgetNanos) {
+        Share[] all = shares.toArray(new Share[0]);
+        if (all.length == 0) {
+            return 0;
+        }
+        boolean preempting = false;
+        for (Share share : all) {
+            preempting |= share.preempts;
+        }
+        long totalWeight = 0;
+        for (Share share : all) {
+            if (share.preempts == preempting) {
+                totalWeight += share.weight;
+            }
+        }
+        for (Share share : all) {
+            share.lastGrantNanos = 0;
+        }
+        long remaining = budgetNanos;
+        boolean[] hungry = new boolean[all.length];
+        // Rotate the starting build so nobody always goes first (and last when earlier builds overrun)
+        int start = Math.floorMod(rotation++, all.length);
+        for (int i = 0; i < all.length && remaining > 0; i++) {
+            int index = (start + i) % all.length;
+            Share share = all[index];
+            if (share.preempts != preempting) {
+                continue;
+            }
+            long quantum = budgetNanos * share.weight / totalWeight;
+            // Credit is not banked across ticks, but overruns are paid back
+            share.deficitNanos = Math.min(share.deficitNanos + quantum, quantum);
+            if (share.deficitNanos <= 0) {
+                continue;
+            }
+            long grant = Math.min(share.deficitNanos, remaining);
+            long used = share.build.tick(grant);
+            share.lastGrantNanos = grant;
+            share.deficitNanos -= used;
+            remaining -= used;
+            hungry[index] = used >= grant;
+        }
+        // Work conserving: what builds without ready work left over goes to those that used their whole grant
+        for (int i = 0; i < all.length && remaining >= MIN_SLICE_NANOS; i++) {
+            int index = (start + i) % all.length;
+            if (!hungry[index]) {
+                continue;
+            }
+            long used = all[index].build.tick(remaining);
+            all[index].lastGrantNanos += remaining;
+            remaining -= used;
+        }
+        return budgetNanos - remaining;
+    }
+}
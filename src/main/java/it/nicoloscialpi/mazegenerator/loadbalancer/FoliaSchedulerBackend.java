@@ -0,0 +1,52 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Folia backend: repeating tasks run on the global region thread, chunk work on the region scheduler of the chunk.
+ * The Bukkit scheduler is unsupported on Folia, so nothing here may touch it.
+ */
+final class FoliaSchedulerBackend implements SchedulerBackend {
+
+    private final JavaPlugin plugin;
+
+    FoliaSchedulerBackend(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Task runAtFixedRate(Runnable task, long periodTicks) {
+        // Folia rejects an initial delay of 0 ticks
+        ScheduledTask scheduled = Bukkit.getGlobalRegionScheduler()
+                .runAtFixedRate(plugin, t -> task.run(), 1L, Math.max(1L, periodTicks));
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        if (delayTicks <= 0) {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        } else {
+            Bukkit.getRegionScheduler().runDelayed(plugin, world, chunkX, chunkZ, t -> task.run(), delayTicks);
+        }
+    }
+
+    @Override
+    public boolean ownsChunk(World world, int chunkX, int chunkZ) {
+        return Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ);
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return true;
+    }
+
+    @Override
+    public void cancelAll() {
+        // Region tasks cannot be cancelled in bulk; the dispatcher drops its queued jobs once stopped
+        Bukkit.getGlobalRegionScheduler().cancelTasks(plugin);
+    }
+}
@@ -1,6 +1,7 @@
 package it.nicoloscialpi.mazegenerator.loadbalancer;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface JobProducer {
     List<LoadBalancerJob> getJobs();
@@ -9,4 +10,48 @@ public interface JobProducer {
     default PhaseProgressSnapshot getPhaseProgress() {
         return null;
     }
+
+    /**
+     * @return true if {@link #getJobs()} may return an empty list only because work is still being prepared
+     *         (e.g. background carving), so the build must not be considered finished yet.
+     */
+    default boolean isPending() {
+        return false;
+    }
+
+    /**
+     * @return placement counters for this build, or null if the producer does not track them
+     */
+    default PlacementStats getStats() {
+        return null;
+    }
+
+    /**
+     * @return prefix of the {@code messages.yml} keys announcing this producer's progress, e.g. {@code job-started}
+     */
+    default String getMessagePrefix() {
+        return "job";
+    }
+
+    /**
+     * Saves how far the build has got, so it can be resumed after a restart. Called periodically and on shutdown
+     * from the thread running the build, so implementations must not touch state owned by a generation thread.
+     * @return completes once the checkpoint is on disk
+     */
+    default CompletableFuture<Void> checkpoint() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Deletes the build's checkpoint: it finished or was stopped on purpose.
+     */
+    default void discardCheckpoint() {
+    }
+
+    /**
+     * Releases resources held for the build (temporary files, off-heap memory). Called once when the build
+     * finishes or is stopped; must be safe to call more than once.
+     */
+    default void close() {
+    }
 }
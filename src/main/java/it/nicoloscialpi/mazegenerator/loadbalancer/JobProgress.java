@@ -0,0 +1,58 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of jobs handed to other threads, updated by every thread that runs them and read by the load balancer.
+ */
+public final class JobProgress {
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final LongAdder computeNanos = new LongAdder();
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    public void recordSubmitted() {
+        submitted.incrementAndGet();
+    }
+
+    /**
+     * Counts a finished job (or one dropped because the build stopped) and the time it took on the calling thread.
+     */
+    public void recordCompleted(long nanos) {
+        computeNanos.add(nanos);
+        threads.add(Thread.currentThread().getName());
+        completed.incrementAndGet();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return jobs submitted but not completed yet
+     */
+    public long getInFlight() {
+        // Read completed first: a job completing in between can only make the result larger, never negative
+        long done = completed.get();
+        return submitted.get() - done;
+    }
+
+    public long getComputeNanos() {
+        return computeNanos.sum();
+    }
+
+    /**
+     * @return how many distinct threads have run jobs of this build
+     */
+    public int getThreadCount() {
+        return threads.size();
+    }
+}
@@ -9,7 +9,6 @@ import org.bukkit.boss.BarColor;
 import org.bukkit.boss.BarStyle;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 import net.kyori.adventure.text.Component;
 
 import java.util.ArrayDeque;
@@ -18,41 +17,55 @@ import java.util.concurrent.Semaphore;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-public class LoadBalancer extends BukkitRunnable {
+/**
+ * Runs one build: takes jobs from its producer and runs them (or, on Folia, dispatches them to their regions)
+ * within the time the global {@link BuildScheduler} grants it each tick. A {@link SliceableJob} is cut by the
+ * {@link CostModel} to the time left, and its remainder runs first next tick.
+ * The producer is asked to checkpoint every {@code checkpoints.interval-seconds}; the checkpoint is deleted when the
+ * build finishes or is stopped, and kept when the plugin shuts down with the build still running.
+ */
+public class LoadBalancer implements FairShare.Build {
 
     private static TickEventListener eventListener = null;
 
-    public static long LAST_TICK_START_NANOS = 0;
-    private static final long TARGET_TICK_NANOS = 50_000_000L;
-
     private final ArrayDeque<LoadBalancerJob> jobs;
     private final Semaphore mutex;
     private final JavaPlugin plugin;
     private final JobProducer jobProducer;
+    private final BuildScheduler buildScheduler;
+    private final CostModel costModel;
+    // Folia only: runs chunk-bound jobs on the regions owning their chunks
+    private final RegionDispatcher dispatcher;
+    private final int maxQueuedJobs;
+    private final int weight;
+    private final boolean preempts;
     private boolean isDone;
 
     private long iterations;
 
     private final CommandSender commandSender;
-    private int currentMillisPerTick;
-    private final boolean autoTune;
-    private final int minMillisPerTick;
-    private final int maxMillisPerTick;
-    private final int incStep;
-    private final int decStep;
-    private final int spareHigh;
-    private final int spareLow;
+    private final int prefetchLookahead;
     private long lastChatAtMillis = 0;
     private long lastBarAtMillis = 0;
+    private long lastCheckpointAtMillis;
+    private final long checkpointIntervalMillis;
     private static final long CHAT_INTERVAL_MS = 60_000L;
     private static final long BAR_INTERVAL_MS = 1_000L;
     private java.util.EnumMap<BuildPhase, BossBar> phaseBars;
-    private double spareNanosAvg = 0;
     private final Player playerTarget;
     private BossBar bossBar;
 
     public LoadBalancer(JavaPlugin plugin, CommandSender commandSender, JobProducer jobProducer) {
+        this(plugin, commandSender, jobProducer, 0);
+    }
+
+    /**
+     * @param priority requested fair-share weight, capped by the sender's permissions; 0 for the permission weight
+     */
+    public LoadBalancer(JavaPlugin plugin, CommandSender commandSender, JobProducer jobProducer, int priority) {
         this.plugin = plugin;
         this.jobProducer = jobProducer;
         if (eventListener == null) {
@@ -65,14 +78,19 @@ public class LoadBalancer extends BukkitRunnable {
         this.jobs = new ArrayDeque<>();
         this.iterations = 0;
         this.isDone = false;
-        this.currentMillisPerTick = Math.max(1, plugin.getConfig().getInt("millis-per-tick", 6));
-        this.autoTune = plugin.getConfig().getBoolean("autotune.enabled", true);
-        this.minMillisPerTick = Math.max(1, plugin.getConfig().getInt("autotune.min-millis-per-tick", 2));
-        this.maxMillisPerTick = Math.max(this.currentMillisPerTick, plugin.getConfig().getInt("autotune.max-millis-per-tick", 12));
-        this.incStep = Math.max(1, plugin.getConfig().getInt("autotune.increase-step", 1));
-        this.decStep = Math.max(1, plugin.getConfig().getInt("autotune.decrease-step", 1));
-        this.spareHigh = Math.max(0, plugin.getConfig().getInt("autotune.spare-high", 12));
-        this.spareLow = Math.max(0, plugin.getConfig().getInt("autotune.spare-low", 6));
+        this.prefetchLookahead = Math.max(1, plugin.getConfig().getInt("chunk-prefetch-lookahead", 32));
+        this.buildScheduler = BuildScheduler.get(plugin);
+        this.costModel = buildScheduler.getCostModel();
+        this.weight = buildScheduler.weightFor(commandSender, priority);
+        this.preempts = buildScheduler.preempts(commandSender);
+        SchedulerBackend scheduler = SchedulerBackend.current();
+        this.dispatcher = scheduler.isRegionized()
+                ? new RegionDispatcher(scheduler, buildScheduler.getRegionBudget(), costModel)
+                : null;
+        this.maxQueuedJobs = Math.max(1, plugin.getConfig().getInt("scheduler.max-queued-jobs", 2048));
+        this.checkpointIntervalMillis = plugin.getConfig().getBoolean("checkpoints.enabled", true)
+                ? TimeUnit.SECONDS.toMillis(Math.max(0, plugin.getConfig().getInt("checkpoints.interval-seconds", 30)))
+                : 0;
     }
 
     // Active tasks tracking to allow /maze stop
@@ -84,10 +102,11 @@ public class LoadBalancer extends BukkitRunnable {
 
     public synchronized void start() {
         if (commandSender != null) {
-            commandSender.sendMessage(MessageFileReader.getMessage("job-started"));
+            commandSender.sendMessage(MessageFileReader.getMessage(jobProducer.getMessagePrefix() + "-started"));
         }
         jobs.addAll(jobProducer.getJobs());
         ACTIVE.add(this);
+        lastCheckpointAtMillis = System.currentTimeMillis();
         ChunkLoadLimiter.resetBudget();
         if (playerTarget != null) {
             phaseBars = new java.util.EnumMap<>(BuildPhase.class);
@@ -100,89 +119,93 @@ public class LoadBalancer extends BukkitRunnable {
             }
             bossBar = phaseBars.get(BuildPhase.GENERATION); // primary bar reference kept for cleanup
         }
-        runTaskTimer(plugin, 0L, 1L);
+        buildScheduler.add(this, weight, preempts);
     }
 
     public static synchronized void shutdown() {
+        BuildScheduler.shutdown();
         if (eventListener != null) {
             eventListener.unregister();
             eventListener = null;
         }
     }
 
+    /**
+     * Runs this build for up to {@code budgetNanos}; called by the {@link BuildScheduler} every tick.
+     * @return nanoseconds used
+     */
     @Override
-    public synchronized void run() {
+    public synchronized long tick(long budgetNanos) {
+        long startTime = System.nanoTime();
         try {
             if (isDone()) {
                 if (commandSender != null) {
-                    commandSender.sendMessage(MessageFileReader.getMessage("job-done"));
+                    commandSender.sendMessage(MessageFileReader.getMessage(jobProducer.getMessagePrefix() + "-done"));
+                    PlacementStats stats = jobProducer.getStats();
+                    if (stats != null) {
+                        commandSender.sendMessage("Placement " + stats.summary());
+                    }
                 }
                 cleanupBars();
-                this.cancel();
+                buildScheduler.remove(this);
                 ACTIVE.remove(this);
-                return;
+                jobProducer.discardCheckpoint();
+                jobProducer.close();
+                return System.nanoTime() - startTime;
             }
+            maybeCheckpoint();
 
-            // Auto-tune budget based on last tick spare time (Paper tick is ~50ms)
-            if (autoTune && LAST_TICK_START_NANOS > 0) {
-                long sinceTickStartNanos = System.nanoTime() - LAST_TICK_START_NANOS;
-                long spareNanos = TARGET_TICK_NANOS - sinceTickStartNanos;
-                if (spareNanosAvg == 0) {
-                    spareNanosAvg = spareNanos;
-                } else {
-                    spareNanosAvg = spareNanosAvg * 0.7 + spareNanos * 0.3; // smooth jitter
-                }
-                double spareMillis = spareNanosAvg / 1_000_000.0;
-                if (spareMillis >= spareHigh) {
-                    currentMillisPerTick = Math.min(maxMillisPerTick, currentMillisPerTick + incStep);
-                } else if (spareMillis < spareLow) {
-                    currentMillisPerTick = Math.max(minMillisPerTick, currentMillisPerTick - decStep);
-                }
+            long stopTime = startTime + budgetNanos;
+            if (dispatcher != null) {
+                dispatchJobs(stopTime);
+                return System.nanoTime() - startTime;
             }
 
-            long stopTime = System.nanoTime() + (currentMillisPerTick * 1_000_000L);
             mutex.acquire();
 
+            prefetchAhead();
+
             // Consume jobs within the time budget
-            boolean executedThisTick = false;
-            while (!jobs.isEmpty() && System.nanoTime() <= stopTime) {
+            int deferredThisTick = 0;
+            while (System.nanoTime() <= stopTime) {
+                if (jobs.isEmpty()) {
+                    // Refill within the budget instead of idling until next tick
+                    List<LoadBalancerJob> next = jobProducer.getJobs();
+                    if (next.isEmpty()) {
+                        break;
+                    }
+                    jobs.addAll(next);
+                }
                 LoadBalancerJob job = jobs.poll();
                 if (job != null) {
                     if (job instanceof ChunkAwareJob chunkJob) {
                         if (!chunkJob.prepareChunks()) {
-                            jobs.addLast(job); // defer to a future tick/budget
-                            if (!executedThisTick) {
-                                break; // avoid spinning when first job cannot run
+                            jobs.addLast(job); // defer until its chunk has arrived
+                            deferredThisTick++;
+                            // Skip past waiting jobs up to the lookahead, but never spin on a queue where nothing is ready
+                            if (deferredThisTick >= prefetchLookahead || deferredThisTick >= jobs.size()) {
+                                break;
                             }
                             continue;
                         }
                     }
-                    job.compute();
-                    executedThisTick = true;
-                    iterations++;
-                }
-                if (commandSender != null) {
-                    boolean sendChat = shouldSendChat();
-                    boolean sendBars = shouldSendBars();
-                    if (sendChat || sendBars) {
-                        double percentage = jobProducer.getProgressPercentage();
-                        PhaseProgressSnapshot phaseSnapshot = jobProducer.getPhaseProgress();
-                        if (sendChat) {
-                            sendChatStatus(percentage, phaseSnapshot);
-                            lastChatAtMillis = System.currentTimeMillis();
-                        }
-                        if (sendBars) {
-                            sendBarStatus(phaseSnapshot);
-                            lastBarAtMillis = System.currentTimeMillis();
+                    if (job instanceof SliceableJob sliceable) {
+                        if (!costModel.runSlice(sliceable, stopTime - System.nanoTime())) {
+                            jobs.addFirst(job); // out of time: the rest runs first next tick
+                            break;
                         }
+                    } else {
+                        job.compute();
                     }
+                    iterations++;
                 }
+                reportStatus();
             }
             // Top-up jobs if queue is low
             if (jobs.isEmpty()) {
                 List<LoadBalancerJob> next = jobProducer.getJobs();
                 if (next.isEmpty()) {
-                    if (jobs.isEmpty()) {
+                    if (jobs.isEmpty() && !jobProducer.isPending()) {
                         isDone = true;
                     }
                 } else {
@@ -193,8 +216,100 @@ public class LoadBalancer extends BukkitRunnable {
             mutex.release();
         } catch (Exception e) {
             e.printStackTrace();
-            this.cancel();
+            buildScheduler.remove(this);
+            if (dispatcher != null) {
+                dispatcher.cancel();
+            }
             ACTIVE.remove(this);
+            jobProducer.close();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Folia: hands jobs to the regions owning their chunks instead of running them here, keeping at most
+     * {@code scheduler.max-queued-jobs} of them queued on regions. The build is done once the producer is
+     * exhausted and every dispatched job has run.
+     */
+    private void dispatchJobs(long stopTime) {
+        RuntimeException failure = dispatcher.getFailure();
+        if (failure != null) {
+            throw failure;
+        }
+        while (System.nanoTime() <= stopTime && dispatcher.getProgress().getInFlight() < maxQueuedJobs) {
+            if (jobs.isEmpty()) {
+                List<LoadBalancerJob> next = jobProducer.getJobs();
+                if (next.isEmpty()) {
+                    break;
+                }
+                jobs.addAll(next);
+            }
+            LoadBalancerJob job = jobs.poll();
+            if (job instanceof ChunkBoundJob chunkJob) {
+                dispatcher.submit(chunkJob);
+            } else {
+                // Only jobs without world access can run on the global region
+                job.compute();
+            }
+            iterations++;
+        }
+        reportStatus();
+        if (jobs.isEmpty() && dispatcher.isIdle()) {
+            List<LoadBalancerJob> next = jobProducer.getJobs();
+            if (next.isEmpty()) {
+                if (!jobProducer.isPending()) {
+                    isDone = true;
+                }
+            } else {
+                jobs.addAll(next);
+            }
+        }
+    }
+
+    private void maybeCheckpoint() {
+        long now = System.currentTimeMillis();
+        if (checkpointIntervalMillis > 0 && now - lastCheckpointAtMillis >= checkpointIntervalMillis) {
+            lastCheckpointAtMillis = now;
+            jobProducer.checkpoint().exceptionally(e -> {
+                plugin.getLogger().warning("Maze checkpoint failed: " + e.getMessage());
+                return null;
+            });
+        }
+    }
+
+    private void reportStatus() {
+        if (commandSender == null) {
+            return;
+        }
+        boolean sendChat = shouldSendChat();
+        boolean sendBars = shouldSendBars();
+        if (sendChat || sendBars) {
+            double percentage = jobProducer.getProgressPercentage();
+            PhaseProgressSnapshot phaseSnapshot = jobProducer.getPhaseProgress();
+            if (sendChat) {
+                sendChatStatus(percentage, phaseSnapshot);
+                lastChatAtMillis = System.currentTimeMillis();
+            }
+            if (sendBars) {
+                sendBarStatus(phaseSnapshot);
+                lastBarAtMillis = System.currentTimeMillis();
+            }
+        }
+    }
+
+
+    /**
+     * Requests chunks of the next queued jobs so their async loads overlap with placement.
+     */
+    private void prefetchAhead() {
+        int seen = 0;
+        for (LoadBalancerJob job : jobs) {
+            if (seen++ >= prefetchLookahead || !ChunkLoadLimiter.hasFreeSlot()) {
+                return;
+            }
+            if (job instanceof ChunkAwareJob chunkJob && !chunkJob.prefetchChunks()) {
+                return;
+            }
         }
     }
 
@@ -204,10 +319,15 @@ public class LoadBalancer extends BukkitRunnable {
             if (commandSender != null) {
                 commandSender.sendMessage(MessageFileReader.getMessage("job-stopped"));
             }
-            this.cancel();
+            buildScheduler.remove(this);
+            if (dispatcher != null) {
+                dispatcher.cancel();
+            }
         } finally {
             cleanupBars();
             ACTIVE.remove(this);
+            jobProducer.discardCheckpoint();
+            jobProducer.close();
         }
     }
 
@@ -217,6 +337,41 @@ public class LoadBalancer extends BukkitRunnable {
         }
     }
 
+    /**
+     * Stops the build for a shutdown: writes a last checkpoint and keeps it, so the build can be resumed later.
+     */
+    public synchronized void suspend() {
+        try {
+            isDone = true;
+            buildScheduler.remove(this);
+            if (dispatcher != null) {
+                dispatcher.cancel();
+            }
+            if (checkpointIntervalMillis > 0) {
+                jobProducer.checkpoint().get(5, TimeUnit.SECONDS);
+            }
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Maze checkpoint did not finish writing before shutdown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            plugin.getLogger().warning("Maze checkpoint failed: " + e.getMessage());
+        } finally {
+            cleanupBars();
+            ACTIVE.remove(this);
+            jobProducer.close();
+        }
+    }
+
+    /**
+     * Suspends every running build; called when the plugin is disabled.
+     */
+    public static void suspendAll() {
+        for (LoadBalancer lb : ACTIVE.toArray(new LoadBalancer[0])) {
+            lb.suspend();
+        }
+    }
+
     private boolean shouldSendChat() {
         long now = System.currentTimeMillis();
         return (now - lastChatAtMillis) >= CHAT_INTERVAL_MS;
@@ -244,8 +399,31 @@ public class LoadBalancer extends BukkitRunnable {
         return jobProducer.getProgressPercentage();
     }
 
-    public int getCurrentMillisPerTick() {
-        return currentMillisPerTick;
+    public PlacementStats getStats() {
+        return jobProducer.getStats();
+    }
+
+    /**
+     * @return the global per-tick budget shared by all builds
+     */
+    public double getBudgetMillis() {
+        return buildScheduler.getBudgetMillis();
+    }
+
+    /**
+     * @return the part of the global budget this build was granted in its last tick
+     */
+    public double getShareMillis() {
+        return buildScheduler.getLastGrantNanos(this) / 1_000_000.0;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    private String formatBudget() {
+        return String.format("%.1f/%.1fms, weight %d%s", getShareMillis(), getBudgetMillis(), weight,
+                preempts ? ", preempting" : "");
     }
 
     private BarColor getPhaseColor(BuildPhase phase) {
@@ -262,17 +440,23 @@ public class LoadBalancer extends BukkitRunnable {
 
     private void sendChatStatus(double percentage, PhaseProgressSnapshot snapshot) {
         String phaseKey = snapshot != null ? snapshot.currentPhase().getKey() : "unknown";
-        String chat = MessageFileReader.getMessage("job-status")
+        String chat = MessageFileReader.getMessage(jobProducer.getMessagePrefix() + "-status")
                 .replace("%percentage%", String.format("%.2f", percentage))
                 .replace("%phase%", phaseKey)
-                + " [chunk loads: " + ChunkLoadLimiter.getConsumedLoads() + "/" + ChunkLoadLimiter.getBudgetPerTick()
-                + ", budget: " + currentMillisPerTick + "ms]";
+                + " [chunk loads in flight: " + ChunkLoadLimiter.getInFlight() + "/" + ChunkLoadLimiter.getMaxInFlight()
+                + ", budget: " + formatBudget() + "]";
+        PlacementStats stats = jobProducer.getStats();
         commandSender.sendMessage(chat);
         // Console instrumentation
         plugin.getLogger().info("[MazeGen] " + String.format("%.2f", percentage) + "%, "
                 + "jobs queue: " + jobs.size()
-                + ", chunk loads this tick: " + ChunkLoadLimiter.getConsumedLoads() + "/" + ChunkLoadLimiter.getBudgetPerTick()
-                + ", budget " + currentMillisPerTick + "ms");
+                + ", chunk loads in flight: " + ChunkLoadLimiter.getInFlight() + "/" + ChunkLoadLimiter.getMaxInFlight()
+                + " (started this tick: " + ChunkLoadLimiter.getStartedThisTick() + ")"
+                + ", budget " + formatBudget()
+                + ", " + costModel.summary()
+                + (dispatcher != null ? ", queued on regions: " + dispatcher.getProgress().getInFlight()
+                        + ", region threads used: " + dispatcher.getProgress().getThreadCount() : "")
+                + (stats != null ? ", " + stats.summary() : ""));
     }
 
     private void sendBarStatus(PhaseProgressSnapshot snapshot) {
@@ -0,0 +1,65 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+/**
+ * Feedback loop that sizes the per-tick maze budget from measured tick times, aiming to keep every tick under
+ * {@code autotune.mspt-ceiling}.
+ * While there is headroom the budget follows an incremental PI law: it grows by {@code gain-integral} times the
+ * headroom plus {@code gain-proportional} times its change, so it climbs quickly on an idle server and settles as
+ * ticks approach the ceiling. Headroom is the smaller of the last tick's and the rolling average's, so one quick tick
+ * does not hide a loaded server. A tick over the ceiling (or a server catching up on missed ticks) cuts the budget
+ * multiplicatively by {@code backoff} at once, so builds give way within a tick or two.
+ * The state is the budget itself, clamped to [{@code min-millis-per-tick}, {@code max-millis-per-tick}]; nothing is
+ * accumulated beyond the clamp, so there is no integral windup to unwind after a long idle or overloaded stretch.
+ */
+final class MsptController {
+
+    private final double ceilingMillis;
+    private final double minMillis;
+    private final double maxMillis;
+    private final double proportionalGain;
+    private final double integralGain;
+    private final double backoff;
+    private double budgetMillis;
+    private double lastError = Double.NaN;
+
+    MsptController(double initialMillis, double minMillis, double maxMillis, double ceilingMillis,
+                   double proportionalGain, double integralGain, double backoff) {
+        this.minMillis = Math.max(0.1, minMillis);
+        this.maxMillis = Math.max(this.minMillis, maxMillis);
+        this.ceilingMillis = ceilingMillis;
+        this.proportionalGain = Math.max(0.0, proportionalGain);
+        this.integralGain = Math.max(0.0, integralGain);
+        this.backoff = Math.min(1.0, Math.max(0.0, backoff));
+        this.budgetMillis = clamp(initialMillis);
+    }
+
+    /**
+     * Feeds one finished tick.
+     * @param tickMillis how long the tick took
+     * @param averageMillis rolling average tick time reported by the server
+     * @param behind true if the server is already late for the next tick
+     * @return the budget for the next tick, in milliseconds
+     */
+    double update(double tickMillis, double averageMillis, boolean behind) {
+        double error = ceilingMillis - tickMillis;
+        if (error < 0 || behind) {
+            budgetMillis = clamp(budgetMillis * backoff);
+            // No proportional kick from the jump back to headroom once the spike is over
+            lastError = Double.NaN;
+            return budgetMillis;
+        }
+        error = Math.min(error, ceilingMillis - averageMillis);
+        double change = Double.isNaN(lastError) ? 0 : error - lastError;
+        budgetMillis = clamp(budgetMillis + proportionalGain * change + integralGain * error);
+        lastError = error;
+        return budgetMillis;
+    }
+
+    double getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    private double clamp(double millis) {
+        return Math.max(minMillis, Math.min(maxMillis, millis));
+    }
+}
@@ -1,13 +1,16 @@
 package it.nicoloscialpi.mazegenerator.loadbalancer;
 
-import it.nicoloscialpi.mazegenerator.MazeGeneratorPlugin;
+import it.nicoloscialpi.mazegenerator.ownership.MazeOwnership;
+import it.nicoloscialpi.mazegenerator.ownership.OwnershipBitset;
 import it.nicoloscialpi.mazegenerator.themes.Theme;
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
 import org.bukkit.Material;
-import org.bukkit.NamespacedKey;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.persistence.PersistentDataType;
-import com.jeff_media.customblockdata.CustomBlockData;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
 
 import static it.nicoloscialpi.mazegenerator.maze.MazeGenerator.WALL;
 
@@ -24,9 +27,12 @@ public class PlaceCellJob implements LoadBalancerJob, ChunkAwareJob {
     private final boolean hollow;
     private final World world;
     private final boolean setBlockData;
+    private final SplittableRandom random;
+    // Ownership marks per chunk the cell covers, merged once the cell is placed
+    private final Map<Long, OwnershipBitset> owned = new HashMap<>();
 
     public PlaceCellJob(int worldX, int worldY, int worldZ, byte type, Theme theme, int height, int cellSize,
-                        boolean closed, boolean hollow, World world, boolean setBlockData) {
+                        boolean closed, boolean hollow, World world, boolean setBlockData, SplittableRandom random) {
         this.worldX = worldX;
         this.worldY = worldY;
         this.worldZ = worldZ;
@@ -38,6 +44,7 @@ public class PlaceCellJob implements LoadBalancerJob, ChunkAwareJob {
         this.hollow = hollow;
         this.world = world;
         this.setBlockData = setBlockData;
+        this.random = random;
     }
 
     @Override
@@ -63,7 +70,7 @@ public class PlaceCellJob implements LoadBalancerJob, ChunkAwareJob {
         int y = 0;
         for (int x = 0; x < cellSize; x++) {
             for (int z = 0; z < cellSize; z++) {
-                Material material = theme.getRandomFloorMaterial();
+                Material material = theme.getRandomFloorMaterial(random);
                 setBlock(worldX + x, worldY + y, worldZ + z, material);
             }
         }
@@ -75,7 +82,7 @@ public class PlaceCellJob implements LoadBalancerJob, ChunkAwareJob {
                     if (type == WALL) {
                         // For hollow columns, only edges
                         if (!hollow || x == 0 || x == cellSize - 1 || z == 0 || z == cellSize - 1) {
-                            Material material = theme.getRandomWallMaterial();
+                            Material material = theme.getRandomWallMaterial(random);
                             setBlock(worldX + x, worldY + y, worldZ + z, material);
                         }
                     } else {
@@ -91,7 +98,7 @@ public class PlaceCellJob implements LoadBalancerJob, ChunkAwareJob {
             for (int z = 0; z < cellSize; z++) {
                 if (closed || type == WALL) {
                     if (!hollow || x == 0 || x == cellSize - 1 || z == 0 || z == cellSize - 1) {
-                        Material material = theme.getRandomTopMaterial();
+                        Material material = theme.getRandomTopMaterial(random);
                         setBlock(worldX + x, worldY + y, worldZ + z, material);
                     }
                 } else {
@@ -100,19 +107,20 @@ public class PlaceCellJob implements LoadBalancerJob, ChunkAwareJob {
                 }
             }
         }
+
+        for (Map.Entry<Long, OwnershipBitset> entry : owned.entrySet()) {
+            MazeOwnership.merge(world.getChunkAt(ChunkKeys.x(entry.getKey()), ChunkKeys.z(entry.getKey())), entry.getValue());
+        }
+        owned.clear();
     }
 
     private void setBlock(int x, int y, int z, Material material) {
         Block block = world.getBlockAt(x, y, z);
-        if (block.getType() == material) {
-            if (!setBlockData) return;
-        } else {
+        if (block.getType() != material) {
             block.setType(material, false); // no physics for speed
         }
         if (setBlockData) {
-            CustomBlockData data = new CustomBlockData(block, MazeGeneratorPlugin.plugin);
-            NamespacedKey key = new NamespacedKey(MazeGeneratorPlugin.plugin, "block");
-            data.set(key, PersistentDataType.STRING, "BLOCK");
+            owned.computeIfAbsent(ChunkKeys.ofBlock(x, z), k -> new OwnershipBitset()).mark(x & 15, y, z & 15);
         }
     }
 
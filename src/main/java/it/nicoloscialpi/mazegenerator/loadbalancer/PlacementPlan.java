@@ -0,0 +1,72 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import java.util.Arrays;
+
+/**
+ * Flat list of block writes inside one chunk: packed local positions and palette indices of a compiled theme.
+ * Built off the main thread by {@link BatchPlaceCellsJob}, cut down off it to the entries that differ from the chunk,
+ * then replayed into the world on it.
+ * Positions pack {@code y << 8 | z << 4 | x} with chunk-local x/z and the absolute (signed) y.
+ */
+final class PlacementPlan {
+
+    private int[] positions;
+    private short[] blocks;
+    private int size = 0;
+    private long cells = 0;
+
+    PlacementPlan(int expectedBlocks) {
+        int capacity = Math.max(16, expectedBlocks);
+        this.positions = new int[capacity];
+        this.blocks = new short[capacity];
+    }
+
+    void add(int localX, int y, int localZ, int paletteIndex) {
+        if (size == positions.length) {
+            int grown = positions.length * 2;
+            positions = Arrays.copyOf(positions, grown);
+            blocks = Arrays.copyOf(blocks, grown);
+        }
+        positions[size] = (y << 8) | ((localZ & 15) << 4) | (localX & 15);
+        blocks[size] = (short) paletteIndex;
+        size++;
+    }
+
+    /**
+     * Copies entry {@code i} of another plan.
+     */
+    void addEntry(PlacementPlan other, int i) {
+        add(other.x(i), other.y(i), other.z(i), other.block(i));
+    }
+
+    void addCells(long count) {
+        cells += count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return maze cells whose origin lies in the planned pieces
+     */
+    long cells() {
+        return cells;
+    }
+
+    int x(int i) {
+        return positions[i] & 15;
+    }
+
+    int y(int i) {
+        return positions[i] >> 8;
+    }
+
+    int z(int i) {
+        return (positions[i] >>> 4) & 15;
+    }
+
+    int block(int i) {
+        return blocks[i];
+    }
+}
@@ -0,0 +1,93 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-build placement counters, shared by the producer and its jobs.
+ * Lets us compare placement modes by how many block writes each maze cell costs.
+ */
+public final class PlacementStats {
+
+    private final long mazeCells;
+    private final LongAdder cellPlacements = new LongAdder();
+    private final LongAdder blocksWritten = new LongAdder();
+    private final LongAdder chunkLoads = new LongAdder();
+    private final LongAdder chunkReloads = new LongAdder();
+    private volatile int pinnedChunks = 0;
+
+    public PlacementStats(long mazeCells) {
+        this.mazeCells = Math.max(1, mazeCells);
+    }
+
+    public void recordCell() {
+        cellPlacements.increment();
+    }
+
+    public void recordCells(long cells) {
+        cellPlacements.add(cells);
+    }
+
+    public void recordBlockWrite() {
+        blocksWritten.increment();
+    }
+
+    public void recordChunkLoad() {
+        chunkLoads.increment();
+    }
+
+    public void recordChunkReload() {
+        chunkReloads.increment();
+    }
+
+    public void setPinnedChunks(int pinned) {
+        this.pinnedChunks = pinned;
+    }
+
+    public long getMazeCells() {
+        return mazeCells;
+    }
+
+    /**
+     * @return cells handed to placement jobs; exceeds the maze size when cells are placed more than once
+     */
+    public long getCellPlacements() {
+        return cellPlacements.sum();
+    }
+
+    /**
+     * @return blocks whose type actually changed
+     */
+    public long getBlocksWritten() {
+        return blocksWritten.sum();
+    }
+
+    /**
+     * @return chunks this build had to load; a chunk that was unloaded and revisited counts again
+     */
+    public long getChunkLoads() {
+        return chunkLoads.sum();
+    }
+
+    /**
+     * @return chunks that had to be loaded again after this build had already placed blocks in them
+     */
+    public long getChunkReloads() {
+        return chunkReloads.sum();
+    }
+
+    /**
+     * @return chunks currently held loaded by this build's chunk tickets
+     */
+    public int getPinnedChunks() {
+        return pinnedChunks;
+    }
+
+    public double getBlocksPerCell() {
+        return (double) getBlocksWritten() / (double) mazeCells;
+    }
+
+    public String summary() {
+        return String.format("cells placed: %d/%d, blocks written: %d (%.2f per cell), chunk loads: %d (reloads: %d), pinned chunks: %d",
+                getCellPlacements(), mazeCells, getBlocksWritten(), getBlocksPerCell(), getChunkLoads(), getChunkReloads(), getPinnedChunks());
+    }
+}
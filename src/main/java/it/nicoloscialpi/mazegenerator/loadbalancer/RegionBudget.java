@@ -0,0 +1,59 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Placement time each owning thread may spend per tick window, shared by every build's {@link RegionDispatcher}.
+ * Folia does not expose region identity, so the window is kept per thread: regions ticked by the same thread share
+ * it, which only ever makes it stricter.
+ */
+final class RegionBudget {
+
+    private static final long TICK_NANOS = 50_000_000L;
+
+    private final LongSupplier clock;
+    private volatile long budgetNanos;
+    // Start of the current tick window and the time spent in it, per owning thread
+    private final ThreadLocal<long[]> window = ThreadLocal.withInitial(() -> new long[]{Long.MIN_VALUE, 0L});
+
+    RegionBudget(long budgetNanos) {
+        this(budgetNanos, System::nanoTime);
+    }
+
+    RegionBudget(long budgetNanos, LongSupplier clock) {
+        this.clock = clock;
+        setBudgetNanos(budgetNanos);
+    }
+
+    void setBudgetNanos(long budgetNanos) {
+        this.budgetNanos = Math.max(1L, budgetNanos);
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * @return true if the calling thread has time left in its current tick window
+     */
+    boolean hasTime() {
+        long[] spent = window.get();
+        long now = clock.getAsLong();
+        if (spent[0] == Long.MIN_VALUE || now - spent[0] >= TICK_NANOS) {
+            spent[0] = now;
+            spent[1] = 0L;
+        }
+        return spent[1] < budgetNanos;
+    }
+
+    /**
+     * @return time the calling thread has left in the window {@link #hasTime()} last looked at
+     */
+    long remainingNanos() {
+        return budgetNanos - window.get()[1];
+    }
+
+    void spend(long nanos) {
+        window.get()[1] += nanos;
+    }
+}
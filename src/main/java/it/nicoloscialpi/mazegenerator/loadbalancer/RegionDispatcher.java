@@ -0,0 +1,146 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.World;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a build's chunk-bound jobs on the threads owning their chunks (Folia regions) instead of on one thread.
+ * Jobs are queued per chunk; the first job of an idle chunk schedules a drain task on the chunk's owner, which
+ * runs the chunk's jobs in submission order until the queue is empty, a job has to wait for its chunk, or the
+ * thread's {@link RegionBudget} is spent, and then reschedules itself for the next tick. A {@link SliceableJob} is cut
+ * by the {@link CostModel} to the time the thread has left, and its remainder stays at the head of the queue.
+ * Completed jobs are counted in a {@link JobProgress} that any thread may read.
+ */
+final class RegionDispatcher {
+
+    private final SchedulerBackend scheduler;
+    private final RegionBudget budget;
+    private final CostModel costModel;
+    private final JobProgress progress = new JobProgress();
+    private final ConcurrentHashMap<Long, ChunkQueue> queues = new ConcurrentHashMap<>();
+    private volatile boolean cancelled = false;
+    private volatile RuntimeException failure = null;
+
+    RegionDispatcher(SchedulerBackend scheduler, RegionBudget budget, CostModel costModel) {
+        this.scheduler = scheduler;
+        this.budget = budget;
+        this.costModel = costModel;
+    }
+
+    private static final class ChunkQueue {
+        final long key;
+        final World world;
+        final int chunkX;
+        final int chunkZ;
+        final ConcurrentLinkedQueue<ChunkBoundJob> jobs = new ConcurrentLinkedQueue<>();
+        // True while a drain task for this queue is scheduled or running
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        ChunkQueue(long key, World world, int chunkX, int chunkZ) {
+            this.key = key;
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+    }
+
+    /**
+     * Queues the job on its chunk. Safe to call from any thread.
+     */
+    public void submit(ChunkBoundJob job) {
+        progress.recordSubmitted();
+        if (cancelled) {
+            progress.recordCompleted(0);
+            return;
+        }
+        int chunkX = job.getChunkX();
+        int chunkZ = job.getChunkZ();
+        // Adding inside compute keeps a drained queue from being removed while this job goes into it
+        ChunkQueue queue = queues.compute(ChunkKeys.pack(chunkX, chunkZ), (key, existing) -> {
+            ChunkQueue q = existing != null ? existing : new ChunkQueue(key, job.getWorld(), chunkX, chunkZ);
+            q.jobs.add(job);
+            return q;
+        });
+        if (queue.scheduled.compareAndSet(false, true)) {
+            schedule(queue, 0);
+        }
+    }
+
+    /**
+     * @return true once every submitted job has run (or was dropped by {@link #cancel()})
+     */
+    public boolean isIdle() {
+        return progress.getInFlight() == 0;
+    }
+
+    public JobProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return the first exception thrown by a job, after which the dispatcher stops running jobs
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Drops every queued job; drain tasks already scheduled finish without running anything.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void schedule(ChunkQueue queue, long delayTicks) {
+        scheduler.runAtChunk(queue.world, queue.chunkX, queue.chunkZ, () -> drain(queue), delayTicks);
+    }
+
+    private void drain(ChunkQueue queue) {
+        ChunkBoundJob job;
+        while ((job = queue.jobs.peek()) != null) {
+            if (cancelled) {
+                queue.jobs.poll();
+                progress.recordCompleted(0);
+                continue;
+            }
+            if (!budget.hasTime() || !job.prepareChunks()) {
+                // Out of time on this thread, or the job waits for its chunk or plan: try again next tick
+                schedule(queue, 1);
+                return;
+            }
+            long start = budget.now();
+            boolean done = true;
+            try {
+                if (job instanceof SliceableJob sliceable) {
+                    done = costModel.runSlice(sliceable, budget.remainingNanos());
+                } else {
+                    job.compute();
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                cancelled = true;
+            }
+            long elapsed = budget.now() - start;
+            budget.spend(elapsed);
+            if (!done && !cancelled) {
+                // The rest of the job runs first next tick
+                schedule(queue, 1);
+                return;
+            }
+            queue.jobs.poll();
+            progress.recordCompleted(elapsed);
+        }
+        queue.scheduled.set(false);
+        queues.computeIfPresent(queue.key, (key, q) -> q == queue && q.jobs.isEmpty() ? null : q);
+        // A job submitted after the last peek found the task still scheduled and left the rescheduling to us
+        if (!queue.jobs.isEmpty() && queue.scheduled.compareAndSet(false, true)) {
+            schedule(queue, 0);
+        }
+    }
+}
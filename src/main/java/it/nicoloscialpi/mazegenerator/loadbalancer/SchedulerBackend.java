@@ -0,0 +1,98 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * The server's task scheduling, behind one interface so the plugin runs on both Paper and Folia.
+ * Paper runs everything on the main thread; Folia has no main thread, only a global region thread and region
+ * threads that each own a set of chunks, so world access has to be scheduled on the region owning the chunk.
+ * The backend is selected once at startup by {@link #select(JavaPlugin)}.
+ */
+public interface SchedulerBackend {
+
+    /**
+     * Handle of a repeating task.
+     */
+    interface Task {
+        void cancel();
+    }
+
+    /**
+     * Runs the task every {@code periodTicks} ticks, starting with the next tick, on the thread that owns global state
+     * (the main thread on Paper, the global region thread on Folia).
+     */
+    Task runAtFixedRate(Runnable task, long periodTicks);
+
+    /**
+     * Runs the task on the thread owning the chunk after {@code delayTicks} ticks (0 = as soon as possible).
+     */
+    void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks);
+
+    /**
+     * @return true if the calling thread may access the chunk right now
+     */
+    boolean ownsChunk(World world, int chunkX, int chunkZ);
+
+    /**
+     * @return true if chunks are owned by several threads, so jobs have to be dispatched to their chunk's owner
+     */
+    boolean isRegionized();
+
+    /**
+     * Cancels every task this plugin scheduled. Called when the plugin is disabled.
+     */
+    void cancelAll();
+
+    /**
+     * Runs the task right away if the calling thread owns the chunk, otherwise schedules it on the owner.
+     */
+    default void executeAtChunk(World world, int chunkX, int chunkZ, Runnable task) {
+        if (ownsChunk(world, chunkX, chunkZ)) {
+            task.run();
+        } else {
+            runAtChunk(world, chunkX, chunkZ, task, 0);
+        }
+    }
+
+    /**
+     * Picks the backend for this server: {@code scheduler.backend} in the config, or auto-detection of Folia.
+     */
+    static SchedulerBackend select(JavaPlugin plugin) {
+        String backend = plugin.getConfig().getString("scheduler.backend", "auto");
+        boolean folia = switch (backend == null ? "auto" : backend.toLowerCase()) {
+            case "folia" -> true;
+            case "bukkit", "paper" -> false;
+            default -> isFolia();
+        };
+        Holder.current = folia ? new FoliaSchedulerBackend(plugin) : new BukkitSchedulerBackend(plugin);
+        return Holder.current;
+    }
+
+    /**
+     * @return the backend picked at startup
+     * @throws IllegalStateException if {@link #select(JavaPlugin)} has not run yet
+     */
+    static SchedulerBackend current() {
+        SchedulerBackend backend = Holder.current;
+        if (backend == null) {
+            throw new IllegalStateException("No scheduler backend selected");
+        }
+        return backend;
+    }
+
+    private static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    final class Holder {
+        private static volatile SchedulerBackend current;
+
+        private Holder() {}
+    }
+}
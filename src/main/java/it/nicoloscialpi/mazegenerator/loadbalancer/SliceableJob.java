@@ -0,0 +1,34 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+/**
+ * Jobs whose block writes can be run a slice at a time, so the {@link CostModel} can cut them to the time left in
+ * a tick. The job keeps its place (and its chunk) until the last slice has run.
+ */
+public interface SliceableJob extends LoadBalancerJob {
+
+    /**
+     * @return key the cost model learns this job's per-block cost under, one per job type
+     */
+    String getCostKey();
+
+    /**
+     * @return false if the job's chunk had to be loaded for it, true if it was already loaded
+     */
+    boolean wasChunkLoaded();
+
+    /**
+     * @return block writes not yet run (planned positions until the job knows which of them change the world)
+     */
+    long getRemainingBlocks();
+
+    /**
+     * Runs up to {@code maxBlocks} of the remaining block writes.
+     * @return true once the job is complete
+     */
+    boolean computeSlice(long maxBlocks);
+
+    @Override
+    default void compute() {
+        computeSlice(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,64 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer thread.
+ * Each side only writes its own index; the other side reads it to detect full/empty.
+ */
+final class SpscRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to write, written by the producer
+
+    SpscRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Producer side.
+     * @return false if the buffer is full
+     */
+    boolean offer(T value) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        slots.lazySet((int) (t & mask), value);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side.
+     * @return the oldest element, or null if the buffer is empty
+     */
+    T poll() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        int slot = (int) (h & mask);
+        T value = slots.get(slot);
+        slots.lazySet(slot, null);
+        head.lazySet(h + 1);
+        return value;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
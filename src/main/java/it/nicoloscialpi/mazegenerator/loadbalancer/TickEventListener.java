@@ -1,5 +1,6 @@
 package it.nicoloscialpi.mazegenerator.loadbalancer;
 
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
 import com.destroystokyo.paper.event.server.ServerTickStartEvent;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.HandlerList;
@@ -18,7 +19,11 @@ class TickEventListener implements Listener {
 
     @EventHandler
     public void onTick(ServerTickStartEvent event) {
-        LoadBalancer.LAST_TICK_START_NANOS = System.nanoTime();
         ChunkLoadLimiter.resetBudget();
     }
+
+    @EventHandler
+    public void onTickEnd(ServerTickEndEvent event) {
+        BuildScheduler.tickEnded(event.getTickDuration(), event.getTimeRemaining());
+    }
 }
@@ -0,0 +1,134 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Everything needed to pick an interrupted build up again: the build options, the placement settings the order
+ * of cells depends on, and how many cells of that order have been placed.
+ * Generation is deterministic for a seed, so the maze is not stored: a resumed build carves it again from the seed
+ * and skips the first {@link #placedCells()} cells instead of writing them (see {@link MazeStreamPlacer}).
+ * Encoded as a small versioned binary record with a CRC, see {@link CheckpointStore}.
+ * @param owner UUID of the player who started the build, or null for the console
+ * @param settings placement settings, or null until the placer has resolved them from the config
+ * @param placedCells length of the prefix of the build's cell order whose jobs have all been applied
+ */
+public record BuildCheckpoint(UUID id, UUID owner, UUID worldId, int x, int y, int z, String themeName,
+                              int height, int cellSize, boolean closed, boolean hollow, int sizeN, int sizeM,
+                              int additionalExits, double erosion, boolean hasRoom, int roomSizeX, int roomSizeZ,
+                              boolean hasExits, long seed, String algorithm, int priority,
+                              Settings settings, long placedCells) {
+
+    private static final int MAGIC = 0x4D5A434B; // "MZCK"
+    private static final int VERSION = 1;
+
+    /**
+     * Config values the cell order depends on; a resumed build keeps these even if the config changed since.
+     */
+    public record Settings(boolean singlePass, boolean deferWallFill, boolean rowMajor, int tileSize) {
+    }
+
+    public BuildCheckpoint withSettings(Settings settings) {
+        return new BuildCheckpoint(id, owner, worldId, x, y, z, themeName, height, cellSize, closed, hollow, sizeN, sizeM,
+                additionalExits, erosion, hasRoom, roomSizeX, roomSizeZ, hasExits, seed, algorithm, priority,
+                settings, placedCells);
+    }
+
+    public BuildCheckpoint withPlacedCells(long placedCells) {
+        return new BuildCheckpoint(id, owner, worldId, x, y, z, themeName, height, cellSize, closed, hollow, sizeN, sizeM,
+                additionalExits, erosion, hasRoom, roomSizeX, roomSizeZ, hasExits, seed, algorithm, priority,
+                settings, placedCells);
+    }
+
+    public byte[] encode() {
+        if (settings == null) {
+            throw new IllegalStateException("Placement settings are not resolved yet");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(192);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeUuid(out, id);
+            out.writeBoolean(owner != null);
+            if (owner != null) {
+                writeUuid(out, owner);
+            }
+            writeUuid(out, worldId);
+            out.writeInt(x);
+            out.writeInt(y);
+            out.writeInt(z);
+            out.writeUTF(themeName);
+            out.writeInt(height);
+            out.writeInt(cellSize);
+            out.writeBoolean(closed);
+            out.writeBoolean(hollow);
+            out.writeInt(sizeN);
+            out.writeInt(sizeM);
+            out.writeInt(additionalExits);
+            out.writeDouble(erosion);
+            out.writeBoolean(hasRoom);
+            out.writeInt(roomSizeX);
+            out.writeInt(roomSizeZ);
+            out.writeBoolean(hasExits);
+            out.writeLong(seed);
+            out.writeUTF(algorithm);
+            out.writeInt(priority);
+            out.writeBoolean(settings.singlePass());
+            out.writeBoolean(settings.deferWallFill());
+            out.writeBoolean(settings.rowMajor());
+            out.writeInt(settings.tileSize());
+            out.writeLong(placedCells);
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if the data is truncated, from another version or fails its checksum
+     */
+    public static BuildCheckpoint decode(byte[] data) throws IOException {
+        if (data.length < Long.BYTES) {
+            throw new IOException("Checkpoint is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - Long.BYTES);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a maze checkpoint");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            UUID id = readUuid(in);
+            UUID owner = in.readBoolean() ? readUuid(in) : null;
+            BuildCheckpoint checkpoint = new BuildCheckpoint(id, owner, readUuid(in), in.readInt(), in.readInt(), in.readInt(),
+                    in.readUTF(), in.readInt(), in.readInt(), in.readBoolean(), in.readBoolean(), in.readInt(), in.readInt(),
+                    in.readInt(), in.readDouble(), in.readBoolean(), in.readInt(), in.readInt(), in.readBoolean(),
+                    in.readLong(), in.readUTF(), in.readInt(),
+                    new Settings(in.readBoolean(), in.readBoolean(), in.readBoolean(), in.readInt()), in.readLong());
+            if (in.readLong() != crc.getValue() || in.available() != 0) {
+                throw new IOException("Checkpoint checksum mismatch");
+            }
+            return checkpoint;
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
@@ -0,0 +1,264 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * Shared state and helpers for engines that carve passages into an initially solid grid and stream
+ * each newly opened cell once: the carve grid, the outbox, erosion holes, exits and the room.
+ * Subclasses only implement {@link #carveStep()}.
+ */
+public abstract class CarvingMazeGenerator implements MazeAlgorithm {
+
+    public static final byte PATH = MazeGenerator.PATH;
+    public static final byte WALL = MazeGenerator.WALL;
+    public static final byte EXIT = MazeGenerator.EXIT;
+    public static final byte HOLE = MazeGenerator.HOLE;
+    public static final byte ROOM = MazeGenerator.ROOM;
+
+    protected final int sizeN;
+    protected final int sizeM;
+    protected final double holeProbability;
+    protected final boolean hasExits;
+    protected final int additionalExits;
+    protected final boolean hasRoom;
+    protected final int roomHeight;
+    protected final int roomWidth;
+
+    protected final SplittableRandom random;
+
+    // Carve state: a cell is visited (and emitted, exactly once) as soon as it is no longer WALL
+    protected final MazeGrid grid;
+
+    // Direction vectors, indexed 0..3 (east, south, west, north); random choices pick a bit from a 4-bit mask
+    protected static final int[] DR = {0, 1, 0, -1};
+    protected static final int[] DC = {1, 0, -1, 0};
+
+    // Outbox ring buffer of cells to emit to the placer (capacity is a power of two)
+    private int[] outR = new int[64];
+    private int[] outC = new int[64];
+    private byte[] outType = new byte[64];
+    private int outHead = 0;
+    private int outSize = 0;
+
+    private final int exitsToPlace;
+    private int exitsPlaced = 0;
+
+    private long emittedCount = 0;
+    private final long totalCells;
+
+    protected CarvingMazeGenerator(int sizeN, int sizeM,
+                                   int additionalExits,
+                                   double holeProbability,
+                                   boolean hasRoom,
+                                   int roomHeight,
+                                   int roomWidth,
+                                   boolean hasExits,
+                                   SplittableRandom random,
+                                   LongFunction<WordStore> storage) {
+        this.random = random;
+        this.sizeN = (sizeN % 2 == 0) ? sizeN + 1 : sizeN;
+        this.sizeM = (sizeM % 2 == 0) ? sizeM + 1 : sizeM;
+        this.holeProbability = Math.max(0.0, Math.min(1.0, holeProbability));
+        this.hasRoom = hasRoom;
+        this.roomHeight = Math.max(1, roomHeight);
+        this.roomWidth = Math.max(1, roomWidth);
+        this.hasExits = hasExits;
+        this.additionalExits = Math.max(0, additionalExits);
+        this.exitsToPlace = (hasExits ? 1 : 0) + this.additionalExits;
+
+        this.grid = new MazeGrid(this.sizeN, this.sizeM, storage);
+        this.totalCells = grid.getCellCount();
+    }
+
+    /**
+     * Performs one unit of carving work, pushing any opened cells through {@link #pushPath}.
+     * @return false once there is nothing left to carve
+     */
+    protected abstract boolean carveStep();
+
+    /**
+     * @return true once {@link #carveStep()} has nothing left to do
+     */
+    protected abstract boolean isCarvingDone();
+
+    @Override
+    public long getTotalCells() { return totalCells; }
+    @Override
+    public MazeGrid getGrid() { return grid; }
+
+    @Override
+    public void close() {
+        grid.close();
+    }
+    @Override
+    public long getEmittedCount() { return emittedCount; }
+
+    @Override
+    public boolean isComplete() {
+        return isCarvingDone() && outSize == 0;
+    }
+
+    @Override
+    public List<IncrementalMazeGenerator.Cell> pollNextCells(int max) {
+        int[] buffer = new int[Math.max(1, max) * 3];
+        int count = pollNextCells(buffer, max);
+        ArrayList<IncrementalMazeGenerator.Cell> result = new ArrayList<>(count);
+        for (int i = 0; i < count * 3; i += 3) {
+            result.add(new IncrementalMazeGenerator.Cell(buffer[i], buffer[i + 1], (byte) buffer[i + 2]));
+        }
+        return result;
+    }
+
+    /**
+     * Allocation-free variant used by the placer: carving, the outbox and this call touch only primitives.
+     */
+    @Override
+    public int pollNextCells(int[] buffer, int max) {
+        int limit = Math.min(max, buffer.length / 3);
+        // Fill from outbox first
+        int count = drainOutbox(buffer, 0, limit);
+        while (count < limit && carveStep()) {
+            count = drainOutbox(buffer, count, limit);
+        }
+        return count;
+    }
+
+    private int drainOutbox(int[] buffer, int count, int limit) {
+        int mask = outR.length - 1;
+        while (outSize > 0 && count < limit) {
+            int base = count * 3;
+            buffer[base] = outR[outHead];
+            buffer[base + 1] = outC[outHead];
+            buffer[base + 2] = outType[outHead];
+            outHead = (outHead + 1) & mask;
+            outSize--;
+            count++;
+            emittedCount++;
+        }
+        return count;
+    }
+
+    private void offer(int r, int c, byte type) {
+        if (outSize == outR.length) {
+            growOutbox();
+        }
+        int tail = (outHead + outSize) & (outR.length - 1);
+        outR[tail] = r;
+        outC[tail] = c;
+        outType[tail] = type;
+        outSize++;
+    }
+
+    private void growOutbox() {
+        int capacity = outR.length;
+        int[] nextR = new int[capacity * 2];
+        int[] nextC = new int[capacity * 2];
+        byte[] nextType = new byte[capacity * 2];
+        for (int i = 0; i < outSize; i++) {
+            int from = (outHead + i) & (capacity - 1);
+            nextR[i] = outR[from];
+            nextC[i] = outC[from];
+            nextType[i] = outType[from];
+        }
+        outR = nextR;
+        outC = nextC;
+        outType = nextType;
+        outHead = 0;
+    }
+
+    protected void maybeAddHole(int r, int c) {
+        if (holeProbability <= 0) return;
+        if (random.nextDouble() < holeProbability) {
+            int mask = 0;
+            for (int d = 0; d < 4; d++) {
+                int nr = r + DR[d];
+                int nc = c + DC[d];
+                if (isWithin(nr, nc) && !isVisited(nr, nc)) {
+                    mask |= 1 << d;
+                }
+            }
+            if (mask != 0) {
+                // Turn a wall cell adjacent into a hole (treated as PATH for placement)
+                int d = randomDirection(mask);
+                pushPath(r + DR[d], c + DC[d], HOLE);
+            }
+        }
+    }
+
+    protected void maybeOpenExit(int r, int c, int d) {
+        if (!hasExits || exitsPlaced >= exitsToPlace) return;
+        // If this carved cell is adjacent to the border in the direction we moved, open the border cell as exit.
+        int br = r + DR[d];
+        int bc = c + DC[d];
+        if (isBorder(br, bc)) {
+            if (!isVisited(br, bc)) {
+                pushPath(br, bc, EXIT);
+                exitsPlaced++;
+            }
+        }
+    }
+
+    protected void addCentralRoom() {
+        int startR = Math.max(1, (sizeN - roomHeight) / 2);
+        int startC = Math.max(1, (sizeM - roomWidth) / 2);
+        int endR = Math.min(sizeN - 2, startR + roomHeight - 1);
+        int endC = Math.min(sizeM - 2, startC + roomWidth - 1);
+        for (int r = startR; r <= endR; r++) {
+            for (int c = startC; c <= endC; c++) {
+                pushPath(r, c, ROOM);
+            }
+        }
+    }
+
+    protected void pushPath(int r, int c, byte type) {
+        // Emit only once per coordinate: the first type written wins
+        long idx = grid.index(r, c);
+        if (!grid.isOpen(idx)) {
+            grid.set(idx, type);
+            offer(r, c, type);
+        }
+    }
+
+    protected boolean isWithin(int r, int c) {
+        return r > 0 && r < sizeN - 1 && c > 0 && c < sizeM - 1;
+    }
+
+    protected boolean isBorder(int r, int c) {
+        return (r == 0 || r == sizeN - 1 || c == 0 || c == sizeM - 1);
+    }
+
+    protected long index(int r, int c) { return grid.index(r, c); }
+    protected boolean isVisited(int r, int c) { return grid.isOpen(r, c); }
+
+    /**
+     * @return 4-bit mask of the directions whose unit cell two steps away is inside the grid and not yet carved
+     */
+    protected int openDirections(int r, int c) {
+        int mask = 0;
+        for (int d = 0; d < 4; d++) {
+            int nr = r + DR[d] * 2;
+            int nc = c + DC[d] * 2;
+            if (isWithin(nr, nc) && !isVisited(nr, nc)) {
+                mask |= 1 << d;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Picks one set bit of a non-empty 4-bit direction mask uniformly at random.
+     */
+    protected int randomDirection(int mask) {
+        int k = random.nextInt(Integer.bitCount(mask));
+        while (k-- > 0) {
+            mask &= mask - 1;
+        }
+        return Integer.numberOfTrailingZeros(mask);
+    }
+
+    protected int randomOdd(int limit) {
+        int value = random.nextInt(Math.max(1, limit / 2)) * 2 + 1;
+        return Math.min(value, limit - 2);
+    }
+}
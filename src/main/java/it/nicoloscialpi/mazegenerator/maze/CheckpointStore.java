@@ -0,0 +1,170 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import it.nicoloscialpi.mazegenerator.MazeGeneratorPlugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+/**
+ * Checkpoint files of running builds under {@code plugins/MazeGenerator/checkpoints}, one per build.
+ * Writes go to a temporary file that is then atomically renamed over the previous checkpoint, so a crash mid-write
+ * leaves the last complete one in place. All file operations run in order on one background thread, so a
+ * checkpoint being written when its build finishes cannot reappear after the delete.
+ */
+public final class CheckpointStore {
+
+    private static final String SUFFIX = ".ckpt";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MazeGenerator-checkpoints");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Builds running from a checkpoint in this server, so one is not resumed twice
+    private static final Set<UUID> RUNNING = ConcurrentHashMap.newKeySet();
+    // Last checkpoint saved per build, filled by loadAll() and kept current by save and delete, so listing them
+    // (e.g. for tab completion) reads no files
+    private static final Map<UUID, BuildCheckpoint> SAVED = new ConcurrentHashMap<>();
+    private static volatile boolean loaded = false;
+
+    private CheckpointStore() {}
+
+    public static Path directory() {
+        return MazeGeneratorPlugin.plugin.getDataFolder().toPath().resolve("checkpoints");
+    }
+
+    /**
+     * Writes the checkpoint in the background, replacing the build's previous one.
+     */
+    public static CompletableFuture<Void> save(BuildCheckpoint checkpoint) {
+        byte[] data = checkpoint.encode();
+        Path dir = directory();
+        SAVED.put(checkpoint.id(), checkpoint);
+        return CompletableFuture.runAsync(() -> {
+            Path target = dir.resolve(checkpoint.id() + SUFFIX);
+            Path temp = dir.resolve(checkpoint.id() + TEMP_SUFFIX);
+            try {
+                Files.createDirectories(dir);
+                Files.write(temp, data);
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write checkpoint " + target, e);
+            }
+        }, IO);
+    }
+
+    /**
+     * Deletes the build's checkpoint in the background, after any write still queued for it.
+     */
+    public static CompletableFuture<Void> delete(UUID id) {
+        Path dir = directory();
+        SAVED.remove(id);
+        return CompletableFuture.runAsync(() -> {
+            try {
+                Files.deleteIfExists(dir.resolve(id + SUFFIX));
+                Files.deleteIfExists(dir.resolve(id + TEMP_SUFFIX));
+            } catch (IOException ignored) {
+            }
+        }, IO);
+    }
+
+    /**
+     * @return saved checkpoints of builds that are not running, oldest first; unreadable files are logged and skipped
+     */
+    public static List<BuildCheckpoint> loadAll() {
+        Path dir = directory();
+        loaded = true;
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            MazeGeneratorPlugin.plugin.getLogger().log(Level.WARNING, "Cannot list checkpoints in " + dir, e);
+            return Collections.emptyList();
+        }
+        files.sort(Comparator.comparingLong(CheckpointStore::modifiedMillis));
+        List<BuildCheckpoint> checkpoints = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                BuildCheckpoint checkpoint = BuildCheckpoint.decode(Files.readAllBytes(file));
+                // A save queued while reading is newer than the file
+                SAVED.merge(checkpoint.id(), checkpoint, (cached, read) -> cached.placedCells() >= read.placedCells() ? cached : read);
+                if (!RUNNING.contains(checkpoint.id())) {
+                    checkpoints.add(checkpoint);
+                }
+            } catch (IOException e) {
+                MazeGeneratorPlugin.plugin.getLogger().warning("Skipping unreadable checkpoint " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Like {@link #loadAll()} but from memory: the last saved checkpoint of each build that is not running, in no
+     * particular order. Only the first call reads the files, if loadAll has not run yet.
+     */
+    public static List<BuildCheckpoint> cached() {
+        if (!loaded) {
+            loadAll();
+        }
+        List<BuildCheckpoint> checkpoints = new ArrayList<>();
+        for (BuildCheckpoint checkpoint : SAVED.values()) {
+            if (!RUNNING.contains(checkpoint.id())) {
+                checkpoints.add(checkpoint);
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * @return whether the build has a saved checkpoint, running or not; answered from memory after the first call
+     */
+    public static boolean hasCheckpoint(UUID id) {
+        if (!loaded) {
+            loadAll();
+        }
+        return SAVED.containsKey(id);
+    }
+
+    /**
+     * Marks the build as running; false if it already is.
+     */
+    static boolean claim(UUID id) {
+        return RUNNING.add(id);
+    }
+
+    static void release(UUID id) {
+        RUNNING.remove(id);
+    }
+
+    private static long modifiedMillis(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+/**
+ * Walks every maze cell chunk by chunk: all cells whose origin falls in one 16x16 world chunk are returned
+ * before moving on, and chunks are visited along a Hilbert curve so the next chunk is always adjacent.
+ * A placement pass in this order finishes each chunk once instead of revisiting (and reloading) it.
+ * Non-square footprints are covered by square Hilbert blocks laid along the long axis; each block's curve
+ * ends next to where the following block's curve starts. Rows map to world X, columns to world Z.
+ */
+final class ChunkOrderWalker {
+
+    private static final int CHUNK = 16;
+
+    private final int rows;
+    private final int cols;
+    private final int baseX;
+    private final int baseZ;
+    private final int cellSize;
+    private final int chunkX0;
+    private final int chunkZ0;
+    private final int tilesX;
+    private final int tilesZ;
+    private final boolean longAxisX;
+    private final int side;
+    private final long blockCells;
+    private final long curveEnd;
+
+    private long d = 0;
+    private int r = 0;
+    private int c = 0;
+    private int rEnd = 0;
+    private int cFrom = 0;
+    private int cEnd = 0;
+    private int segmentLength = 0;
+    // Output of hilbert(): position along the long and short axis inside the current block
+    private int hilbertA;
+    private int hilbertB;
+
+    ChunkOrderWalker(int rows, int cols, int baseX, int baseZ, int cellSize) {
+        this.rows = rows;
+        this.cols = cols;
+        this.baseX = baseX;
+        this.baseZ = baseZ;
+        this.cellSize = Math.max(1, cellSize);
+        this.chunkX0 = Math.floorDiv(baseX, CHUNK);
+        this.chunkZ0 = Math.floorDiv(baseZ, CHUNK);
+        this.tilesX = Math.floorDiv(baseX + (rows - 1) * this.cellSize, CHUNK) - chunkX0 + 1;
+        this.tilesZ = Math.floorDiv(baseZ + (cols - 1) * this.cellSize, CHUNK) - chunkZ0 + 1;
+        this.longAxisX = tilesX >= tilesZ;
+        int shortTiles = Math.min(tilesX, tilesZ);
+        int longTiles = Math.max(tilesX, tilesZ);
+        int s = 1;
+        while (s < shortTiles) {
+            s <<= 1;
+        }
+        this.side = s;
+        this.blockCells = (long) s * s;
+        long blocks = (longTiles + s - 1) / s;
+        this.curveEnd = blocks * blockCells;
+    }
+
+    /**
+     * @return the next cell index ({@code r * cols + c}), or -1 once every cell has been returned
+     */
+    long next() {
+        while (r >= rEnd) {
+            if (!advanceTile()) {
+                return -1;
+            }
+        }
+        long index = (long) r * cols + c;
+        if (++c >= cEnd) {
+            c = cFrom;
+            r++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the rest of the current row inside the current chunk tile at once.
+     * @return index of the first cell of the segment, or -1 once every cell has been returned
+     */
+    long nextSegment() {
+        while (r >= rEnd) {
+            if (!advanceTile()) {
+                return -1;
+            }
+        }
+        long index = (long) r * cols + c;
+        segmentLength = cEnd - c;
+        c = cFrom;
+        r++;
+        return index;
+    }
+
+    /**
+     * @return number of cells in the segment last returned by {@link #nextSegment()}, all in one row
+     */
+    int segmentLength() {
+        return segmentLength;
+    }
+
+    private boolean advanceTile() {
+        while (d < curveEnd) {
+            long block = d / blockCells;
+            hilbert(d % blockCells);
+            d++;
+            long along = block * side + hilbertA;
+            int tx = (int) (longAxisX ? along : hilbertB);
+            int tz = (int) (longAxisX ? hilbertB : along);
+            if (tx >= tilesX || tz >= tilesZ) {
+                continue;
+            }
+            int rFrom = boundary(chunkX0 + tx, baseX, rows);
+            int rTo = boundary(chunkX0 + tx + 1, baseX, rows);
+            int cStart = boundary(chunkZ0 + tz, baseZ, cols);
+            int cTo = boundary(chunkZ0 + tz + 1, baseZ, cols);
+            if (rFrom < rTo && cStart < cTo) {
+                r = rFrom;
+                rEnd = rTo;
+                c = cStart;
+                cFrom = cStart;
+                cEnd = cTo;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return first cell (row or column) whose origin lies in the given chunk or later
+     */
+    private int boundary(int chunk, int base, int limit) {
+        int offset = chunk * CHUNK - base;
+        int cell = offset <= 0 ? 0 : (offset + cellSize - 1) / cellSize;
+        return Math.min(cell, limit);
+    }
+
+    /**
+     * Hilbert index to coordinates in a side x side square; the curve starts at (0, 0) and ends at (side - 1, 0).
+     */
+    private void hilbert(long index) {
+        int x = 0;
+        int y = 0;
+        long t = index;
+        for (int s = 1; s < side; s <<= 1) {
+            int rx = (int) (1 & (t >>> 1));
+            int ry = (int) (1 & (t ^ rx));
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+            x += s * rx;
+            y += s * ry;
+            t >>>= 2;
+        }
+        hilbertA = x;
+        hilbertB = y;
+    }
+}
@@ -0,0 +1,52 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Off-heap {@link WordStore} on direct buffers, so large grids do not count against the server heap
+ * (they count against {@code -XX:MaxDirectMemorySize} instead). Split into segments because a single
+ * buffer is limited to 2 GiB.
+ */
+public final class DirectWordStore implements WordStore {
+
+    private static final int SEGMENT_SHIFT = 27; // 2^27 words = 1 GiB per segment
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final long wordCount;
+    private LongBuffer[] segments;
+
+    public DirectWordStore(long wordCount) {
+        this.wordCount = wordCount;
+        int count = (int) ((wordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new LongBuffer[Math.max(1, count)];
+        long remaining = wordCount;
+        for (int i = 0; i < segments.length; i++) {
+            int words = (int) Math.min(remaining, 1L << SEGMENT_SHIFT);
+            segments[i] = ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            remaining -= words;
+        }
+    }
+
+    @Override
+    public long getWord(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+
+    @Override
+    public void setWord(long index, long value) {
+        segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    @Override
+    public long wordCount() {
+        return wordCount;
+    }
+
+    @Override
+    public void close() {
+        // Direct memory is returned once the buffers become unreachable
+        segments = null;
+    }
+}
@@ -0,0 +1,263 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.*;
+
+/**
+ * Row-streaming maze generator based on Eller's algorithm.
+ * Only the set membership of the current row of unit cells is kept, so memory is O(sizeM) regardless of
+ * how many rows the maze has. Unlike the other engines it emits every grid cell exactly once in its final
+ * type, walls included, which lets the placer skip the separate wall fill pass entirely.
+ */
+public class EllerMazeGenerator implements MazeAlgorithm {
+
+    private static final byte EAST_OPEN = 1;
+    private static final byte SOUTH_OPEN = 2;
+    private static final byte EAST_HOLE = 4;
+    private static final byte SOUTH_HOLE = 8;
+
+    private final int sizeN;
+    private final int sizeM;
+    private final int unitRows;
+    private final int unitCols;
+    private final double holeProbability;
+    private final boolean hasRoom;
+    private final int roomStartR;
+    private final int roomStartC;
+    private final int roomEndR;
+    private final int roomEndC;
+    private final SplittableRandom random;
+    private final HashSet<Long> exits = new HashSet<>();
+
+    // One row of state: set label per unit column, passages of the current unit row, union-find scratch
+    private final int[] set;
+    private final byte[] state;
+    private final int[] parent;
+    private final int[] members;
+    private final int[] pick;
+    private final boolean[] hasDown;
+
+    private int cursorR = 0;
+    private int cursorC = 0;
+    private long emittedCount = 0;
+    private final long totalCells;
+
+    public EllerMazeGenerator(int sizeN, int sizeM,
+                              int additionalExits,
+                              double holeProbability,
+                              boolean hasRoom,
+                              int roomHeight,
+                              int roomWidth,
+                              boolean hasExits,
+                              SplittableRandom random) {
+        this.sizeN = (sizeN % 2 == 0) ? sizeN + 1 : sizeN;
+        this.sizeM = (sizeM % 2 == 0) ? sizeM + 1 : sizeM;
+        this.unitRows = Math.max(1, (this.sizeN - 1) / 2);
+        this.unitCols = Math.max(1, (this.sizeM - 1) / 2);
+        this.holeProbability = Math.max(0.0, Math.min(1.0, holeProbability));
+        this.hasRoom = hasRoom;
+        int roomH = Math.max(1, roomHeight);
+        int roomW = Math.max(1, roomWidth);
+        this.roomStartR = Math.max(1, (this.sizeN - roomH) / 2);
+        this.roomStartC = Math.max(1, (this.sizeM - roomW) / 2);
+        this.roomEndR = Math.min(this.sizeN - 2, roomStartR + roomH - 1);
+        this.roomEndC = Math.min(this.sizeM - 2, roomStartC + roomW - 1);
+        this.random = random;
+        this.totalCells = (long) this.sizeN * (long) this.sizeM;
+
+        this.set = new int[unitCols];
+        this.state = new byte[unitCols];
+        this.parent = new int[unitCols];
+        this.members = new int[unitCols];
+        this.pick = new int[unitCols];
+        this.hasDown = new boolean[unitCols];
+        for (int j = 0; j < unitCols; j++) {
+            set[j] = j;
+        }
+
+        if (hasExits) {
+            chooseExits(1 + Math.max(0, additionalExits));
+        }
+    }
+
+    @Override
+    public long getTotalCells() { return totalCells; }
+
+    @Override
+    public long getEmittedCount() { return emittedCount; }
+
+    @Override
+    public boolean isComplete() {
+        return cursorR >= sizeN;
+    }
+
+    @Override
+    public boolean emitsWalls() {
+        return true;
+    }
+
+    @Override
+    public List<IncrementalMazeGenerator.Cell> pollNextCells(int max) {
+        int[] buffer = new int[Math.max(1, max) * 3];
+        int count = pollNextCells(buffer, max);
+        ArrayList<IncrementalMazeGenerator.Cell> result = new ArrayList<>(count);
+        for (int i = 0; i < count * 3; i += 3) {
+            result.add(new IncrementalMazeGenerator.Cell(buffer[i], buffer[i + 1], (byte) buffer[i + 2]));
+        }
+        return result;
+    }
+
+    @Override
+    public int pollNextCells(int[] buffer, int max) {
+        int limit = Math.min(max, buffer.length / 3);
+        int count = 0;
+        while (count < limit && cursorR < sizeN) {
+            int r = cursorR;
+            int c = cursorC;
+            if (c == 0 && (r & 1) == 1) {
+                computeUnitRow((r - 1) / 2);
+            }
+            int base = count * 3;
+            buffer[base] = r;
+            buffer[base + 1] = c;
+            buffer[base + 2] = resolve(r, c);
+            count++;
+            emittedCount++;
+            cursorC++;
+            if (cursorC >= sizeM) {
+                cursorC = 0;
+                cursorR++;
+            }
+        }
+        return count;
+    }
+
+    private byte resolve(int r, int c) {
+        // Exits only ever sit on the border, so interior cells skip the (boxing) set lookup
+        if (r == 0 || c == 0 || r == sizeN - 1 || c == sizeM - 1) {
+            return exits.contains(key(r, c)) ? MazeGenerator.EXIT : MazeGenerator.WALL;
+        }
+        if (isRoom(r, c)) return MazeGenerator.ROOM;
+        boolean oddR = (r & 1) == 1;
+        boolean oddC = (c & 1) == 1;
+        if (oddR && oddC) return MazeGenerator.PATH;
+        if (oddR) {
+            byte s = state[(c - 2) / 2];
+            if ((s & EAST_OPEN) == 0) return MazeGenerator.WALL;
+            return (s & EAST_HOLE) != 0 ? MazeGenerator.HOLE : MazeGenerator.PATH;
+        }
+        if (oddC) {
+            byte s = state[(c - 1) / 2];
+            if ((s & SOUTH_OPEN) == 0) return MazeGenerator.WALL;
+            return (s & SOUTH_HOLE) != 0 ? MazeGenerator.HOLE : MazeGenerator.PATH;
+        }
+        return MazeGenerator.WALL;
+    }
+
+    /**
+     * Decides the passages of unit row {@code i} and relabels {@link #set} for row {@code i + 1}.
+     */
+    private void computeUnitRow(int i) {
+        boolean last = i == unitRows - 1;
+        Arrays.fill(state, (byte) 0);
+        for (int k = 0; k < unitCols; k++) {
+            parent[k] = k;
+        }
+
+        // Join adjacent cells of different sets; the last row must join everything left
+        for (int j = 0; j < unitCols - 1; j++) {
+            int a = find(set[j]);
+            int b = find(set[j + 1]);
+            if (a != b && (last || random.nextBoolean())) {
+                parent[a] = b;
+                state[j] |= EAST_OPEN;
+            }
+        }
+        for (int j = 0; j < unitCols; j++) {
+            set[j] = find(set[j]);
+        }
+
+        if (!last) {
+            // Random drops, then make sure every set continues downwards at least once
+            Arrays.fill(members, 0);
+            Arrays.fill(hasDown, false);
+            for (int j = 0; j < unitCols; j++) {
+                int s = set[j];
+                members[s]++;
+                if (random.nextInt(members[s]) == 0) {
+                    pick[s] = j;
+                }
+                if (random.nextBoolean()) {
+                    state[j] |= SOUTH_OPEN;
+                    hasDown[s] = true;
+                }
+            }
+            for (int j = 0; j < unitCols; j++) {
+                int s = set[j];
+                if (!hasDown[s]) {
+                    state[pick[s]] |= SOUTH_OPEN;
+                    hasDown[s] = true;
+                }
+            }
+
+            // Cells without a passage from above start a fresh set; hasDown doubles as the "label in use" marker
+            Arrays.fill(hasDown, false);
+            for (int j = 0; j < unitCols; j++) {
+                if ((state[j] & SOUTH_OPEN) != 0) {
+                    hasDown[set[j]] = true;
+                } else {
+                    set[j] = -1;
+                }
+            }
+            int free = 0;
+            for (int j = 0; j < unitCols; j++) {
+                if (set[j] >= 0) continue;
+                while (hasDown[free]) free++;
+                set[j] = free;
+                hasDown[free] = true;
+            }
+        }
+
+        if (holeProbability > 0) {
+            for (int j = 0; j < unitCols; j++) {
+                if (random.nextDouble() >= holeProbability) continue;
+                boolean canEast = j < unitCols - 1 && (state[j] & EAST_OPEN) == 0;
+                boolean canSouth = !last && (state[j] & SOUTH_OPEN) == 0;
+                if (canEast && (!canSouth || random.nextBoolean())) {
+                    state[j] |= EAST_OPEN | EAST_HOLE;
+                } else if (canSouth) {
+                    state[j] |= SOUTH_OPEN | SOUTH_HOLE;
+                }
+            }
+        }
+    }
+
+    private int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private void chooseExits(int count) {
+        int attempts = count * 8;
+        while (exits.size() < count && attempts-- > 0) {
+            int side = random.nextInt(4);
+            if (side < 2) {
+                int c = 2 * random.nextInt(unitCols) + 1;
+                exits.add(key(side == 0 ? 0 : sizeN - 1, c));
+            } else {
+                int r = 2 * random.nextInt(unitRows) + 1;
+                exits.add(key(r, side == 2 ? 0 : sizeM - 1));
+            }
+        }
+    }
+
+    private static long key(int r, int c) {
+        return ((long) r << 32) | (c & 0xffffffffL);
+    }
+
+    private boolean isRoom(int r, int c) {
+        return hasRoom && r >= roomStartR && r <= roomEndR && c >= roomStartC && c <= roomEndC;
+    }
+}
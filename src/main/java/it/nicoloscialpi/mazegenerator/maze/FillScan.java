@@ -0,0 +1,111 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+/**
+ * The placer-driven pass over a carved grid (wall fill or single-pass scan): walks every cell once in the
+ * configured emission order and splits it into runs, consecutive cells of a row (inside one chunk tile in Hilbert
+ * order) that place the same way, found with word scans over the grid.
+ */
+final class FillScan {
+
+    private final MazeGrid carved;
+    private final int cols;
+    private final long totalCells;
+    // Chunk-major Hilbert order, or null for row-major
+    private final ChunkOrderWalker chunkOrder;
+    // Cells walked so far
+    private long position = 0;
+    // Row segment being split into runs: [segmentPos, segmentEnd)
+    private long segmentPos = 0;
+    private long segmentEnd = 0;
+    // Output of next(): cells [runStart, runStart + runLength) of one row, all of type runType for placement
+    private long runStart;
+    private int runLength;
+    private byte runType;
+
+    FillScan(MazeGrid carved, ChunkOrderWalker chunkOrder) {
+        this.carved = carved;
+        this.cols = carved.getCols();
+        this.totalCells = carved.getCellCount();
+        this.chunkOrder = chunkOrder;
+    }
+
+    /**
+     * Advances the pass by one run, see {@link #runStart()}, {@link #runLength()} and {@link #runType()}.
+     * @param wallsOnly skip cells that are already carved
+     * @param maxCells longest run to return
+     * @return false once the pass is complete
+     */
+    boolean next(boolean wallsOnly, int maxCells) {
+        while (true) {
+            if (segmentPos >= segmentEnd && !nextSegment()) {
+                position = totalCells;
+                return false;
+            }
+            long pos = segmentPos;
+            if (wallsOnly) {
+                long wall = carved.nextWall(pos, segmentEnd);
+                if (wall < 0) {
+                    position += segmentEnd - pos;
+                    segmentPos = segmentEnd;
+                    continue;
+                }
+                position += wall - pos;
+                pos = wall;
+            }
+            boolean open = carved.isOpen(pos);
+            long end = open ? carved.nextWall(pos, segmentEnd) : carved.nextOpen(pos, segmentEnd);
+            if (end < 0) {
+                end = segmentEnd;
+            }
+            end = Math.min(end, pos + Math.max(1, maxCells));
+            runStart = pos;
+            runLength = (int) (end - pos);
+            runType = open ? carved.get(pos) : IncrementalMazeGenerator.WALL;
+            position += runLength;
+            segmentPos = end;
+            return true;
+        }
+    }
+
+    private boolean nextSegment() {
+        if (chunkOrder == null) {
+            // Row-major: whole rows
+            if (segmentEnd >= totalCells) {
+                return false;
+            }
+            segmentPos = segmentEnd;
+            segmentEnd = segmentPos + cols;
+            return true;
+        }
+        long start = chunkOrder.nextSegment();
+        if (start < 0) {
+            return false;
+        }
+        segmentPos = start;
+        segmentEnd = start + chunkOrder.segmentLength();
+        return true;
+    }
+
+    /**
+     * @return cells walked so far, {@code totalCells} once the pass is complete
+     */
+    long position() {
+        return position;
+    }
+
+    boolean isComplete() {
+        return position >= totalCells;
+    }
+
+    long runStart() {
+        return runStart;
+    }
+
+    int runLength() {
+        return runLength;
+    }
+
+    byte runType() {
+        return runType;
+    }
+}
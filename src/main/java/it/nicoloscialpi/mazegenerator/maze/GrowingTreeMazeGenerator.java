@@ -0,0 +1,112 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+
+/**
+ * Growing-tree maze generator.
+ * Keeps an active list of unit cells in a primitive array and expands either the newest cell (which behaves
+ * like the backtracker and keeps consecutive cells close together in memory and in the world) or, with
+ * probability {@code 1 - newestBias}, a random one, which shortens corridors and the active list.
+ */
+public class GrowingTreeMazeGenerator extends CarvingMazeGenerator {
+
+    public static final double DEFAULT_NEWEST_BIAS = 0.75;
+
+    private final double newestBias;
+    // Active unit cells packed as r * sizeM + c (long, so grids past 2^31 cells still index correctly)
+    private long[] active;
+    private int activeSize = 0;
+
+    public GrowingTreeMazeGenerator(int sizeN, int sizeM,
+                                    int additionalExits,
+                                    double holeProbability,
+                                    boolean hasRoom,
+                                    int roomHeight,
+                                    int roomWidth,
+                                    boolean hasExits,
+                                    SplittableRandom random,
+                                    double newestBias,
+                                    LongFunction<WordStore> storage) {
+        super(sizeN, sizeM, additionalExits, holeProbability, hasRoom, roomHeight, roomWidth, hasExits, random, storage);
+        this.newestBias = Math.max(0.0, Math.min(1.0, newestBias));
+        this.active = new long[64];
+
+        int startR = randomOdd(this.sizeN);
+        int startC = randomOdd(this.sizeM);
+        pushPath(startR, startC, PATH);
+        push(index(startR, startC));
+
+        if (hasRoom) {
+            addCentralRoom();
+        }
+    }
+
+    public GrowingTreeMazeGenerator(int sizeN, int sizeM,
+                                    int additionalExits,
+                                    double holeProbability,
+                                    boolean hasRoom,
+                                    int roomHeight,
+                                    int roomWidth,
+                                    boolean hasExits,
+                                    SplittableRandom random,
+                                    double newestBias) {
+        this(sizeN, sizeM, additionalExits, holeProbability, hasRoom, roomHeight, roomWidth, hasExits, random,
+                newestBias, HeapWordStore::new);
+    }
+
+    public GrowingTreeMazeGenerator(int sizeN, int sizeM,
+                                    int additionalExits,
+                                    double holeProbability,
+                                    boolean hasRoom,
+                                    int roomHeight,
+                                    int roomWidth,
+                                    boolean hasExits,
+                                    SplittableRandom random) {
+        this(sizeN, sizeM, additionalExits, holeProbability, hasRoom, roomHeight, roomWidth, hasExits, random,
+                DEFAULT_NEWEST_BIAS);
+    }
+
+    @Override
+    protected boolean isCarvingDone() {
+        return activeSize == 0;
+    }
+
+    @Override
+    protected boolean carveStep() {
+        if (activeSize == 0) {
+            return false;
+        }
+        int slot = random.nextDouble() < newestBias ? activeSize - 1 : random.nextInt(activeSize);
+        long cell = active[slot];
+        int r = (int) (cell / sizeM);
+        int c = (int) (cell % sizeM);
+
+        int open = openDirections(r, c);
+        if (open != 0) {
+            int d = randomDirection(open);
+            int nr = r + DR[d] * 2;
+            int nc = c + DC[d] * 2;
+            pushPath(r + DR[d], c + DC[d], PATH);
+            pushPath(nr, nc, PATH);
+            push(index(nr, nc));
+
+            maybeAddHole(nr, nc);
+            maybeOpenExit(nr, nc, d);
+            return true;
+        }
+        // Dead end: swap-remove keeps removal O(1)
+        active[slot] = active[--activeSize];
+        maybeAddHole(r, c);
+        return true;
+    }
+
+    private void push(long cell) {
+        if (activeSize == active.length) {
+            long[] next = new long[active.length * 2];
+            System.arraycopy(active, 0, next, 0, activeSize);
+            active = next;
+        }
+        active[activeSize++] = cell;
+    }
+}
@@ -0,0 +1,31 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+/**
+ * {@link WordStore} on a plain {@code long[]} in the server heap.
+ */
+public final class HeapWordStore implements WordStore {
+
+    private final long[] words;
+
+    public HeapWordStore(long wordCount) {
+        if (wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Grid too large for heap backing: " + wordCount + " words");
+        }
+        this.words = new long[(int) wordCount];
+    }
+
+    @Override
+    public long getWord(long index) {
+        return words[(int) index];
+    }
+
+    @Override
+    public void setWord(long index, long value) {
+        words[(int) index] = value;
+    }
+
+    @Override
+    public long wordCount() {
+        return words.length;
+    }
+}
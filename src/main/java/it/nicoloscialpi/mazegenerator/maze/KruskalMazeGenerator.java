@@ -0,0 +1,170 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+
+/**
+ * Randomized Kruskal maze generator.
+ * Walls between unit cells are visited in random order (an incremental Fisher-Yates shuffle, one wall per
+ * step) and opened whenever they separate two different sets of a union-find kept on primitive arrays.
+ * There is no carving stack, so memory is flat (a few ints per unit cell) no matter how long the corridors get.
+ */
+public class KruskalMazeGenerator extends CarvingMazeGenerator {
+
+    private final int unitRows;
+    private final int unitCols;
+    private final int horizontalEdges;
+    private final int edgeCount;
+    // Edge permutation built lazily: 0 means "not swapped yet", otherwise edge id + 1
+    private final int[] edges;
+    private final int[] parent;
+    private final int[] rank;
+    private int nextEdge = 0;
+
+    public KruskalMazeGenerator(int sizeN, int sizeM,
+                                int additionalExits,
+                                double holeProbability,
+                                boolean hasRoom,
+                                int roomHeight,
+                                int roomWidth,
+                                boolean hasExits,
+                                SplittableRandom random) {
+        this(sizeN, sizeM, additionalExits, holeProbability, hasRoom, roomHeight, roomWidth, hasExits, random, HeapWordStore::new);
+    }
+
+    public KruskalMazeGenerator(int sizeN, int sizeM,
+                                int additionalExits,
+                                double holeProbability,
+                                boolean hasRoom,
+                                int roomHeight,
+                                int roomWidth,
+                                boolean hasExits,
+                                SplittableRandom random,
+                                LongFunction<WordStore> storage) {
+        super(requireSupportedSize(sizeN, sizeM), sizeM, additionalExits, holeProbability, hasRoom, roomHeight, roomWidth,
+                hasExits, random, storage);
+        this.unitRows = Math.max(1, (this.sizeN - 1) / 2);
+        this.unitCols = Math.max(1, (this.sizeM - 1) / 2);
+        this.horizontalEdges = unitRows * (unitCols - 1);
+        this.edgeCount = horizontalEdges + (unitRows - 1) * unitCols;
+        this.edges = new int[edgeCount];
+        int units = unitRows * unitCols;
+        this.parent = new int[units];
+        this.rank = new int[units];
+        for (int u = 0; u < units; u++) {
+            parent[u] = u;
+        }
+
+        if (hasRoom) {
+            addCentralRoom();
+        }
+        if (edgeCount == 0) {
+            pushPath(1, 1, PATH);
+        }
+    }
+
+    /**
+     * Checks, before the carve grid is allocated, that the edge permutation and union-find fit int arrays (edge
+     * ids are stored + 1) and the heap.
+     * @return sizeN
+     * @throws IllegalArgumentException if they do not
+     */
+    private static int requireSupportedSize(int sizeN, int sizeM) {
+        // Same as (size rounded up to odd - 1) / 2
+        int unitRows = Math.max(1, sizeN / 2);
+        int unitCols = Math.max(1, sizeM / 2);
+        long units;
+        long edges;
+        try {
+            units = Math.multiplyExact(unitRows, unitCols);
+            edges = Math.addExact(Math.addExact(Math.multiplyExact(unitRows, unitCols - 1), Math.multiplyExact(unitRows - 1, unitCols)), 1);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Maze of " + sizeN + "x" + sizeM + " cells is too large for the kruskal engine; use backtracker, eller or tiled");
+        }
+        long bytes = (edges + 2 * units) * Integer.BYTES;
+        if (bytes > Runtime.getRuntime().maxMemory()) {
+            throw new IllegalArgumentException("The kruskal engine needs " + (bytes >> 20) + " MB for a " + sizeN + "x" + sizeM
+                    + " maze, more than the server's heap; use backtracker, eller or tiled");
+        }
+        return sizeN;
+    }
+
+    @Override
+    protected boolean isCarvingDone() {
+        return nextEdge >= edgeCount;
+    }
+
+    @Override
+    protected boolean carveStep() {
+        if (nextEdge >= edgeCount) {
+            return false;
+        }
+        int swap = nextEdge + random.nextInt(edgeCount - nextEdge);
+        int edge = edgeAt(swap);
+        edges[swap] = edgeAt(nextEdge) + 1;
+        nextEdge++;
+
+        int a;
+        int b;
+        int axis;
+        if (edge < horizontalEdges) {
+            int i = edge / (unitCols - 1);
+            int j = edge % (unitCols - 1);
+            a = i * unitCols + j;
+            b = a + 1;
+            axis = 0;
+        } else {
+            a = edge - horizontalEdges;
+            b = a + unitCols;
+            axis = 1;
+        }
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return true;
+        }
+        union(ra, rb);
+
+        // Carve in a random orientation so exits can open on every side of the border
+        if (random.nextBoolean()) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+            axis += 2;
+        }
+        int r = 2 * (a / unitCols) + 1;
+        int c = 2 * (a % unitCols) + 1;
+        int nr = 2 * (b / unitCols) + 1;
+        int nc = 2 * (b % unitCols) + 1;
+        pushPath(r, c, PATH);
+        pushPath(r + DR[axis], c + DC[axis], PATH);
+        pushPath(nr, nc, PATH);
+        maybeAddHole(nr, nc);
+        maybeOpenExit(nr, nc, axis);
+        return true;
+    }
+
+    private int edgeAt(int position) {
+        int stored = edges[position];
+        return stored == 0 ? position : stored - 1;
+    }
+
+    private int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private void union(int ra, int rb) {
+        if (rank[ra] < rank[rb]) {
+            parent[ra] = rb;
+        } else if (rank[ra] > rank[rb]) {
+            parent[rb] = ra;
+        } else {
+            parent[rb] = ra;
+            rank[ra]++;
+        }
+    }
+}
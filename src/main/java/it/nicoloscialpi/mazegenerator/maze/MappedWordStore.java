@@ -0,0 +1,103 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * {@link WordStore} backed by a memory-mapped temporary file, for grids larger than the heap.
+ * The file is mapped in fixed {@link MappedByteBuffer} windows, so the OS page cache keeps the working
+ * set in memory and the heap footprint does not grow with the maze. The file is deleted on {@link #close()}.
+ */
+public final class MappedWordStore implements WordStore {
+
+    public static final String FILE_PREFIX = "maze-grid-";
+    private static final int SEGMENT_SHIFT = 27; // 2^27 words = 1 GiB per window
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final Path file;
+    private final long wordCount;
+    private final RandomAccessFile raf;
+    private LongBuffer[] segments;
+
+    public MappedWordStore(Path file, long wordCount) {
+        this.file = file;
+        this.wordCount = wordCount;
+        try {
+            Files.createDirectories(file.getParent());
+            this.raf = new RandomAccessFile(file.toFile(), "rw");
+            // Sparse on most filesystems: zero pages (WALL) cost no disk until written
+            raf.setLength(Math.max(1, wordCount) * Long.BYTES);
+            FileChannel channel = raf.getChannel();
+            int count = (int) ((wordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            this.segments = new LongBuffer[Math.max(1, count)];
+            long remaining = Math.max(1, wordCount);
+            for (int i = 0; i < segments.length; i++) {
+                long words = Math.min(remaining, 1L << SEGMENT_SHIFT);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, ((long) i << SEGMENT_SHIFT) * Long.BYTES, words * Long.BYTES);
+                segments[i] = window.order(ByteOrder.nativeOrder()).asLongBuffer();
+                remaining -= words;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map grid file " + file, e);
+        }
+    }
+
+    @Override
+    public long getWord(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+
+    @Override
+    public void setWord(long index, long value) {
+        segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    @Override
+    public long wordCount() {
+        return wordCount;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (segments == null) {
+            return;
+        }
+        segments = null;
+        try {
+            raf.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Still mapped on some platforms until the buffers are collected
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * Deletes grid files left behind by a crash or an unclean shutdown.
+     */
+    public static void deleteStale(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+            for (Path stale : stream) {
+                try {
+                    Files.deleteIfExists(stale);
+                } catch (IOException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
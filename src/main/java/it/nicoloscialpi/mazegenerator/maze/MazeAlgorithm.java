@@ -0,0 +1,62 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.List;
+
+/**
+ * A maze carving engine that streams non-wall cells to the placer on demand.
+ * Cells use grid coordinates where paths reside on odd indices and everything not emitted is WALL.
+ */
+public interface MazeAlgorithm {
+
+    List<IncrementalMazeGenerator.Cell> pollNextCells(int max);
+
+    /**
+     * Primitive variant of {@link #pollNextCells(int)} writing {@code r, c, type} triples into {@code buffer}.
+     * Engines on the hot path override it so that streaming allocates nothing per cell.
+     * @return number of cells written, at most {@code min(max, buffer.length / 3)}
+     */
+    default int pollNextCells(int[] buffer, int max) {
+        List<IncrementalMazeGenerator.Cell> cells = pollNextCells(Math.min(max, buffer.length / 3));
+        int i = 0;
+        for (IncrementalMazeGenerator.Cell cell : cells) {
+            buffer[i++] = cell.r();
+            buffer[i++] = cell.c();
+            buffer[i++] = cell.type();
+        }
+        return cells.size();
+    }
+
+    boolean isComplete();
+
+    long getTotalCells();
+
+    long getEmittedCount();
+
+    /**
+     * @return the carve grid shared with the placer, or null if the engine keeps no full grid
+     */
+    default MazeGrid getGrid() {
+        return null;
+    }
+
+    /**
+     * Releases storage held by the engine (e.g. a memory-mapped grid file). Called once the build ends.
+     */
+    default void close() {
+    }
+
+    /**
+     * @return true while nothing can be emitted yet but the algorithm is not finished, e.g. carving in the background.
+     */
+    default boolean isPending() {
+        return false;
+    }
+
+    /**
+     * @return true if every grid cell, walls included, is emitted exactly once in its final type.
+     *         The placer then has no separate wall fill pass and keeps no carved bitset.
+     */
+    default boolean emitsWalls() {
+        return false;
+    }
+}
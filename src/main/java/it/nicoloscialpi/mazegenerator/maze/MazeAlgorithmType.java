@@ -0,0 +1,84 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+
+/**
+ * Registry of the available {@link MazeAlgorithm} engines, selectable per build with {@code algorithm:<key>}.
+ */
+public enum MazeAlgorithmType {
+    BACKTRACKER("backtracker"),
+    TILED("tiled"),
+    ELLER("eller"),
+    KRUSKAL("kruskal"),
+    GROWING_TREE("growingtree");
+
+    private final String key;
+
+    MazeAlgorithmType(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public MazeAlgorithm create(int sizeN, int sizeM,
+                                int additionalExits,
+                                double holeProbability,
+                                boolean hasRoom,
+                                int roomHeight,
+                                int roomWidth,
+                                boolean hasExits,
+                                SplittableRandom random) {
+        return create(sizeN, sizeM, additionalExits, holeProbability, hasRoom, roomHeight, roomWidth, hasExits, random,
+                HeapWordStore::new);
+    }
+
+    /**
+     * @param storage backing for the carve grid of grid-based engines; eller and tiled keep their own
+     *                compact state and ignore it
+     */
+    public MazeAlgorithm create(int sizeN, int sizeM,
+                                int additionalExits,
+                                double holeProbability,
+                                boolean hasRoom,
+                                int roomHeight,
+                                int roomWidth,
+                                boolean hasExits,
+                                SplittableRandom random,
+                                LongFunction<WordStore> storage) {
+        return switch (this) {
+            case BACKTRACKER -> new IncrementalMazeGenerator(sizeN, sizeM, additionalExits, holeProbability, hasRoom,
+                    roomHeight, roomWidth, hasExits, random, storage);
+            case TILED -> new TiledMazeGenerator(sizeN, sizeM, additionalExits, holeProbability, hasRoom,
+                    roomHeight, roomWidth, hasExits, random);
+            case ELLER -> new EllerMazeGenerator(sizeN, sizeM, additionalExits, holeProbability, hasRoom,
+                    roomHeight, roomWidth, hasExits, random);
+            case KRUSKAL -> new KruskalMazeGenerator(sizeN, sizeM, additionalExits, holeProbability, hasRoom,
+                    roomHeight, roomWidth, hasExits, random, storage);
+            case GROWING_TREE -> new GrowingTreeMazeGenerator(sizeN, sizeM, additionalExits, holeProbability, hasRoom,
+                    roomHeight, roomWidth, hasExits, random, GrowingTreeMazeGenerator.DEFAULT_NEWEST_BIAS, storage);
+        };
+    }
+
+    public static MazeAlgorithmType fromKey(String key) {
+        if (key == null) return null;
+        String lower = key.toLowerCase(Locale.ROOT);
+        for (MazeAlgorithmType type : values()) {
+            if (type.key.equals(lower)) return type;
+        }
+        return null;
+    }
+
+    public static List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (MazeAlgorithmType type : values()) {
+            keys.add(type.key);
+        }
+        return keys;
+    }
+}
@@ -17,23 +17,37 @@ public class MazeGenerator {
 
     private final int sizeN;
     private final int sizeM;
-    private final Random random = new Random();
+    private final SplittableRandom random;
 
     public MazeGenerator(int sizeN, int sizeM) {
+        this(sizeN, sizeM, new SplittableRandom());
+    }
+
+    public MazeGenerator(int sizeN, int sizeM, long seed) {
+        this(sizeN, sizeM, new SplittableRandom(seed));
+    }
+
+    public MazeGenerator(int sizeN, int sizeM, SplittableRandom random) {
+        this.random = random;
         // Ensure dimensions are odd
         this.sizeN = (sizeN % 2 == 0) ? sizeN + 1 : sizeN;
         this.sizeM = (sizeM % 2 == 0) ? sizeM + 1 : sizeM;
     }
 
     public byte[][] generateMaze(int additionalExits, double holeProbability, boolean hasRoom, int roomHeight, int roomWidth, boolean hasExits) {
+        try (MazeGrid maze = generateGrid(additionalExits, holeProbability, hasRoom, roomHeight, roomWidth, hasExits)) {
+            return maze.toArray();
+        }
+    }
+
+    /**
+     * Generates the whole maze into a bit-packed {@link MazeGrid} (3 bits per cell) instead of a byte per cell.
+     */
+    public MazeGrid generateGrid(int additionalExits, double holeProbability, boolean hasRoom, int roomHeight, int roomWidth, boolean hasExits) {
         long startTime = System.currentTimeMillis();
 
-        byte[][] maze = new byte[sizeN][sizeM];
-        for (int i = 0; i < sizeN; i++) {
-            for (int j = 0; j < sizeM; j++) {
-                maze[i][j] = WALL;
-            }
-        }
+        // A fresh grid is all WALL
+        MazeGrid maze = new MazeGrid(sizeN, sizeM);
 
         if (hasRoom) {
             addCentralRoom(maze, roomHeight, roomWidth);
@@ -41,7 +55,7 @@ public class MazeGenerator {
 
         int startX = randomOdd(sizeN);
         int startY = randomOdd(sizeM);
-        maze[startX][startY] = PATH;
+        maze.set(startX, startY, PATH);
 
         Deque<int[]> stack = new ArrayDeque<>();
         stack.push(new int[]{startX, startY});
@@ -58,8 +72,8 @@ public class MazeGenerator {
                 int ny = y + dir[1] * 2;
 
                 if (isValidCell(maze, nx, ny)) {
-                    maze[x + dir[0]][y + dir[1]] = PATH;
-                    maze[nx][ny] = PATH;
+                    maze.set(x + dir[0], y + dir[1], PATH);
+                    maze.set(nx, ny, PATH);
                     stack.push(new int[]{nx, ny});
                     carved = true;
 
@@ -86,47 +100,47 @@ public class MazeGenerator {
         return maze;
     }
 
-    private void addCentralRoom(byte[][] maze, int roomHeight, int roomWidth) {
+    private void addCentralRoom(MazeGrid maze, int roomHeight, int roomWidth) {
         int startRow = (sizeN - roomHeight) / 2;
         int startCol = (sizeM - roomWidth) / 2;
 
         for (int i = startRow; i < startRow + roomHeight; i++) {
             for (int j = startCol; j < startCol + roomWidth; j++) {
                 if (i > 0 && i < sizeN - 1 && j > 0 && j < sizeM - 1) {
-                    maze[i][j] = ROOM;
+                    maze.set(i, j, ROOM);
                 }
             }
         }
     }
 
-    private void addExits(byte[][] maze, int additionalExits) {
+    private void addExits(MazeGrid maze, int additionalExits) {
         List<int[]> walls = new ArrayList<>();
 
         for (int j = 1; j < sizeM - 1; j++) {
-            if (maze[1][j] == PATH) walls.add(new int[]{0, j, 1, 0});
-            if (maze[sizeN - 2][j] == PATH) walls.add(new int[]{sizeN - 1, j, -1, 0});
+            if (maze.get(1, j) == PATH) walls.add(new int[]{0, j, 1, 0});
+            if (maze.get(sizeN - 2, j) == PATH) walls.add(new int[]{sizeN - 1, j, -1, 0});
         }
         for (int i = 1; i < sizeN - 1; i++) {
-            if (maze[i][1] == PATH) walls.add(new int[]{i, 0, 0, 1});
-            if (maze[i][sizeM - 2] == PATH) walls.add(new int[]{i, sizeM - 1, 0, -1});
+            if (maze.get(i, 1) == PATH) walls.add(new int[]{i, 0, 0, 1});
+            if (maze.get(i, sizeM - 2) == PATH) walls.add(new int[]{i, sizeM - 1, 0, -1});
         }
 
         if (!walls.isEmpty()) {
             int[] exit = walls.get(random.nextInt(walls.size()));
-            maze[exit[0]][exit[1]] = EXIT;
-            maze[exit[0] + exit[2]][exit[1] + exit[3]] = PATH;
+            maze.set(exit[0], exit[1], EXIT);
+            maze.set(exit[0] + exit[2], exit[1] + exit[3], PATH);
         }
 
         for (int i = 0; i < additionalExits; i++) {
             if (!walls.isEmpty()) {
                 int[] exit = walls.get(random.nextInt(walls.size()));
-                maze[exit[0]][exit[1]] = EXIT;
-                maze[exit[0] + exit[2]][exit[1] + exit[3]] = PATH;
+                maze.set(exit[0], exit[1], EXIT);
+                maze.set(exit[0] + exit[2], exit[1] + exit[3], PATH);
             }
         }
     }
 
-    private void addHole(byte[][] maze, Deque<int[]> stack) {
+    private void addHole(MazeGrid maze, Deque<int[]> stack) {
         if (stack.isEmpty()) return;
         int[] cell = stack.peek();
         int x = cell[0], y = cell[1];
@@ -135,15 +149,15 @@ public class MazeGenerator {
         for (int[] dir : directions) {
             int nx = x + dir[0];
             int ny = y + dir[1];
-            if (nx > 0 && nx < sizeN - 1 && ny > 0 && ny < sizeM - 1 && maze[nx][ny] == WALL) {
-                maze[nx][ny] = HOLE;
+            if (nx > 0 && nx < sizeN - 1 && ny > 0 && ny < sizeM - 1 && !maze.isOpen(nx, ny)) {
+                maze.set(nx, ny, HOLE);
                 return;
             }
         }
     }
 
-    private boolean isValidCell(byte[][] maze, int x, int y) {
-        return x > 0 && x < sizeN - 1 && y > 0 && y < sizeM - 1 && maze[x][y] == WALL;
+    private boolean isValidCell(MazeGrid maze, int x, int y) {
+        return x > 0 && x < sizeN - 1 && y > 0 && y < sizeM - 1 && !maze.isOpen(x, y);
     }
 
     private int randomOdd(int limit) {
@@ -152,14 +166,19 @@ public class MazeGenerator {
     }
 
     private List<int[]> shuffledDirections() {
-        List<int[]> directions = Arrays.asList(
-                new int[]{0, 1},
-                new int[]{1, 0},
-                new int[]{0, -1},
-                new int[]{-1, 0}
-        );
-        Collections.shuffle(directions, random);
-        return directions;
+        int[][] directions = {
+                {0, 1},
+                {1, 0},
+                {0, -1},
+                {-1, 0}
+        };
+        for (int i = directions.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int[] tmp = directions[i];
+            directions[i] = directions[j];
+            directions[j] = tmp;
+        }
+        return Arrays.asList(directions);
     }
 
     public static void printMaze(byte[][] maze) {
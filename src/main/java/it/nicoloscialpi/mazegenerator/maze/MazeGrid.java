@@ -0,0 +1,176 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.function.LongFunction;
+
+/**
+ * Maze cell types packed in 3 bits per cell, stored as three bit-planes in one {@link WordStore}.
+ * Plane {@code p} holds bit {@code p} of every cell's type, so WALL (0) is all planes clear and
+ * "open" (any non-wall type) is the OR of the planes. That lets scans and counts work 64 cells at a time.
+ * Cells are addressed by row-major index {@code r * cols + c}. Not thread-safe.
+ */
+public final class MazeGrid implements AutoCloseable {
+
+    private static final int PLANES = 3;
+
+    private final int rows;
+    private final int cols;
+    private final long cellCount;
+    private final long planeWords;
+    private final WordStore store;
+
+    public MazeGrid(int rows, int cols) {
+        this(rows, cols, HeapWordStore::new);
+    }
+
+    /**
+     * @param storage allocates the backing store given the number of 64-bit words needed
+     */
+    public MazeGrid(int rows, int cols, LongFunction<WordStore> storage) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cellCount = (long) rows * (long) cols;
+        this.planeWords = (cellCount + 63) >>> 6;
+        this.store = storage.apply(wordsFor(cellCount));
+    }
+
+    /**
+     * @return number of 64-bit words a grid of {@code cellCount} cells needs
+     */
+    public static long wordsFor(long cellCount) {
+        return PLANES * ((cellCount + 63) >>> 6);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public long getCellCount() {
+        return cellCount;
+    }
+
+    public long index(int r, int c) {
+        return (long) r * cols + c;
+    }
+
+    public byte get(int r, int c) {
+        return get(index(r, c));
+    }
+
+    public byte get(long index) {
+        long word = index >>> 6;
+        long bit = 1L << index;
+        int type = 0;
+        for (int p = 0; p < PLANES; p++) {
+            if ((store.getWord(p * planeWords + word) & bit) != 0) {
+                type |= 1 << p;
+            }
+        }
+        return (byte) type;
+    }
+
+    public void set(int r, int c, byte type) {
+        set(index(r, c), type);
+    }
+
+    public void set(long index, byte type) {
+        long word = index >>> 6;
+        long bit = 1L << index;
+        for (int p = 0; p < PLANES; p++) {
+            long at = p * planeWords + word;
+            long value = store.getWord(at);
+            long updated = ((type >> p) & 1) != 0 ? value | bit : value & ~bit;
+            if (updated != value) {
+                store.setWord(at, updated);
+            }
+        }
+    }
+
+    public boolean isOpen(int r, int c) {
+        return isOpen(index(r, c));
+    }
+
+    public boolean isOpen(long index) {
+        return (openWord(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * @return index of the first non-wall cell at or after {@code from}, or -1 if there is none
+     */
+    public long nextOpen(long from) {
+        return scan(from, cellCount, false);
+    }
+
+    /**
+     * @return index of the first non-wall cell in {@code [from, to)}, or -1 if there is none
+     */
+    public long nextOpen(long from, long to) {
+        return scan(from, to, false);
+    }
+
+    /**
+     * @return index of the first wall cell at or after {@code from}, or -1 if there is none
+     */
+    public long nextWall(long from) {
+        return scan(from, cellCount, true);
+    }
+
+    /**
+     * @return index of the first wall cell in {@code [from, to)}, or -1 if there is none
+     */
+    public long nextWall(long from, long to) {
+        return scan(from, to, true);
+    }
+
+    public long countOpen() {
+        long count = 0;
+        for (long w = 0; w < planeWords; w++) {
+            count += Long.bitCount(openWord(w));
+        }
+        return count;
+    }
+
+    /**
+     * Copies the grid into a {@code byte[rows][cols]} array, e.g. for printing or tests.
+     */
+    public byte[][] toArray() {
+        byte[][] out = new byte[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            long base = (long) r * cols;
+            for (int c = 0; c < cols; c++) {
+                out[r][c] = get(base + c);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    private long openWord(long word) {
+        return store.getWord(word) | store.getWord(planeWords + word) | store.getWord(2 * planeWords + word);
+    }
+
+    private long scan(long from, long to, boolean walls) {
+        if (from < 0) from = 0;
+        to = Math.min(to, cellCount);
+        if (from >= to) return -1;
+        long word = from >>> 6;
+        long lastWord = (to - 1) >>> 6;
+        long bits = walls ? ~openWord(word) : openWord(word);
+        bits &= -1L << from; // drop cells before "from" in the first word
+        while (true) {
+            if (bits != 0) {
+                long index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return index < to ? index : -1;
+            }
+            if (++word > lastWord) return -1;
+            bits = walls ? ~openWord(word) : openWord(word);
+        }
+    }
+}
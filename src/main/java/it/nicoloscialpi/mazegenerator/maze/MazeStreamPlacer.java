@@ -1,27 +1,45 @@
 package it.nicoloscialpi.mazegenerator.maze;
 
 import it.nicoloscialpi.mazegenerator.MazeGeneratorPlugin;
+import it.nicoloscialpi.mazegenerator.loadbalancer.BatchPlaceCellsJob;
+import it.nicoloscialpi.mazegenerator.loadbalancer.ChunkResidency;
 import it.nicoloscialpi.mazegenerator.loadbalancer.LoadBalancerJob;
 import it.nicoloscialpi.mazegenerator.loadbalancer.PhaseProgressSnapshot;
+import it.nicoloscialpi.mazegenerator.loadbalancer.PlacementStats;
+import it.nicoloscialpi.mazegenerator.loadbalancer.SchedulerBackend;
+import it.nicoloscialpi.mazegenerator.themes.CompiledTheme;
 import it.nicoloscialpi.mazegenerator.themes.Theme;
+import it.nicoloscialpi.mazegenerator.undo.UndoJournal;
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
 import it.nicoloscialpi.mazegenerator.util.SizeParser;
 import org.bukkit.Location;
 import org.bukkit.World;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.logging.Level;
 
 public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbalancer.JobProducer {
 
-    private final Theme theme;
+    // Cells carved per getJobs call in single-pass mode, relative to jobs-batch-cells
+    private static final int CARVE_AHEAD_FACTOR = 64;
+
+    // Compiled on the main thread at construction: samplers and block data are then shared read-only by all jobs
+    private final CompiledTheme theme;
     private final Location location;
     private final World world;
     private final int baseX;
@@ -32,7 +50,7 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
     private final boolean closed;
     private final boolean hollow;
 
-    private final IncrementalMazeGenerator generator;
+    private final MazeAlgorithm generator;
     private final int sizeN;
     private final int sizeM;
     private final int additionalExits;
@@ -41,22 +59,58 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
     private final int roomSizeX;
     private final int roomSizeZ;
     private final boolean hasExits;
-
-    private final boolean deferWallFill = MazeGeneratorPlugin.plugin.getConfig().getBoolean("defer-wall-fill", false);
+    private final long seed;
+    // Root of the per-build RNG tree: the generator and every placement job get their own split
+    private final SplittableRandom random;
+
+    // Config is read once up front: getJobs may run on the async pipeline thread
+    private final boolean deferWallFill;
+    private final int batch = Math.max(1, MazeGeneratorPlugin.plugin.getConfig().getInt("jobs-batch-cells", 256));
+    private final boolean setBlockData = MazeGeneratorPlugin.plugin.getConfig().getBoolean("set-block-data", false);
+    private final int configuredCellsPerJob = Math.max(1, MazeGeneratorPlugin.plugin.getConfig().getInt("cells-per-job", 16));
+    private final int maxBlocksPerJob = Math.max(64, MazeGeneratorPlugin.plugin.getConfig().getInt("max-blocks-per-job", 2048));
+    private final int snapshotMinBlocks = Math.max(0, MazeGeneratorPlugin.plugin.getConfig().getInt("snapshot-diff-min-blocks", 256));
+    // Single pass: carve the whole maze into the grid first, then place every cell once in its final type
+    private final boolean singlePass;
     private final long pendingMemoryBudgetBytes;
-    private final boolean diskSpillEnabled;
-    private final long diskSpillMaxBytes;
-    private final Path spillFilePath;
+    // Overflow for pending cell pieces when disk-spill is enabled, or null
+    private final SpillFile spill;
     private final long totalCells;
+    private final LongFunction<WordStore> gridStorage;
+    // Runs the planning stage of placement jobs, or null to plan on the main thread
+    private final Executor planner;
     private boolean carvingDone = false;
-    private int fillR = 0;
-    private int fillC = 0;
-    private final BitSet carved = new BitSet();
+    // Carve state for the wall pass: the generator's own grid when it has one, so the cells are tracked once
+    private final MazeGrid carved;
+    // Placer-driven pass over carved (wall fill or single-pass scan), or null when the generator emits walls
+    private final FillScan fill;
+    private long wallsToFill = -1;
     private long filledWalls = 0;
+    private final PlacementStats stats;
+    // Tickets keeping chunks with queued jobs loaded
+    private final ChunkResidency residency;
+    // Reused r, c, type triples for the primitive generator poll
+    private int[] cellBuffer = new int[0];
     private long pendingBytes = 0;
-    private BufferedWriter spillWriter;
-    private long spillFileBytes = 0;
-
+    // Reused buffer for pieces read back from the spill file
+    private final int[] spillPieces = new int[SpillFile.STRIDE * 64];
+    // Pieces that found the spill file full, queued in memory behind it; generation pauses until they are placed
+    private final ArrayDeque<OverflowGroup> spillOverflow = new ArrayDeque<>();
+    // Checkpointing, or null when disabled: the build's description and how much of its cell order is placed
+    private final BuildCheckpoint checkpoint;
+    private final PlacementWatermark watermark;
+    private PlacementWatermark.Batch batchInProgress;
+    private volatile long savedCells = -1;
+    // Position in the build's cell order (every cell handed to placement, in order) and the prefix a resumed
+    // build skips because it was placed before the restart
+    private long consumedCells = 0;
+    private final long resumeCells;
+    // Original blocks of the chunks this build writes to, for /maze undo, or null when disabled
+    private final UndoJournal undo;
+
+    /**
+     * @param owner the player starting the build, or null for the console; only undoing it is restricted to them
+     */
     public MazeStreamPlacer(Theme theme,
                             Location location,
                             int height,
@@ -70,8 +124,45 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
                             boolean hasRoom,
                             int roomSizeX,
                             int roomSizeZ,
-                            boolean hasExits) {
-        this.theme = theme;
+                            boolean hasExits,
+                            long seed,
+                            String algorithm,
+                            UUID owner) {
+        this(theme, location, height, cellSize, closed, isHollow, sizeN, sizeM, additionalExits, erosion, hasRoom,
+                roomSizeX, roomSizeZ, hasExits, seed, algorithm, owner, null);
+    }
+
+    /**
+     * Starts the build described by the checkpoint, or resumes it where it was checkpointed: the maze is carved again
+     * from its seed and the first {@link BuildCheckpoint#placedCells()} cells are skipped. The build then keeps
+     * checkpointing under the same id.
+     */
+    public MazeStreamPlacer(Theme theme, Location location, BuildCheckpoint checkpoint) {
+        this(theme, location, checkpoint.height(), checkpoint.cellSize(), checkpoint.closed(), checkpoint.hollow(),
+                checkpoint.sizeN(), checkpoint.sizeM(), checkpoint.additionalExits(), checkpoint.erosion(),
+                checkpoint.hasRoom(), checkpoint.roomSizeX(), checkpoint.roomSizeZ(), checkpoint.hasExits(),
+                checkpoint.seed(), checkpoint.algorithm(), checkpoint.owner(), checkpoint);
+    }
+
+    private MazeStreamPlacer(Theme theme,
+                             Location location,
+                             int height,
+                             int cellSize,
+                             boolean closed,
+                             boolean isHollow,
+                             int sizeN,
+                             int sizeM,
+                             int additionalExits,
+                             double erosion,
+                             boolean hasRoom,
+                             int roomSizeX,
+                             int roomSizeZ,
+                             boolean hasExits,
+                             long seed,
+                             String algorithm,
+                             UUID owner,
+                             BuildCheckpoint checkpoint) {
+        this.theme = CompiledTheme.compile(theme);
         this.location = location;
         this.world = location.getWorld();
         this.baseX = location.getBlockX();
@@ -89,124 +180,387 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
         this.roomSizeX = roomSizeX;
         this.roomSizeZ = roomSizeZ;
         this.hasExits = hasExits;
-        this.pendingMemoryBudgetBytes = SizeParser.parseToBytes(
-                MazeGeneratorPlugin.plugin.getConfig().getString("placement-max-pending", "8M"),
-                8L * 1024L * 1024L
-        );
-        org.bukkit.configuration.ConfigurationSection diskSpill = MazeGeneratorPlugin.plugin.getConfig().getConfigurationSection("disk-spill");
-        this.diskSpillEnabled = diskSpill != null && diskSpill.getBoolean("enabled", false);
-        this.diskSpillMaxBytes = SizeParser.parseToBytes(
-                diskSpill != null ? diskSpill.getString("max-file-size", "128M") : "128M",
-                128L * 1024L * 1024L
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        // A resumed build keeps the settings it started with: they decide the order cells are placed in
+        BuildCheckpoint.Settings settings = checkpoint != null && checkpoint.settings() != null
+                ? checkpoint.settings()
+                : settingsFromConfig();
+        this.deferWallFill = settings.deferWallFill();
+        if (checkpoint != null && !CheckpointStore.claim(checkpoint.id())) {
+            throw new IllegalStateException("Build " + checkpoint.id() + " is already running");
+        }
+        this.checkpoint = checkpoint != null ? checkpoint.withSettings(settings) : null;
+        this.resumeCells = checkpoint != null ? checkpoint.placedCells() : 0;
+        this.watermark = checkpoint != null ? new PlacementWatermark(resumeCells) : null;
+        try {
+            this.undo = openUndoJournal(checkpoint != null ? checkpoint.id() : UUID.randomUUID(), owner);
+            this.pendingMemoryBudgetBytes = SizeParser.parseToBytes(
+                    MazeGeneratorPlugin.plugin.getConfig().getString("placement-max-pending", "8M"),
+                    8L * 1024L * 1024L
+            );
+            org.bukkit.configuration.ConfigurationSection diskSpill = MazeGeneratorPlugin.plugin.getConfig().getConfigurationSection("disk-spill");
+            if (diskSpill != null && diskSpill.getBoolean("enabled", false)) {
+                long maxBytes = SizeParser.parseToBytes(diskSpill.getString("max-file-size", "128M"), 128L * 1024L * 1024L);
+                Path file = spillDirectory().resolve(SpillFile.FILE_PREFIX + seed + "-" + System.nanoTime() + ".bin");
+                this.spill = new SpillFile(file, maxBytes, this.cellSize);
+            } else {
+                this.spill = null;
+            }
+            this.totalCells = (long) this.sizeN * (long) this.sizeM;
+            this.gridStorage = createGridStorage();
+            this.planner = createPlanner();
+
+            this.generator = createGenerator(algorithm, settings.tileSize());
+            this.stats = new PlacementStats(totalCells);
+            this.residency = new ChunkResidency(MazeGeneratorPlugin.plugin, world,
+                    MazeGeneratorPlugin.plugin.getConfig().getInt("max-pinned-chunks", 256), stats, SchedulerBackend.current());
+            this.singlePass = !generator.emitsWalls() && settings.singlePass();
+            if (generator.emitsWalls()) {
+                this.carved = null;
+            } else if (generator.getGrid() != null) {
+                this.carved = generator.getGrid();
+            } else {
+                this.carved = new MazeGrid(this.sizeN, this.sizeM, gridStorage);
+            }
+            this.fill = carved == null ? null : new FillScan(carved, settings.rowMajor()
+                    ? null
+                    : new ChunkOrderWalker(this.sizeN, this.sizeM, baseX, baseZ, cellSize));
+        } catch (RuntimeException | Error e) {
+            // The build never starts, so nothing else closes it: give back the claim, the journal, the pools and
+            // files created so far; fields not reached yet are still null
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Picks the backing for each grid-sized store: in memory (heap or direct) below {@code grid-backing.mapped-threshold},
+     * a memory-mapped file under the data folder above it (or always with {@code mode: mapped}).
+     */
+    private LongFunction<WordStore> createGridStorage() {
+        org.bukkit.configuration.ConfigurationSection gridBacking = MazeGeneratorPlugin.plugin.getConfig().getConfigurationSection("grid-backing");
+        String mode = gridBacking != null ? gridBacking.getString("mode", "heap") : "heap";
+        long mappedThreshold = SizeParser.parseToBytes(
+                gridBacking != null ? gridBacking.getString("mapped-threshold", "1G") : "1G",
+                -1L
         );
-        Path spillDir = MazeGeneratorPlugin.plugin.getDataFolder().toPath().resolve("spillover");
+        LongFunction<WordStore> inMemory = "direct".equalsIgnoreCase(mode) ? DirectWordStore::new : HeapWordStore::new;
+        boolean alwaysMapped = "mapped".equalsIgnoreCase(mode);
+        Path gridDir = gridDirectory();
+        AtomicInteger files = new AtomicInteger();
+        return words -> {
+            if (alwaysMapped || (mappedThreshold > 0 && words * Long.BYTES >= mappedThreshold)) {
+                Path file = gridDir.resolve(MappedWordStore.FILE_PREFIX + seed + "-" + System.nanoTime() + "-" + files.incrementAndGet() + ".bin");
+                return new MappedWordStore(file, words);
+            }
+            return inMemory.apply(words);
+        };
+    }
+
+    /**
+     * Opens the build's undo journal over its whole box, floor to roof; a resumed build continues its own.
+     * @return null if undo is disabled or the journal cannot be created, in which case the build runs without it
+     */
+    private UndoJournal openUndoJournal(UUID id, UUID owner) {
+        org.bukkit.configuration.ConfigurationSection undoConfig = MazeGeneratorPlugin.plugin.getConfig().getConfigurationSection("undo");
+        if (undoConfig != null && !undoConfig.getBoolean("enabled", true)) {
+            return null;
+        }
+        int keepBuilds = undoConfig != null ? undoConfig.getInt("keep-builds", 10) : 10;
         try {
-            Files.createDirectories(spillDir);
-        } catch (IOException ignored) {
+            return UndoJournal.open(id, world.getUID(), owner,
+                    baseX, Math.max(world.getMinHeight(), baseY), baseZ,
+                    baseX + sizeN * cellSize, Math.min(world.getMaxHeight(), baseY + height + 1), baseZ + sizeM * cellSize,
+                    keepBuilds);
+        } catch (IOException e) {
+            MazeGeneratorPlugin.plugin.getLogger().log(Level.WARNING, "Cannot create the undo journal; this maze cannot be undone", e);
+            return null;
+        }
+    }
+
+    private Executor createPlanner() {
+        org.bukkit.configuration.ConfigurationSection planning = MazeGeneratorPlugin.plugin.getConfig().getConfigurationSection("off-thread-planning");
+        if (planning != null && !planning.getBoolean("enabled", true)) {
+            return null;
         }
-        this.spillFilePath = spillDir.resolve("maze-spill-" + System.currentTimeMillis() + ".yml");
-        this.totalCells = (long) this.sizeN * (long) this.sizeM;
+        int parallelism = planning != null ? planning.getInt("parallelism", 0) : 0;
+        return parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+    }
+
+    public static Path gridDirectory() {
+        return MazeGeneratorPlugin.plugin.getDataFolder().toPath().resolve("grid");
+    }
+
+    public static Path spillDirectory() {
+        return MazeGeneratorPlugin.plugin.getDataFolder().toPath().resolve("spillover");
+    }
 
-        this.generator = new IncrementalMazeGenerator(this.sizeN, this.sizeM,
-                additionalExits, erosion, hasRoom, roomSizeX, roomSizeZ, hasExits);
+    /**
+     * Deletes spill files left behind by a crash or an unclean shutdown.
+     */
+    public static void deleteStaleSpillFiles() {
+        SpillFile.deleteStale(spillDirectory());
+    }
+
+    @Override
+    public void close() {
+        if (checkpoint != null) {
+            CheckpointStore.release(checkpoint.id());
+        }
+        if (planner instanceof ForkJoinPool pool && pool != ForkJoinPool.commonPool()) {
+            pool.shutdownNow();
+        }
+        if (residency != null) {
+            residency.releaseAll();
+        }
+        if (spill != null) {
+            spill.close();
+        }
+        if (undo != null) {
+            undo.close();
+        }
+        if (generator != null) {
+            generator.close();
+        }
+        if (carved != null && (generator == null || carved != generator.getGrid())) {
+            carved.close();
+        }
+    }
+
+    private static BuildCheckpoint.Settings settingsFromConfig() {
+        org.bukkit.configuration.file.FileConfiguration config = MazeGeneratorPlugin.plugin.getConfig();
+        org.bukkit.configuration.ConfigurationSection tiled = config.getConfigurationSection("tiled-generation");
+        return new BuildCheckpoint.Settings(
+                "single-pass".equalsIgnoreCase(config.getString("placement-mode", "layered")),
+                config.getBoolean("defer-wall-fill", false),
+                "row-major".equalsIgnoreCase(config.getString("emission-order", "hilbert")),
+                tiled != null ? tiled.getInt("tile-size", TiledMazeGenerator.DEFAULT_TILE_SIZE) : TiledMazeGenerator.DEFAULT_TILE_SIZE);
+    }
+
+    private MazeAlgorithm createGenerator(String algorithm, int tileSize) {
+        MazeAlgorithmType type = MazeAlgorithmType.fromKey(algorithm);
+        if (type == null) {
+            type = MazeAlgorithmType.BACKTRACKER;
+        }
+        if (type == MazeAlgorithmType.TILED) {
+            org.bukkit.configuration.ConfigurationSection tiled = MazeGeneratorPlugin.plugin.getConfig().getConfigurationSection("tiled-generation");
+            int parallelism = tiled != null ? tiled.getInt("parallelism", 0) : 0;
+            ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+            try {
+                return new TiledMazeGenerator(sizeN, sizeM, additionalExits, erosion, hasRoom,
+                        roomSizeX, roomSizeZ, hasExits, random.split(), pool, tileSize);
+            } finally {
+                if (pool != ForkJoinPool.commonPool()) {
+                    pool.shutdown(); // already-submitted carving still runs; threads exit once it is done
+                }
+            }
+        }
+        return type.create(sizeN, sizeM, additionalExits, erosion, hasRoom, roomSizeX, roomSizeZ, hasExits, random.split(), gridStorage);
+    }
+
+    @Override
+    public boolean isPending() {
+        // In single-pass mode getJobs returns nothing while it carves ahead, and placing takes many calls after that
+        return generator.isPending() || (singlePass && !fill.isComplete())
+                || (spill != null && spill.hasRemaining()) || !spillOverflow.isEmpty();
+    }
+
+    @Override
+    public PlacementStats getStats() {
+        return stats;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Saves the build and its placed prefix, if anything was placed since the last checkpoint. Safe to call from
+     * any thread while the build runs.
+     */
+    @Override
+    public CompletableFuture<Void> checkpoint() {
+        if (checkpoint == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long placed = watermark.getPlacedCells();
+        if (placed == savedCells) {
+            return CompletableFuture.completedFuture(null);
+        }
+        savedCells = placed;
+        return CheckpointStore.save(checkpoint.withPlacedCells(placed));
+    }
+
+    @Override
+    public void discardCheckpoint() {
+        if (checkpoint != null) {
+            CheckpointStore.delete(checkpoint.id());
+        }
     }
 
     @Override
     public List<LoadBalancerJob> getJobs() {
-        int batch = Math.max(1, MazeGeneratorPlugin.plugin.getConfig().getInt("jobs-batch-cells", 256));
-        boolean setBlockData = MazeGeneratorPlugin.plugin.getConfig().getBoolean("set-block-data", false);
-        int configuredCellsPerJob = Math.max(1, MazeGeneratorPlugin.plugin.getConfig().getInt("cells-per-job", 16));
-        int maxBlocksPerJob = Math.max(64, MazeGeneratorPlugin.plugin.getConfig().getInt("max-blocks-per-job", 2048));
-        int blocksPerCell = Math.max(1, cellSize * cellSize * (height + 1));
-        int sizePenalty = Math.max(1, blocksPerCell / 64);
-        int adaptiveCellsPerJob = Math.max(1, configuredCellsPerJob / sizePenalty);
-        int effectiveCellsPerJob = Math.max(1, Math.min(adaptiveCellsPerJob, Math.max(1, maxBlocksPerJob / blocksPerCell)));
+        if (watermark == null) {
+            return collectJobs();
+        }
+        List<LoadBalancerJob> jobs;
+        long before;
+        do {
+            before = consumedCells;
+            batchInProgress = watermark.open();
+            jobs = collectJobs();
+            watermark.close(batchInProgress, consumedCells);
+            // Keep going while replaying placed cells: an empty result would end the build early
+        } while (jobs.isEmpty() && before < resumeCells && consumedCells > before);
+        return jobs;
+    }
+
+    private List<LoadBalancerJob> collectJobs() {
+        int batch = this.batch;
+        boolean setBlockData = this.setBlockData;
+        int effectiveCellsPerJob = cellsPerJob();
         ArrayList<LoadBalancerJob> jobs = new ArrayList<>(Math.max(1, batch / effectiveCellsPerJob));
         HashMap<Long, CellGroupBuffer> groups = new HashMap<>();
         int collected = 0;
 
+        if (!spillOverflow.isEmpty()) {
+            // The spill file filled up: place the backlog, a batch per call, before generating more
+            drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob, batch);
+            return jobs;
+        }
+
+        if (generator.emitsWalls()) {
+            // Complete rows stream straight into placement: no wall pass, no carved bitset
+            int count = pollCells(batch);
+            for (int i = 0; i < count * 3; i += 3) {
+                int worldX = baseX + cellBuffer[i] * cellSize;
+                int worldZ = baseZ + cellBuffer[i + 1] * cellSize;
+                addCellToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, (byte) cellBuffer[i + 2]);
+            }
+            flushRemainingGroups(groups, jobs, setBlockData);
+            drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob, batch);
+            return jobs;
+        }
+
+        if (singlePass) {
+            if (!carvingDone) {
+                // Generate ahead: carve into the grid without emitting, a bounded slice per call
+                int carveBudget = batch * CARVE_AHEAD_FACTOR;
+                int count = pollCells(carveBudget);
+                if (carved != generator.getGrid()) {
+                    for (int i = 0; i < count * 3; i += 3) {
+                        carved.set(cellBuffer[i], cellBuffer[i + 1], (byte) cellBuffer[i + 2]);
+                    }
+                }
+                if (count == 0 && generator.isComplete()) {
+                    carvingDone = true;
+                } else {
+                    return jobs;
+                }
+                // Carving just finished: start placing in this call, an empty result would end the build
+            }
+            while (collected < batch && fill.next(false, batch - collected)) {
+                addRunToGroup(groups, jobs, effectiveCellsPerJob, setBlockData);
+                collected += fill.runLength();
+            }
+            flushRemainingGroups(groups, jobs, setBlockData);
+            drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob, batch);
+            return jobs;
+        }
+
         if (deferWallFill) {
             if (!carvingDone) {
                 int carveBudget = batch - jobs.size();
-                var cells = generator.pollNextCells(carveBudget);
-                for (IncrementalMazeGenerator.Cell cell : cells) {
-                    int r = cell.r();
-                    int c = cell.c();
-                    carved.set(r * sizeM + c);
+                int count = pollCells(carveBudget);
+                for (int i = 0; i < count * 3; i += 3) {
+                    int r = cellBuffer[i];
+                    int c = cellBuffer[i + 1];
+                    byte type = (byte) cellBuffer[i + 2];
+                    carved.set(r, c, type);
                     int worldX = baseX + r * cellSize;
                     int worldZ = baseZ + c * cellSize;
-                    addCellToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, cell.type());
+                    addCellToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, type);
                     collected++;
                     if (collected >= batch) break;
                     if (jobs.size() >= batch) break;
                 }
-                if (jobs.isEmpty()) {
+                // Only finish carving once the generator is exhausted: an empty poll can also mean "not ready yet"
+                if (count == 0 && generator.isComplete()) {
                     carvingDone = true;
+                    wallsToFill = totalCells - carved.countOpen();
                 }
             }
 
-            while (collected < batch && fillR < sizeN) {
-                int idx = fillR * sizeM + fillC;
-                if (!carved.get(idx)) {
-                    int r = fillR;
-                    int c = fillC;
-                    int worldX = baseX + r * cellSize;
-                    int worldZ = baseZ + c * cellSize;
-                    addCellToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, IncrementalMazeGenerator.WALL);
-                    filledWalls++;
-                    collected++;
-                }
-                fillC++;
-                if (fillC >= sizeM) {
-                    fillC = 0;
-                    fillR++;
-                }
+            while (carvingDone && collected < batch && fill.next(true, batch - collected)) {
+                addRunToGroup(groups, jobs, effectiveCellsPerJob, setBlockData);
+                filledWalls += fill.runLength();
+                collected += fill.runLength();
             }
             flushRemainingGroups(groups, jobs, setBlockData);
-            drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob);
+            drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob, batch);
             return jobs;
         }
 
-        while (collected < batch && fillR < sizeN) {
-            int idx = fillR * sizeM + fillC;
-            if (!carved.get(idx)) {
-                int r = fillR;
-                int c = fillC;
-                int worldX = baseX + r * cellSize;
-                int worldZ = baseZ + c * cellSize;
-                addCellToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, IncrementalMazeGenerator.WALL);
-                collected++;
-            }
-            fillC++;
-            if (fillC >= sizeM) {
-                fillC = 0;
-                fillR++;
-            }
+        while (collected < batch && fill.next(true, batch - collected)) {
+            addRunToGroup(groups, jobs, effectiveCellsPerJob, setBlockData);
+            collected += fill.runLength();
         }
         if (collected >= batch) {
             flushRemainingGroups(groups, jobs, setBlockData);
+            drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob, batch);
             return jobs;
         }
 
-        var cells = generator.pollNextCells(batch - collected);
-        for (IncrementalMazeGenerator.Cell cell : cells) {
-            int r = cell.r();
-            int c = cell.c();
-            int idx = r * sizeM + c;
-            if (cell.type() != IncrementalMazeGenerator.WALL) {
-                carved.set(idx);
+        int count = pollCells(batch - collected);
+        for (int i = 0; i < count * 3; i += 3) {
+            int r = cellBuffer[i];
+            int c = cellBuffer[i + 1];
+            byte type = (byte) cellBuffer[i + 2];
+            if (type != IncrementalMazeGenerator.WALL) {
+                carved.set(r, c, type);
             }
             int worldX = baseX + r * cellSize;
             int worldZ = baseZ + c * cellSize;
-            addCellToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, cell.type());
+            addCellToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, type);
             collected++;
             if (collected >= batch) break;
         }
         flushRemainingGroups(groups, jobs, setBlockData);
-        drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob);
+        drainSpillFileToJobs(jobs, setBlockData, effectiveCellsPerJob, batch);
         return jobs;
     }
 
+    /**
+     * @return cells per placement job: {@code cells-per-job}, scaled down for large cells and capped by {@code max-blocks-per-job}
+     */
+    private int cellsPerJob() {
+        int blocksPerCell = Math.max(1, cellSize * cellSize * (height + 1));
+        int sizePenalty = Math.max(1, blocksPerCell / 64);
+        int adaptiveCellsPerJob = Math.max(1, configuredCellsPerJob / sizePenalty);
+        return Math.max(1, Math.min(adaptiveCellsPerJob, Math.max(1, maxBlocksPerJob / blocksPerCell)));
+    }
+
+    private int pollCells(int max) {
+        if (max <= 0) return 0;
+        if (cellBuffer.length < max * 3) {
+            cellBuffer = new int[max * 3];
+        }
+        return generator.pollNextCells(cellBuffer, max);
+    }
+
+    /**
+     * Adds the last run from {@link FillScan#next} as one span: the cells lie next to each other along Z.
+     */
+    private void addRunToGroup(Map<Long, CellGroupBuffer> groups,
+                               List<LoadBalancerJob> jobs,
+                               int effectiveCellsPerJob,
+                               boolean setBlockData) {
+        int worldX = baseX + (int) (fill.runStart() / sizeM) * cellSize;
+        int worldZ = baseZ + (int) (fill.runStart() % sizeM) * cellSize;
+        addSpanToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, baseY, worldZ, fill.runType(), fill.runLength());
+    }
+
     private void addCellToGroup(Map<Long, CellGroupBuffer> groups,
                                 List<LoadBalancerJob> jobs,
                                 int effectiveCellsPerJob,
@@ -215,12 +569,73 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
                                 int worldY,
                                 int worldZ,
                                 int type) {
-        long key = chunkKeyFor(worldX, worldZ);
+        addSpanToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, worldY, worldZ, type, 1);
+    }
+
+    /**
+     * Queues {@code cells} cells of one type starting at the given origin and running along Z.
+     */
+    private void addSpanToGroup(Map<Long, CellGroupBuffer> groups,
+                                List<LoadBalancerJob> jobs,
+                                int effectiveCellsPerJob,
+                                boolean setBlockData,
+                                int worldX,
+                                int worldY,
+                                int worldZ,
+                                int type,
+                                int cells) {
+        long skip = Math.min(cells, resumeCells - consumedCells);
+        consumedCells += cells;
+        if (skip > 0) {
+            // Placed before the build was interrupted
+            stats.recordCells(skip);
+            if (skip == cells) {
+                return;
+            }
+            worldZ += (int) skip * cellSize;
+            cells -= (int) skip;
+        }
+        // Split the footprint at chunk borders: each piece goes to the job of the chunk it lies in
+        int span = Math.max(1, cellSize);
+        int spanZ = span * Math.max(1, cells);
+        int x = 0;
+        while (x < span) {
+            int xEnd = Math.min(span, chunkEnd(worldX + x) - worldX);
+            int z = 0;
+            while (z < spanZ) {
+                int zEnd = Math.min(spanZ, chunkEnd(worldZ + z) - worldZ);
+                addPieceToGroup(groups, jobs, effectiveCellsPerJob, setBlockData, worldX, worldY, worldZ, type, x, xEnd, z, zEnd);
+                z = zEnd;
+            }
+            x = xEnd;
+        }
+    }
+
+    /**
+     * @return first block coordinate of the next chunk along the axis
+     */
+    private static int chunkEnd(int block) {
+        return (Math.floorDiv(block, 16) + 1) * 16;
+    }
+
+    private void addPieceToGroup(Map<Long, CellGroupBuffer> groups,
+                                 List<LoadBalancerJob> jobs,
+                                 int effectiveCellsPerJob,
+                                 boolean setBlockData,
+                                 int worldX,
+                                 int worldY,
+                                 int worldZ,
+                                 int type,
+                                 int xFrom,
+                                 int xTo,
+                                 int zFrom,
+                                 int zTo) {
+        long key = chunkKeyFor(worldX + xFrom, worldZ + zFrom);
         CellGroupBuffer buffer = groups.computeIfAbsent(key, k -> new CellGroupBuffer());
-        buffer.add(worldX, worldY, worldZ, type);
+        buffer.add(worldX, worldY, worldZ, type, xFrom, xTo, zFrom, zTo);
         pendingBytes += CellGroupBuffer.BYTES_PER_CELL;
 
-        if (buffer.cellCount() >= effectiveCellsPerJob) {
+        if (buffer.cellsCovered(cellSize) >= effectiveCellsPerJob) {
             flushGroup(groups, jobs, key, setBlockData);
         } else if (pendingBytes > pendingMemoryBudgetBytes) {
             if (!attemptSpill(groups, key, buffer)) {
@@ -246,146 +661,197 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
         if (buffer == null || buffer.cellCount() == 0) {
             return;
         }
-        int[][] arr = buffer.toCellArray();
         pendingBytes = Math.max(0, pendingBytes - buffer.bytes());
+        if (spill != null && (spill.hasRemaining() || !spillOverflow.isEmpty())) {
+            // Older pieces are waiting in the spill file: queue behind them, since a cell placed as wall and then
+            // carved must not have its pieces applied out of order
+            if (spillOverflow.isEmpty() && spillBuffer(chunkKey, buffer)) {
+                return;
+            }
+            // The file is full: hold the pieces in memory behind it. Later getJobs calls drain the backlog a batch
+            // at a time and generate nothing until it is gone, so this holds at most one call's worth of cells
+            spillOverflow.add(new OverflowGroup(chunkKey, buffer, new SpillOrigin(batchInProgress,
+                    watermark != null ? watermark.track(batchInProgress) : () -> {})));
+            return;
+        }
+        addJob(jobs, chunkKey, buffer, setBlockData, batchInProgress);
+    }
+
+    /**
+     * Turns the buffer's pieces into a placement job of the chunk and empties the buffer.
+     * @param batch watermark batch the cells belong to
+     */
+    private void addJob(List<LoadBalancerJob> jobs,
+                        long chunkKey,
+                        CellGroupBuffer buffer,
+                        boolean setBlockData,
+                        PlacementWatermark.Batch batch) {
+        int[][] arr = buffer.toCellArray();
         buffer.clear();
-        int cx = (int) (chunkKey >> 32);
-        int cz = (int) chunkKey;
-        jobs.add(new it.nicoloscialpi.mazegenerator.loadbalancer.BatchPlaceCellsJob(
-                world, cx, cz, theme, height, cellSize, closed, hollow, setBlockData, arr
-        ));
+        int cx = ChunkKeys.x(chunkKey);
+        int cz = ChunkKeys.z(chunkKey);
+        BatchPlaceCellsJob job = new BatchPlaceCellsJob(
+                world, cx, cz, theme, height, cellSize, closed, hollow, setBlockData, arr, seed, stats, residency, snapshotMinBlocks, undo
+        );
+        if (planner != null) {
+            job.planAsync(planner);
+        }
+        if (watermark != null) {
+            job.onApplied(watermark.track(batch));
+        }
+        jobs.add(job);
     }
 
+    /**
+     * Moves the chunk's pending pieces to the spill file instead of making a job of them yet.
+     * @return false if they stay in memory: spilling is disabled, the file is full or cannot be written
+     */
     private boolean attemptSpill(Map<Long, CellGroupBuffer> groups,
                                  long chunkKey,
                                  CellGroupBuffer buffer) {
-        if (!diskSpillEnabled || buffer.cellCount() == 0) {
+        // Pieces waiting behind a full file must still come out first
+        if (spill == null || buffer.cellCount() == 0 || !spillOverflow.isEmpty()) {
             return false;
         }
-        long estimatedAppend = estimateSpillBytes(buffer);
-        if (spillFileBytes + estimatedAppend > diskSpillMaxBytes) {
+        int bytes = buffer.bytes();
+        if (!spillBuffer(chunkKey, buffer)) {
             return false;
         }
+        pendingBytes = Math.max(0, pendingBytes - bytes);
+        groups.remove(chunkKey);
+        return true;
+    }
+
+    /**
+     * Appends the buffer to the spill file as one bucket and empties it; leaves it untouched if that fails.
+     */
+    private boolean spillBuffer(long chunkKey, CellGroupBuffer buffer) {
+        // The spilled cells' batch must not count as placed before their jobs are made and applied
+        SpillOrigin origin = watermark != null
+                ? new SpillOrigin(batchInProgress, watermark.track(batchInProgress))
+                : null;
+        boolean spilled;
         try {
-            ensureSpillWriter();
-            int cx = (int) (chunkKey >> 32);
-            int cz = (int) chunkKey;
-            for (int i = 0; i < buffer.size; i += 4) {
-                int worldX = buffer.data[i];
-                int worldY = buffer.data[i + 1];
-                int worldZ = buffer.data[i + 2];
-                int type = buffer.data[i + 3];
-                String line = "- [" + cx + ", " + cz + ", " + worldX + ", " + worldY + ", " + worldZ + ", " + type + "]\n";
-                spillWriter.write(line);
-                spillFileBytes += line.getBytes(StandardCharsets.UTF_8).length;
-            }
-            spillWriter.flush();
-            pendingBytes = Math.max(0, pendingBytes - buffer.bytes());
-            groups.remove(chunkKey);
-            buffer.clear();
-            return true;
+            spilled = spill.append(chunkKey, buffer.data, buffer.size, origin);
         } catch (IOException e) {
+            spilled = false;
+        }
+        if (!spilled) {
+            if (origin != null) {
+                origin.hold().run();
+            }
             return false;
         }
+        buffer.clear();
+        return true;
     }
 
-    private long estimateSpillBytes(CellGroupBuffer buffer) {
-        // Approximate YAML line length per cell
-        int perLine = 50;
-        return (long) perLine * buffer.cellCount();
+    /**
+     * Watermark batch of a spilled bucket and the hold that keeps the batch open until the bucket is read back.
+     */
+    private record SpillOrigin(PlacementWatermark.Batch batch, Runnable hold) {
     }
 
-    private void ensureSpillWriter() throws IOException {
-        if (spillWriter != null) {
-            return;
-        }
-        spillWriter = Files.newBufferedWriter(spillFilePath, StandardCharsets.UTF_8);
-        spillWriter.write("cells:\n");
-        spillFileBytes = "cells:\n".getBytes(StandardCharsets.UTF_8).length;
+    private record OverflowGroup(long chunkKey, CellGroupBuffer buffer, SpillOrigin origin) {
     }
 
     private long chunkKeyFor(int worldX, int worldZ) {
-        int cx = Math.floorDiv(worldX, 16);
-        int cz = Math.floorDiv(worldZ, 16);
-        return (((long) cx) << 32) ^ (cz & 0xffffffffL);
+        return ChunkKeys.ofBlock(worldX, worldZ);
     }
 
+    /**
+     * Turns up to {@code budget} spilled pieces back into jobs, oldest first, then those waiting behind a full file.
+     * Called with one batch per {@code getJobs}, so the file drains in steps alongside generation and the heap only
+     * holds a bounded read.
+     */
     private void drainSpillFileToJobs(List<LoadBalancerJob> jobs,
                                       boolean setBlockData,
-                                      int effectiveCellsPerJob) {
-        if (spillWriter != null) {
-            try {
-                spillWriter.close();
-            } catch (IOException ignored) {
-            }
-            spillWriter = null;
-        }
-        if (!Files.exists(spillFilePath)) {
+                                      int effectiveCellsPerJob,
+                                      int budget) {
+        if (spill == null) {
             return;
         }
-        Map<Long, CellGroupBuffer> fromDisk = new HashMap<>();
         try {
-            List<String> lines = Files.readAllLines(spillFilePath, StandardCharsets.UTF_8);
-            for (String raw : lines) {
-                String line = raw.trim();
-                if (!line.startsWith("- [")) {
-                    continue;
-                }
-                String inner = line.substring(3, line.length() - 1);
-                String[] parts = inner.split(",");
-                if (parts.length != 6) {
-                    continue;
+            CellGroupBuffer buffer = new CellGroupBuffer();
+            while (budget > 0 && spill.nextBucket()) {
+                long key = spill.bucketKey();
+                SpillOrigin origin = (SpillOrigin) spill.bucketTag();
+                PlacementWatermark.Batch owner = origin != null ? origin.batch() : null;
+                int count = spill.read(spillPieces, Math.min(budget, spillPieces.length / SpillFile.STRIDE));
+                budget -= count;
+                for (int i = 0; i < count * SpillFile.STRIDE; i += SpillFile.STRIDE) {
+                    int[] f = spillPieces;
+                    buffer.add(f[i], f[i + 1], f[i + 2], f[i + 3], f[i + 4], f[i + 5], f[i + 6], f[i + 7]);
+                    if (buffer.cellsCovered(cellSize) >= effectiveCellsPerJob) {
+                        addJob(jobs, key, buffer, setBlockData, owner);
+                    }
                 }
-                int cx = Integer.parseInt(parts[0].trim());
-                int cz = Integer.parseInt(parts[1].trim());
-                int worldX = Integer.parseInt(parts[2].trim());
-                int worldY = Integer.parseInt(parts[3].trim());
-                int worldZ = Integer.parseInt(parts[4].trim());
-                int type = Integer.parseInt(parts[5].trim());
-                long key = (((long) cx) << 32) ^ (cz & 0xffffffffL);
-                CellGroupBuffer buffer = fromDisk.computeIfAbsent(key, k -> new CellGroupBuffer());
-                buffer.add(worldX, worldY, worldZ, type);
-                if (buffer.cellCount() >= effectiveCellsPerJob) {
-                    flushGroup(fromDisk, jobs, key, setBlockData);
+                if (spill.bucketRemaining() == 0) {
+                    if (buffer.cellCount() > 0) {
+                        addJob(jobs, key, buffer, setBlockData, owner);
+                    }
+                    if (origin != null) {
+                        origin.hold().run();
+                    }
+                } else if (buffer.cellCount() > 0) {
+                    // Out of budget mid-bucket: the rest of the bucket follows in the next call
+                    addJob(jobs, key, buffer, setBlockData, owner);
                 }
             }
-            flushRemainingGroups(fromDisk, jobs, setBlockData);
-        } catch (Exception ignored) {
-        } finally {
-            try {
-                Files.deleteIfExists(spillFilePath);
-            } catch (IOException ignored) {
+            while (budget > 0 && !spill.hasRemaining() && !spillOverflow.isEmpty()) {
+                OverflowGroup group = spillOverflow.poll();
+                budget -= group.buffer().cellCount();
+                addJob(jobs, group.chunkKey(), group.buffer(), setBlockData, group.origin().batch());
+                group.origin().hold().run();
             }
-            spillFileBytes = 0;
+        } catch (IOException e) {
+            // Spilled cells cannot be recovered: stop the build instead of leaving holes in the maze
+            throw new UncheckedIOException("Cannot read back spilled cells", e);
         }
     }
 
+    /**
+     * Cell pieces of one chunk: origin, type and the covered offset range, see {@code BatchPlaceCellsJob}.
+     * A piece may cover a run of several cells along Z.
+     */
     private static final class CellGroupBuffer {
-        private static final int BYTES_PER_CELL = Integer.BYTES * 4;
-        private int[] data = new int[16];
+        private static final int STRIDE = 8;
+        private static final int BYTES_PER_CELL = Integer.BYTES * STRIDE;
+        private int[] data = new int[STRIDE * 4];
         private int size = 0;
+        // Footprint of all pieces in blocks (x * z)
+        private long blocks = 0;
 
-        void add(int worldX, int worldY, int worldZ, int type) {
-            ensureCapacity(size + 4);
+        void add(int worldX, int worldY, int worldZ, int type, int xFrom, int xTo, int zFrom, int zTo) {
+            ensureCapacity(size + STRIDE);
             data[size++] = worldX;
             data[size++] = worldY;
             data[size++] = worldZ;
             data[size++] = type;
+            data[size++] = xFrom;
+            data[size++] = xTo;
+            data[size++] = zFrom;
+            data[size++] = zTo;
+            blocks += (long) (xTo - xFrom) * (zTo - zFrom);
         }
 
         int cellCount() {
-            return size / 4;
+            return size / STRIDE;
+        }
+
+        /**
+         * @return how many whole cells the pieces add up to, for sizing jobs
+         */
+        long cellsCovered(int cellSize) {
+            long area = (long) cellSize * cellSize;
+            return (blocks + area - 1) / Math.max(1, area);
         }
 
         int[][] toCellArray() {
             int cells = cellCount();
-            int[][] arr = new int[cells][4];
-            int idx = 0;
+            int[][] arr = new int[cells][];
             for (int i = 0; i < cells; i++) {
-                arr[i][0] = data[idx++];
-                arr[i][1] = data[idx++];
-                arr[i][2] = data[idx++];
-                arr[i][3] = data[idx++];
+                arr[i] = Arrays.copyOfRange(data, i * STRIDE, (i + 1) * STRIDE);
             }
             return arr;
         }
@@ -396,6 +862,7 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
 
         void clear() {
             size = 0;
+            blocks = 0;
         }
 
         private void ensureCapacity(int wanted) {
@@ -413,21 +880,26 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
     public double getProgressPercentage() {
         long phase1Total = totalCells;
         long phase2Total = totalCells;
-        long carvedCount = carved.cardinality();
         long phase2Done = generator.getEmittedCount();
         long total;
         long done;
-        if (deferWallFill) {
+        if (generator.emitsWalls()) {
+            total = totalCells;
+            done = generator.getEmittedCount();
+        } else if (singlePass) {
+            // Carving only opens some cells, so count it as done once the generator is exhausted
+            total = 2 * totalCells;
+            done = (carvingDone ? totalCells : Math.min(totalCells, phase2Done)) + fill.position();
+        } else if (deferWallFill) {
             if (!carvingDone) {
                 total = phase2Total;
                 done = phase2Done;
             } else {
-                long wallsToFill = phase1Total - carvedCount;
                 total = Math.max(1, wallsToFill);
                 done = Math.min(filledWalls, total);
             }
         } else {
-            long phase1DoneApprox = (long) fillR * (long) sizeM + fillC;
+            long phase1DoneApprox = fill.position();
             total = phase1Total + phase2Total;
             done = phase1DoneApprox + phase2Done;
         }
@@ -440,11 +912,16 @@ public class MazeStreamPlacer implements it.nicoloscialpi.mazegenerator.loadbala
     public PhaseProgressSnapshot getPhaseProgress() {
         double generationPct = clampPct((double) generator.getEmittedCount() / (double) totalCells * 100.0);
         double placementPct;
-        if (deferWallFill) {
-            long wallsToFill = Math.max(1, totalCells - carved.cardinality());
-            placementPct = clampPct((double) filledWalls / (double) wallsToFill * 100.0);
+        if (generator.emitsWalls()) {
+            placementPct = generationPct;
+        } else if (singlePass) {
+            if (carvingDone) generationPct = 100.0;
+            placementPct = clampPct((double) fill.position() / (double) totalCells * 100.0);
+        } else if (deferWallFill) {
+            long walls = carvingDone ? wallsToFill : totalCells - generator.getEmittedCount();
+            placementPct = clampPct((double) filledWalls / (double) Math.max(1, walls) * 100.0);
         } else {
-            long phase1DoneApprox = (long) fillR * (long) sizeM + fillC;
+            long phase1DoneApprox = fill.position();
             placementPct = clampPct((double) phase1DoneApprox / (double) totalCells * 100.0);
         }
 
@@ -0,0 +1,66 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.ArrayDeque;
+
+/**
+ * Tracks how much of a build's cell order is fully placed, for checkpoints.
+ * Cells are handed out in batches (one per {@code getJobs} call); a batch is placed once every job created for it
+ * has been applied. Jobs finish out of order, so the watermark is the end of the longest prefix of placed batches.
+ * Batches are opened on the producer thread and completed by jobs on the threads applying them.
+ */
+final class PlacementWatermark {
+
+    /**
+     * Cells {@code [.., end)} of the build's order and the jobs created for them that have not been applied yet.
+     */
+    static final class Batch {
+        private long end = -1;
+        private int pending = 0;
+    }
+
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+    private long placedCells;
+
+    PlacementWatermark(long placedCells) {
+        this.placedCells = placedCells;
+    }
+
+    synchronized Batch open() {
+        Batch batch = new Batch();
+        batches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Counts a job created for the batch; the returned callback must run once the job has been applied.
+     */
+    synchronized Runnable track(Batch batch) {
+        batch.pending++;
+        return () -> complete(batch);
+    }
+
+    /**
+     * Ends the batch: it covers the build's cells up to {@code end}.
+     */
+    synchronized void close(Batch batch, long end) {
+        batch.end = end;
+        advance();
+    }
+
+    private synchronized void complete(Batch batch) {
+        batch.pending--;
+        advance();
+    }
+
+    private void advance() {
+        Batch head;
+        while ((head = batches.peek()) != null && head.end >= 0 && head.pending == 0) {
+            placedCells = Math.max(placedCells, head.end);
+            batches.poll();
+        }
+    }
+
+    synchronized long getPlacedCells() {
+        return placedCells;
+    }
+}
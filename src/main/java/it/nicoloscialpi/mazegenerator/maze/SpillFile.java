@@ -0,0 +1,300 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * First-in first-out disk overflow for cell pieces waiting to become placement jobs, see {@link MazeStreamPlacer}.
+ * Pieces are appended in buckets, one per chunk: a header with the chunk key and the piece count, then one
+ * fixed-width record per piece. Records store the piece relative to its chunk, so one takes {@link #RECORD_BYTES}
+ * bytes instead of eight ints. Reads and writes go through a {@link FileChannel} with two small direct buffers, and
+ * buckets are read back a bounded number of pieces at a time, so draining never holds more than that on the heap.
+ * The file is created on the first append, truncated whenever everything written has been read, and deleted on close.
+ * Not thread-safe: only the placer's producer thread uses it.
+ */
+final class SpillFile implements AutoCloseable {
+
+    static final String FILE_PREFIX = "maze-spill-";
+    static final int STRIDE = 8; // worldX, worldY, worldZ, type, xFrom, xTo, zFrom, zTo
+    // Origin x and z relative to the chunk (short each), y (short), type (byte), x range and z range in the chunk (nibbles)
+    static final int RECORD_BYTES = 9;
+    static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Stands in for a null tag in the queue
+    private static final Object NO_TAG = new Object();
+
+    private final Path file;
+    private final long maxBytes;
+    private final int cellSize;
+    private FileChannel channel;
+    private ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer;
+    // End of the data written, including what is still in the write buffer, and the part that is in the file
+    private long writePos = 0;
+    private long flushedPos = 0;
+    // Next file offset to fetch into the read buffer
+    private long fetchPos = 0;
+    // Caller's tag of every bucket not fully read yet, oldest first
+    private final ArrayDeque<Object> tags = new ArrayDeque<>();
+    private long bucketKey;
+    private Object bucketTag;
+    private int bucketRemaining = 0;
+
+    /**
+     * @param maxBytes the file is not grown past this; appends that do not fit are refused
+     * @param cellSize cell edge in blocks, used to store runs relative to their last cell
+     */
+    SpillFile(Path file, long maxBytes, int cellSize) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.cellSize = Math.max(1, cellSize);
+    }
+
+    /**
+     * Appends the pieces {@code [0, size)} of {@code data} as one bucket of the chunk.
+     * @param tag returned by {@link #bucketTag()} when the bucket is read back
+     * @return false, writing nothing, if the file would grow past its limit or a piece has no compact encoding
+     */
+    boolean append(long chunkKey, int[] data, int size, Object tag) throws IOException {
+        int pieces = size / STRIDE;
+        if (pieces == 0) {
+            return false;
+        }
+        long bytes = HEADER_BYTES + (long) pieces * RECORD_BYTES;
+        if (writePos + bytes > maxBytes) {
+            return false;
+        }
+        int chunkX = ChunkKeys.x(chunkKey) << 4;
+        int chunkZ = ChunkKeys.z(chunkKey) << 4;
+        for (int i = 0; i < size; i += STRIDE) {
+            if (!encodable(data, i, chunkX, chunkZ)) {
+                return false;
+            }
+        }
+        open();
+        reserve(HEADER_BYTES);
+        writeBuffer.putLong(chunkKey).putInt(pieces);
+        for (int i = 0; i < size; i += STRIDE) {
+            reserve(RECORD_BYTES);
+            encode(data, i, chunkX, chunkZ);
+        }
+        writePos += bytes;
+        tags.add(tag != null ? tag : NO_TAG);
+        return true;
+    }
+
+    /**
+     * @return true while appended pieces have not all been read back
+     */
+    boolean hasRemaining() {
+        return bucketRemaining > 0 || !tags.isEmpty();
+    }
+
+    /**
+     * Moves to the next bucket if the current one is fully read.
+     * @return false if nothing is left to read
+     */
+    boolean nextBucket() throws IOException {
+        if (bucketRemaining > 0) {
+            return true;
+        }
+        if (tags.isEmpty()) {
+            reset();
+            return false;
+        }
+        ensureReadable(HEADER_BYTES);
+        bucketKey = readBuffer.getLong();
+        bucketRemaining = readBuffer.getInt();
+        Object tag = tags.poll();
+        bucketTag = tag != NO_TAG ? tag : null;
+        return true;
+    }
+
+    long bucketKey() {
+        return bucketKey;
+    }
+
+    Object bucketTag() {
+        return bucketTag;
+    }
+
+    /**
+     * @return pieces of the current bucket not read yet; 0 once it is finished
+     */
+    int bucketRemaining() {
+        return bucketRemaining;
+    }
+
+    /**
+     * Decodes up to {@code maxPieces} pieces of the current bucket into {@code out}, {@link #STRIDE} ints each.
+     * @return number of pieces read
+     */
+    int read(int[] out, int maxPieces) throws IOException {
+        int pieces = Math.min(Math.min(maxPieces, bucketRemaining), out.length / STRIDE);
+        int chunkX = ChunkKeys.x(bucketKey) << 4;
+        int chunkZ = ChunkKeys.z(bucketKey) << 4;
+        for (int p = 0; p < pieces; p++) {
+            ensureReadable(RECORD_BYTES);
+            decode(out, p * STRIDE, chunkX, chunkZ);
+        }
+        bucketRemaining -= pieces;
+        return pieces;
+    }
+
+    @Override
+    public void close() {
+        tags.clear();
+        bucketRemaining = 0;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Deletes spill files left behind by a crash or an unclean shutdown.
+     */
+    static void deleteStale(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*")) {
+            for (Path stale : stream) {
+                try {
+                    Files.deleteIfExists(stale);
+                } catch (IOException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Runs of cells are moved forward by whole cells so the piece starts in the origin's cell: the piece offsets
+     * then stay within one cell plus one chunk, and hollow walls still line up because they repeat per cell.
+     */
+    private int cellsBefore(int zFrom) {
+        return zFrom / cellSize;
+    }
+
+    private boolean encodable(int[] data, int i, int chunkX, int chunkZ) {
+        int shift = cellsBefore(data[i + 6]) * cellSize;
+        int originX = data[i] - chunkX;
+        int originZ = data[i + 2] + shift - chunkZ;
+        return fitsShort(originX) && fitsShort(originZ) && fitsShort(data[i + 1])
+                && data[i + 3] >= 0 && data[i + 3] <= Byte.MAX_VALUE;
+    }
+
+    private static boolean fitsShort(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    private void encode(int[] data, int i, int chunkX, int chunkZ) {
+        int worldX = data[i];
+        int worldZ = data[i + 2] + cellsBefore(data[i + 6]) * cellSize;
+        int shift = worldZ - data[i + 2];
+        writeBuffer.putShort((short) (worldX - chunkX))
+                .putShort((short) (worldZ - chunkZ))
+                .putShort((short) data[i + 1])
+                .put((byte) data[i + 3])
+                .put(range(worldX + data[i + 4] - chunkX, worldX + data[i + 5] - chunkX))
+                .put(range(worldZ + data[i + 6] - shift - chunkZ, worldZ + data[i + 7] - shift - chunkZ));
+    }
+
+    /**
+     * Packs a block range {@code [from, to)} inside one chunk, so {@code 0 <= from < to <= 16}, into one byte.
+     */
+    private static byte range(int from, int to) {
+        return (byte) (from << 4 | (to - 1));
+    }
+
+    private void decode(int[] out, int o, int chunkX, int chunkZ) {
+        int originX = readBuffer.getShort();
+        int originZ = readBuffer.getShort();
+        int y = readBuffer.getShort();
+        int type = readBuffer.get();
+        int xRange = readBuffer.get() & 0xFF;
+        int zRange = readBuffer.get() & 0xFF;
+        out[o] = chunkX + originX;
+        out[o + 1] = y;
+        out[o + 2] = chunkZ + originZ;
+        out[o + 3] = type;
+        out[o + 4] = (xRange >>> 4) - originX;
+        out[o + 5] = (xRange & 15) + 1 - originX;
+        out[o + 6] = (zRange >>> 4) - originZ;
+        out[o + 7] = (zRange & 15) + 1 - originZ;
+    }
+
+    private void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (writeBuffer == null) {
+            writeBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            readBuffer = ByteBuffer.allocateDirect(BUFFER_BYTES).flip();
+        }
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (writeBuffer.remaining() < bytes) {
+            flushWrites();
+        }
+    }
+
+    private void flushWrites() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            flushedPos += channel.write(writeBuffer, flushedPos);
+        }
+        writeBuffer.clear();
+    }
+
+    private void ensureReadable(int bytes) throws IOException {
+        while (readBuffer.remaining() < bytes) {
+            if (fetchPos >= flushedPos) {
+                flushWrites();
+            }
+            readBuffer.compact();
+            int read = channel.read(readBuffer, fetchPos);
+            readBuffer.flip();
+            if (read <= 0) {
+                throw new EOFException("Spill file " + file + " ends in the middle of a record");
+            }
+            fetchPos += read;
+        }
+    }
+
+    /**
+     * Everything written has been read: start over at the beginning of the file.
+     */
+    private void reset() throws IOException {
+        if (channel == null || writePos == 0) {
+            return;
+        }
+        writeBuffer.clear();
+        readBuffer.clear().flip();
+        channel.truncate(0);
+        writePos = 0;
+        flushedPos = 0;
+        fetchPos = 0;
+    }
+}
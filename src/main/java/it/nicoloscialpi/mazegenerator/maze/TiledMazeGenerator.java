@@ -0,0 +1,443 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel maze generator for very large grids.
+ * The unit grid (odd coordinates) is split into square tiles that are carved independently with a
+ * backtracker on a {@link ForkJoinPool}. A random spanning tree over the tiles then opens exactly one
+ * passage per tree edge, so the stitched result is still a perfect maze.
+ * Cells are streamed tile by tile once carving has finished; until then {@link #isPending()} is true.
+ */
+public class TiledMazeGenerator implements MazeAlgorithm {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    // Per-unit nibble: passage to the east/south neighbour, and whether that passage is an erosion hole
+    private static final int EAST_OPEN = 1;
+    private static final int SOUTH_OPEN = 2;
+    private static final int EAST_HOLE = 4;
+    private static final int SOUTH_HOLE = 8;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+
+    private final int sizeN;
+    private final int sizeM;
+    private final int unitRows;
+    private final int unitCols;
+    private final int tileSize;
+    private final int tileRows;
+    private final int tileCols;
+    private final double holeProbability;
+    private final boolean hasRoom;
+    private final int roomStartR;
+    private final int roomStartC;
+    private final int roomEndR;
+    private final int roomEndC;
+    private final int exitsToPlace;
+
+    private final SplittableRandom[] tileRandoms;
+    private final SplittableRandom stitchRandom;
+    private final long[][] tileCells;
+    private final List<int[]> exits = new ArrayList<>();
+    private final CompletableFuture<Void> carving;
+
+    // Emission cursor
+    private final ArrayDeque<IncrementalMazeGenerator.Cell> outbox = new ArrayDeque<>();
+    private int exitCursor = 0;
+    private int roomR;
+    private int roomC;
+    private int tileCursor = 0;
+    private int unitCursor = 0;
+    private long emittedCount = 0;
+    private final long totalCells;
+
+    public TiledMazeGenerator(int sizeN, int sizeM,
+                              int additionalExits,
+                              double holeProbability,
+                              boolean hasRoom,
+                              int roomHeight,
+                              int roomWidth,
+                              boolean hasExits,
+                              SplittableRandom random,
+                              ForkJoinPool pool,
+                              int tileSize) {
+        this.sizeN = (sizeN % 2 == 0) ? sizeN + 1 : sizeN;
+        this.sizeM = (sizeM % 2 == 0) ? sizeM + 1 : sizeM;
+        this.unitRows = Math.max(1, (this.sizeN - 1) / 2);
+        this.unitCols = Math.max(1, (this.sizeM - 1) / 2);
+        this.tileSize = Math.max(8, tileSize);
+        this.tileRows = (unitRows + this.tileSize - 1) / this.tileSize;
+        this.tileCols = (unitCols + this.tileSize - 1) / this.tileSize;
+        this.holeProbability = Math.max(0.0, Math.min(1.0, holeProbability));
+        this.hasRoom = hasRoom;
+        int roomH = Math.max(1, roomHeight);
+        int roomW = Math.max(1, roomWidth);
+        this.roomStartR = Math.max(1, (this.sizeN - roomH) / 2);
+        this.roomStartC = Math.max(1, (this.sizeM - roomW) / 2);
+        this.roomEndR = Math.min(this.sizeN - 2, roomStartR + roomH - 1);
+        this.roomEndC = Math.min(this.sizeM - 2, roomStartC + roomW - 1);
+        this.roomR = roomStartR;
+        this.roomC = roomStartC;
+        this.exitsToPlace = hasExits ? 1 + Math.max(0, additionalExits) : 0;
+        this.totalCells = (long) this.sizeN * (long) this.sizeM;
+
+        // Split the RNG sequentially so every tile's randomness is fixed by the seed, whatever the scheduling
+        int tiles = tileRows * tileCols;
+        this.tileRandoms = new SplittableRandom[tiles];
+        for (int t = 0; t < tiles; t++) {
+            tileRandoms[t] = random.split();
+        }
+        this.stitchRandom = random.split();
+        this.tileCells = new long[tiles][];
+        this.carving = CompletableFuture.runAsync(() -> {
+            new CarveTiles(0, tiles).invoke();
+            stitchTiles();
+            chooseExits();
+        }, pool);
+    }
+
+    public TiledMazeGenerator(int sizeN, int sizeM,
+                              int additionalExits,
+                              double holeProbability,
+                              boolean hasRoom,
+                              int roomHeight,
+                              int roomWidth,
+                              boolean hasExits,
+                              SplittableRandom random) {
+        this(sizeN, sizeM, additionalExits, holeProbability, hasRoom, roomHeight, roomWidth, hasExits,
+                random, ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Blocks until all tiles are carved and stitched. Intended for tests and benchmarks.
+     */
+    public void awaitCarved() {
+        try {
+            carving.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tiled maze carving failed", e.getCause());
+        }
+    }
+
+    @Override
+    public boolean isPending() {
+        return !carving.isDone();
+    }
+
+    @Override
+    public long getTotalCells() { return totalCells; }
+
+    @Override
+    public long getEmittedCount() { return emittedCount; }
+
+    @Override
+    public boolean isComplete() {
+        return carving.isDone() && outbox.isEmpty() && tileCursor >= tileCells.length
+                && exitCursor >= exits.size() && (!hasRoom || roomR > roomEndR);
+    }
+
+    @Override
+    public List<IncrementalMazeGenerator.Cell> pollNextCells(int max) {
+        if (!carving.isDone()) {
+            return Collections.emptyList();
+        }
+        if (carving.isCompletedExceptionally()) {
+            awaitCarved(); // rethrows the carving failure
+        }
+        ArrayList<IncrementalMazeGenerator.Cell> result = new ArrayList<>(Math.max(1, max));
+        while (result.size() < max) {
+            if (outbox.isEmpty() && !refillOutbox()) {
+                break;
+            }
+            result.add(outbox.poll());
+            emittedCount++;
+        }
+        return result;
+    }
+
+    private boolean refillOutbox() {
+        if (exitCursor < exits.size()) {
+            int[] exit = exits.get(exitCursor++);
+            outbox.add(new IncrementalMazeGenerator.Cell(exit[0], exit[1], MazeGenerator.EXIT));
+            return true;
+        }
+        if (hasRoom && roomR <= roomEndR) {
+            outbox.add(new IncrementalMazeGenerator.Cell(roomR, roomC, MazeGenerator.ROOM));
+            roomC++;
+            if (roomC > roomEndC) {
+                roomC = roomStartC;
+                roomR++;
+            }
+            return true;
+        }
+        while (tileCursor < tileCells.length) {
+            int ti = tileCursor / tileCols;
+            int tj = tileCursor % tileCols;
+            int rows = tileHeight(ti);
+            int cols = tileWidth(tj);
+            if (unitCursor >= rows * cols) {
+                tileCells[tileCursor] = null; // release the tile once fully streamed
+                tileCursor++;
+                unitCursor = 0;
+                continue;
+            }
+            int li = unitCursor / cols;
+            int lj = unitCursor % cols;
+            int state = getNibble(tileCells[tileCursor], unitCursor);
+            unitCursor++;
+            int i = ti * tileSize + li;
+            int j = tj * tileSize + lj;
+            int r = 2 * i + 1;
+            int c = 2 * j + 1;
+            if (!isRoom(r, c)) {
+                outbox.add(new IncrementalMazeGenerator.Cell(r, c, MazeGenerator.PATH));
+            }
+            if ((state & EAST_OPEN) != 0 && !isRoom(r, c + 1)) {
+                byte type = (state & EAST_HOLE) != 0 ? MazeGenerator.HOLE : MazeGenerator.PATH;
+                outbox.add(new IncrementalMazeGenerator.Cell(r, c + 1, type));
+            }
+            if ((state & SOUTH_OPEN) != 0 && !isRoom(r + 1, c)) {
+                byte type = (state & SOUTH_HOLE) != 0 ? MazeGenerator.HOLE : MazeGenerator.PATH;
+                outbox.add(new IncrementalMazeGenerator.Cell(r + 1, c, type));
+            }
+            if (!outbox.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class CarveTiles extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        CarveTiles(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    carveTile(from);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new CarveTiles(from, mid), new CarveTiles(mid, to));
+        }
+    }
+
+    private void carveTile(int tile) {
+        int ti = tile / tileCols;
+        int tj = tile % tileCols;
+        int rows = tileHeight(ti);
+        int cols = tileWidth(tj);
+        int units = rows * cols;
+        int baseI = ti * tileSize;
+        int baseJ = tj * tileSize;
+        SplittableRandom random = tileRandoms[tile];
+        long[] cells = new long[(units + 15) / 16];
+        BitSet visited = new BitSet(units);
+        int[] stack = new int[units];
+        int[] order = {0, 1, 2, 3};
+
+        // Units covered by the room are already open; carving treats them as visited
+        if (hasRoom) {
+            for (int u = 0; u < units; u++) {
+                if (isRoom(2 * (baseI + u / cols) + 1, 2 * (baseJ + u % cols) + 1)) {
+                    visited.set(u);
+                }
+            }
+        }
+
+        // A room can split a tile into several regions; each one borders the room and is carved separately
+        for (int start = visited.nextClearBit(0); start < units; start = visited.nextClearBit(start + 1)) {
+            int top = 0;
+            stack[top++] = start;
+            visited.set(start);
+            maybeAddHole(cells, visited, start, rows, cols, random, order);
+            while (top > 0) {
+                int u = stack[top - 1];
+                int li = u / cols;
+                int lj = u % cols;
+                shuffle(order, random);
+                boolean carved = false;
+                for (int d : order) {
+                    int ni = li + DIRECTIONS[d][0];
+                    int nj = lj + DIRECTIONS[d][1];
+                    if (ni < 0 || nj < 0 || ni >= rows || nj >= cols) continue;
+                    int v = ni * cols + nj;
+                    if (visited.get(v)) continue;
+                    openWall(cells, u, v, d, cols, false);
+                    visited.set(v);
+                    stack[top++] = v;
+                    carved = true;
+                    maybeAddHole(cells, visited, v, rows, cols, random, order);
+                    break;
+                }
+                if (!carved) {
+                    top--;
+                    maybeAddHole(cells, visited, u, rows, cols, random, order);
+                }
+            }
+        }
+        tileCells[tile] = cells;
+    }
+
+    private void maybeAddHole(long[] cells, BitSet visited, int u, int rows, int cols, SplittableRandom random, int[] order) {
+        if (holeProbability <= 0 || random.nextDouble() >= holeProbability) return;
+        int li = u / cols;
+        int lj = u % cols;
+        shuffle(order, random);
+        for (int d : order) {
+            int ni = li + DIRECTIONS[d][0];
+            int nj = lj + DIRECTIONS[d][1];
+            if (ni < 0 || nj < 0 || ni >= rows || nj >= cols) continue;
+            int v = ni * cols + nj;
+            if (isWallOpen(cells, u, v, d, cols)) continue;
+            openWall(cells, u, v, d, cols, true);
+            return;
+        }
+    }
+
+    private void stitchTiles() {
+        int tiles = tileRows * tileCols;
+        BitSet joined = new BitSet(tiles);
+        int[] stack = new int[tiles];
+        int[] order = {0, 1, 2, 3};
+        int top = 0;
+        int start = stitchRandom.nextInt(tiles);
+        stack[top++] = start;
+        joined.set(start);
+        while (top > 0) {
+            int t = stack[top - 1];
+            int ti = t / tileCols;
+            int tj = t % tileCols;
+            shuffle(order, stitchRandom);
+            boolean linked = false;
+            for (int d : order) {
+                int ni = ti + DIRECTIONS[d][0];
+                int nj = tj + DIRECTIONS[d][1];
+                if (ni < 0 || nj < 0 || ni >= tileRows || nj >= tileCols) continue;
+                int n = ni * tileCols + nj;
+                if (joined.get(n)) continue;
+                openBorder(Math.min(t, n), DIRECTIONS[d][0] != 0);
+                joined.set(n);
+                stack[top++] = n;
+                linked = true;
+                break;
+            }
+            if (!linked) {
+                top--;
+            }
+        }
+    }
+
+    /**
+     * Opens one passage from the given tile to its east (or south) neighbour, avoiding the room.
+     * If the whole border lies inside the room both tiles already meet there.
+     */
+    private void openBorder(int tile, boolean vertical) {
+        int ti = tile / tileCols;
+        int tj = tile % tileCols;
+        int rows = tileHeight(ti);
+        int cols = tileWidth(tj);
+        int span = vertical ? cols : rows;
+        int offset = stitchRandom.nextInt(span);
+        for (int k = 0; k < span; k++) {
+            int along = (offset + k) % span;
+            int li = vertical ? rows - 1 : along;
+            int lj = vertical ? along : cols - 1;
+            int r = 2 * (ti * tileSize + li) + 1;
+            int c = 2 * (tj * tileSize + lj) + 1;
+            int wallR = vertical ? r + 1 : r;
+            int wallC = vertical ? c : c + 1;
+            int farR = vertical ? r + 2 : r;
+            int farC = vertical ? c : c + 2;
+            if (isRoom(r, c) || isRoom(wallR, wallC) || isRoom(farR, farC)) continue;
+            int u = li * cols + lj;
+            long[] cells = tileCells[tile];
+            setNibble(cells, u, getNibble(cells, u) | (vertical ? SOUTH_OPEN : EAST_OPEN));
+            return;
+        }
+    }
+
+    private void chooseExits() {
+        if (exitsToPlace <= 0) return;
+        HashSet<Long> used = new HashSet<>();
+        int attempts = exitsToPlace * 8;
+        while (exits.size() < exitsToPlace && attempts-- > 0) {
+            int side = stitchRandom.nextInt(4);
+            int r;
+            int c;
+            if (side < 2) {
+                c = 2 * stitchRandom.nextInt(unitCols) + 1;
+                r = side == 0 ? 0 : sizeN - 1;
+            } else {
+                r = 2 * stitchRandom.nextInt(unitRows) + 1;
+                c = side == 2 ? 0 : sizeM - 1;
+            }
+            if (used.add(((long) r << 32) | (c & 0xffffffffL))) {
+                exits.add(new int[]{r, c});
+            }
+        }
+    }
+
+    private void openWall(long[] cells, int u, int v, int d, int cols, boolean hole) {
+        // Walls are stored on the west/north unit of each pair
+        int owner = (d == 0 || d == 1) ? u : v;
+        boolean east = d == 0 || d == 2;
+        int state = getNibble(cells, owner);
+        if (east) {
+            state |= EAST_OPEN | (hole ? EAST_HOLE : 0);
+        } else {
+            state |= SOUTH_OPEN | (hole ? SOUTH_HOLE : 0);
+        }
+        setNibble(cells, owner, state);
+    }
+
+    private boolean isWallOpen(long[] cells, int u, int v, int d, int cols) {
+        int owner = (d == 0 || d == 1) ? u : v;
+        int mask = (d == 0 || d == 2) ? EAST_OPEN : SOUTH_OPEN;
+        return (getNibble(cells, owner) & mask) != 0;
+    }
+
+    private static int getNibble(long[] cells, int u) {
+        return (int) (cells[u >>> 4] >>> ((u & 15) << 2)) & 0xF;
+    }
+
+    private static void setNibble(long[] cells, int u, int value) {
+        int shift = (u & 15) << 2;
+        cells[u >>> 4] = (cells[u >>> 4] & ~(0xFL << shift)) | ((long) (value & 0xF) << shift);
+    }
+
+    private static void shuffle(int[] order, SplittableRandom random) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+    }
+
+    private boolean isRoom(int r, int c) {
+        return hasRoom && r >= roomStartR && r <= roomEndR && c >= roomStartC && c <= roomEndC;
+    }
+
+    private int tileHeight(int ti) {
+        return Math.min(tileSize, unitRows - ti * tileSize);
+    }
+
+    private int tileWidth(int tj) {
+        return Math.min(tileSize, unitCols - tj * tileSize);
+    }
+}
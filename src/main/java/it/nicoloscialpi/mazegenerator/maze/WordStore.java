@@ -0,0 +1,21 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+/**
+ * Fixed-size array of 64-bit words backing a {@link MazeGrid}.
+ * Words start zeroed, i.e. every cell starts as WALL.
+ */
+public interface WordStore extends AutoCloseable {
+
+    long getWord(long index);
+
+    void setWord(long index, long value);
+
+    long wordCount();
+
+    /**
+     * Releases the backing memory. The store must not be used afterwards.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,121 @@
+package it.nicoloscialpi.mazegenerator.ownership;
+
+import it.nicoloscialpi.mazegenerator.MazeGeneratorPlugin;
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Block;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Which blocks were placed by a maze build, recorded once per chunk.
+ * Builds with {@code set-block-data} collect the positions they write per chunk and merge them into a compressed
+ * {@link OwnershipBitset} in the chunk's persistent data container when the chunk's last job has run.
+ * Lookups decode a chunk's bitset once and keep it in a small LRU cache, so {@link #isMazeBlock(Block)} is O(1).
+ * Synchronized, since on Folia chunks of different regions are placed and queried from several threads.
+ */
+public final class MazeOwnership {
+
+    private static final int CACHE_CHUNKS = 512;
+    private static final OwnershipBitset NONE = new OwnershipBitset();
+    private static final Map<ChunkId, OwnershipBitset> CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChunkId, OwnershipBitset> eldest) {
+            return size() > CACHE_CHUNKS;
+        }
+    };
+    private static NamespacedKey key;
+
+    private MazeOwnership() {}
+
+    private record ChunkId(UUID world, long chunk) {
+        static ChunkId of(Chunk chunk) {
+            return new ChunkId(chunk.getWorld().getUID(), ChunkKeys.pack(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    /**
+     * @return true if a maze build with {@code set-block-data} placed this block
+     */
+    public static synchronized boolean isMazeBlock(Block block) {
+        OwnershipBitset owned = load(block.getChunk());
+        return owned != NONE && owned.contains(block.getX() & 15, block.getY(), block.getZ() & 15);
+    }
+
+    /**
+     * ORs newly placed positions into the chunk's stored index. The chunk must be loaded.
+     */
+    public static synchronized void merge(Chunk chunk, OwnershipBitset placed) {
+        if (placed.isEmpty()) {
+            return;
+        }
+        OwnershipBitset stored = load(chunk);
+        OwnershipBitset merged = new OwnershipBitset();
+        if (stored != NONE) {
+            merged.or(stored);
+        }
+        merged.or(placed);
+        chunk.getPersistentDataContainer().set(key(), PersistentDataType.BYTE_ARRAY, merged.encode());
+        CACHE.put(ChunkId.of(chunk), merged);
+    }
+
+    /**
+     * Forgets the given positions of the chunk, e.g. once a build there has been undone. The chunk must be loaded.
+     */
+    public static synchronized void forget(Chunk chunk, OwnershipBitset removed) {
+        OwnershipBitset stored = load(chunk);
+        if (stored == NONE) {
+            return;
+        }
+        OwnershipBitset remaining = new OwnershipBitset();
+        remaining.or(stored);
+        remaining.andNot(removed);
+        if (remaining.isEmpty()) {
+            clear(chunk);
+            return;
+        }
+        chunk.getPersistentDataContainer().set(key(), PersistentDataType.BYTE_ARRAY, remaining.encode());
+        CACHE.put(ChunkId.of(chunk), remaining);
+    }
+
+    /**
+     * Forgets the chunk's maze blocks, e.g. once the maze there has been removed.
+     */
+    public static synchronized void clear(Chunk chunk) {
+        chunk.getPersistentDataContainer().remove(key());
+        CACHE.put(ChunkId.of(chunk), NONE);
+    }
+
+    private static OwnershipBitset load(Chunk chunk) {
+        ChunkId id = ChunkId.of(chunk);
+        OwnershipBitset cached = CACHE.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        PersistentDataContainer container = chunk.getPersistentDataContainer();
+        byte[] data = container.get(key(), PersistentDataType.BYTE_ARRAY);
+        OwnershipBitset owned = NONE;
+        if (data != null) {
+            try {
+                owned = OwnershipBitset.decode(data);
+            } catch (IllegalArgumentException e) {
+                MazeGeneratorPlugin.plugin.getLogger().warning("Ignoring unreadable maze ownership data in chunk "
+                        + chunk.getX() + ", " + chunk.getZ() + ": " + e.getMessage());
+            }
+        }
+        CACHE.put(id, owned);
+        return owned;
+    }
+
+    private static NamespacedKey key() {
+        if (key == null) {
+            key = new NamespacedKey(MazeGeneratorPlugin.plugin, "maze_blocks");
+        }
+        return key;
+    }
+}
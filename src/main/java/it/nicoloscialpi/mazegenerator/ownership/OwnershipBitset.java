@@ -0,0 +1,169 @@
+package it.nicoloscialpi.mazegenerator.ownership;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Maze-owned block positions of one chunk: 256 bits per Y layer over the range of layers that have any.
+ * Stored deflated, which shrinks the solid wall and corridor columns of a maze to a few hundred bytes per chunk.
+ * Not thread safe.
+ */
+public final class OwnershipBitset {
+
+    private static final byte FORMAT = 1;
+    private static final int WORDS_PER_LAYER = 4; // 16 x 16 bits
+
+    private int minY;
+    private int layers;
+    private long[] words;
+
+    public OwnershipBitset() {
+        this(0, 0, new long[0]);
+    }
+
+    private OwnershipBitset(int minY, int layers, long[] words) {
+        this.minY = minY;
+        this.layers = layers;
+        this.words = words;
+    }
+
+    /**
+     * @param x block X within the chunk (0-15)
+     * @param z block Z within the chunk (0-15)
+     */
+    public void mark(int x, int y, int z) {
+        ensureLayer(y);
+        int bit = bit(x, y, z);
+        words[bit >>> 6] |= 1L << bit;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        if (y < minY || y >= minY + layers) {
+            return false;
+        }
+        int bit = bit(x, y, z);
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void or(OwnershipBitset other) {
+        if (other.layers == 0) {
+            return;
+        }
+        ensureLayer(other.minY);
+        ensureLayer(other.minY + other.layers - 1);
+        int offset = (other.minY - minY) * WORDS_PER_LAYER;
+        for (int i = 0; i < other.words.length; i++) {
+            words[offset + i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Clears every position set in {@code other}.
+     */
+    public void andNot(OwnershipBitset other) {
+        int from = Math.max(minY, other.minY);
+        int to = Math.min(minY + layers, other.minY + other.layers);
+        for (int y = from; y < to; y++) {
+            int mine = (y - minY) * WORDS_PER_LAYER;
+            int theirs = (y - other.minY) * WORDS_PER_LAYER;
+            for (int i = 0; i < WORDS_PER_LAYER; i++) {
+                words[mine + i] &= ~other.words[theirs + i];
+            }
+        }
+    }
+
+    /**
+     * Layout: format byte, min Y, layer count, then the deflated little-endian words.
+     */
+    public byte[] encode() {
+        ByteBuffer raw = ByteBuffer.allocate(words.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asLongBuffer().put(words);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+            out.write(FORMAT);
+            out.writeBytes(ByteBuffer.allocate(2 * Integer.BYTES).putInt(minY).putInt(layers).array());
+            byte[] chunk = new byte[512];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is not a bitset written by {@link #encode()}
+     */
+    public static OwnershipBitset decode(byte[] data) {
+        if (data == null || data.length < 1 + 2 * Integer.BYTES || data[0] != FORMAT) {
+            throw new IllegalArgumentException("Unknown maze ownership format");
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, 1, 2 * Integer.BYTES);
+        int minY = header.getInt();
+        int layers = header.getInt();
+        if (layers < 0 || layers > 1 << 16) {
+            throw new IllegalArgumentException("Corrupt maze ownership data");
+        }
+        byte[] raw = new byte[layers * WORDS_PER_LAYER * Long.BYTES];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1 + 2 * Integer.BYTES, data.length - 1 - 2 * Integer.BYTES);
+            int read = 0;
+            while (read < raw.length) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalArgumentException("Truncated maze ownership data");
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt maze ownership data", e);
+        } finally {
+            inflater.end();
+        }
+        long[] words = new long[layers * WORDS_PER_LAYER];
+        ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(words);
+        return new OwnershipBitset(minY, layers, words);
+    }
+
+    private int bit(int x, int y, int z) {
+        return ((y - minY) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private void ensureLayer(int y) {
+        if (layers == 0) {
+            minY = y;
+            layers = 1;
+            words = new long[WORDS_PER_LAYER];
+            return;
+        }
+        if (y >= minY && y < minY + layers) {
+            return;
+        }
+        int newMin = Math.min(minY, y);
+        int newLayers = Math.max(minY + layers, y + 1) - newMin;
+        long[] grown = new long[newLayers * WORDS_PER_LAYER];
+        System.arraycopy(words, 0, grown, (minY - newMin) * WORDS_PER_LAYER, words.length);
+        minY = newMin;
+        layers = newLayers;
+        words = grown;
+    }
+}
@@ -0,0 +1,91 @@
+package it.nicoloscialpi.mazegenerator.themes;
+
+import java.util.SplittableRandom;
+
+/**
+ * Immutable Walker/Vose alias table: draws an outcome in O(1) with one column pick and one biased coin,
+ * whatever the number of outcomes. Safe to share between threads; each caller supplies its own RNG.
+ */
+public final class AliasSampler {
+
+    private final int[] outcomes;
+    private final int[] alias;
+    // Probability of keeping a column's own outcome, scaled to [0, 2^53)
+    private final long[] threshold;
+
+    /**
+     * @param outcomes value returned for each weight
+     * @param weights non-negative weights, at least one positive
+     */
+    public AliasSampler(int[] outcomes, long[] weights) {
+        int n = outcomes.length;
+        if (n == 0 || weights.length != n) {
+            throw new IllegalArgumentException("Need one weight per outcome");
+        }
+        long total = 0;
+        for (long w : weights) {
+            if (w < 0) {
+                throw new IllegalArgumentException("Negative weight " + w);
+            }
+            total += w;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("All weights are zero");
+        }
+        this.outcomes = outcomes.clone();
+        this.alias = new int[n];
+        this.threshold = new long[n];
+
+        // Scaled weights: column i keeps its outcome with probability scaled[i] / total
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (double) weights[i] * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount];
+            int l = large[--largeCount];
+            threshold[s] = toThreshold(scaled[s]);
+            alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0) {
+                small[smallCount++] = l;
+            } else {
+                large[largeCount++] = l;
+            }
+        }
+        // Leftovers are full columns (off by rounding only)
+        while (largeCount > 0) {
+            int l = large[--largeCount];
+            threshold[l] = 1L << 53;
+            alias[l] = l;
+        }
+        while (smallCount > 0) {
+            int s = small[--smallCount];
+            threshold[s] = 1L << 53;
+            alias[s] = s;
+        }
+    }
+
+    public int sample(SplittableRandom random) {
+        int column = random.nextInt(outcomes.length);
+        boolean keep = (random.nextLong() >>> 11) < threshold[column];
+        return outcomes[keep ? column : alias[column]];
+    }
+
+    public int size() {
+        return outcomes.length;
+    }
+
+    private static long toThreshold(double probability) {
+        return (long) (Math.min(1.0, Math.max(0.0, probability)) * (1L << 53));
+    }
+}
@@ -0,0 +1,111 @@
+package it.nicoloscialpi.mazegenerator.themes;
+
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Immutable, thread-safe form of a {@link Theme} for placement.
+ * Every material the theme can produce gets a palette index (AIR is always {@link #AIR}), with its
+ * {@link BlockData} resolved once up front; floor, wall and top picks are O(1) alias-table draws
+ * that return palette indices, using the caller's RNG. Palette indices and alias columns follow {@link Material}
+ * order, so a given random stream maps to the same materials on every run.
+ */
+public final class CompiledTheme {
+
+    public static final int AIR = 0;
+
+    private final Material[] palette;
+    private final BlockData[] blockData;
+    private final AliasSampler floor;
+    private final AliasSampler wall;
+    private final AliasSampler top;
+
+    /**
+     * Resolves block data through {@link Material#createBlockData()}, so this needs a running server.
+     */
+    public static CompiledTheme compile(Theme theme) {
+        return compile(theme, Material::createBlockData);
+    }
+
+    /**
+     * @param blockData resolves the block data of each palette material
+     */
+    public static CompiledTheme compile(Theme theme, Function<Material, BlockData> blockData) {
+        List<Material> palette = new ArrayList<>();
+        palette.add(Material.AIR);
+        AliasSampler floor = sampler(theme.getFloorMaterialWeights(), palette);
+        AliasSampler wall = sampler(theme.getWallMaterialWeights(), palette);
+        AliasSampler top = sampler(theme.getTopMaterialWeights(), palette);
+        return new CompiledTheme(palette.toArray(new Material[0]), blockData, floor, wall, top);
+    }
+
+    private CompiledTheme(Material[] palette, Function<Material, BlockData> resolver,
+                          AliasSampler floor, AliasSampler wall, AliasSampler top) {
+        this.palette = palette;
+        this.blockData = new BlockData[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            blockData[i] = resolver.apply(palette[i]);
+        }
+        this.floor = floor;
+        this.wall = wall;
+        this.top = top;
+    }
+
+    private static AliasSampler sampler(Map<Material, Integer> weights, List<Material> palette) {
+        if (weights.isEmpty()) {
+            // Sections without materials fall back to stone
+            return new AliasSampler(new int[]{indexOf(palette, Material.STONE)}, new long[]{1});
+        }
+        List<Map.Entry<Material, Integer>> entries = new ArrayList<>(weights.entrySet());
+        entries.sort(Comparator.comparingInt(entry -> entry.getKey().ordinal()));
+        int[] outcomes = new int[entries.size()];
+        long[] w = new long[entries.size()];
+        int i = 0;
+        for (Map.Entry<Material, Integer> entry : entries) {
+            outcomes[i] = indexOf(palette, entry.getKey());
+            w[i] = Math.max(1, entry.getValue());
+            i++;
+        }
+        return new AliasSampler(outcomes, w);
+    }
+
+    private static int indexOf(List<Material> palette, Material material) {
+        int index = palette.indexOf(material);
+        if (index < 0) {
+            palette.add(material);
+            index = palette.size() - 1;
+        }
+        return index;
+    }
+
+    public int floor(SplittableRandom random) {
+        return floor.sample(random);
+    }
+
+    public int wall(SplittableRandom random) {
+        return wall.sample(random);
+    }
+
+    public int top(SplittableRandom random) {
+        return top.sample(random);
+    }
+
+    public Material material(int index) {
+        return palette[index];
+    }
+
+    public BlockData blockData(int index) {
+        return blockData[index];
+    }
+
+    public int paletteSize() {
+        return palette.length;
+    }
+}
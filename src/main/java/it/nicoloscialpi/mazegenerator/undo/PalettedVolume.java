@@ -0,0 +1,214 @@
+package it.nicoloscialpi.mazegenerator.undo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Block states of a box inside one chunk, stored the way the game stores chunk sections: a palette of the distinct
+ * states and one index per block, bit-packed into longs with as few bits as the palette needs. A maze footprint
+ * over grass and dirt typically needs 2-3 bits per block instead of a state string.
+ * Blocks are ordered y, then z, then x, with chunk-local x and z.
+ */
+public final class PalettedVolume {
+
+    /**
+     * Reads the block state at chunk-local x/z and absolute y, as {@code BlockData#getAsString()}.
+     */
+    @FunctionalInterface
+    public interface StateReader {
+        String state(int x, int y, int z);
+    }
+
+    private final int chunkX;
+    private final int chunkZ;
+    private final int x0;
+    private final int x1;
+    private final int y0;
+    private final int y1;
+    private final int z0;
+    private final int z1;
+    private final String[] palette;
+    private final int bits;
+    private final long[] packed;
+
+    private PalettedVolume(int chunkX, int chunkZ, int x0, int x1, int y0, int y1, int z0, int z1,
+                           String[] palette, int bits, long[] packed) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.x0 = x0;
+        this.x1 = x1;
+        this.y0 = y0;
+        this.y1 = y1;
+        this.z0 = z0;
+        this.z1 = z1;
+        this.palette = palette;
+        this.bits = bits;
+        this.packed = packed;
+    }
+
+    /**
+     * Captures the box {@code [x0, x1) x [y0, y1) x [z0, z1)} of the chunk, x and z chunk-local.
+     */
+    public static PalettedVolume capture(int chunkX, int chunkZ, int x0, int x1, int y0, int y1, int z0, int z1,
+                                         StateReader reader) {
+        int volume = (x1 - x0) * (y1 - y0) * (z1 - z0);
+        int[] indices = new int[volume];
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> palette = new ArrayList<>();
+        int i = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int z = z0; z < z1; z++) {
+                for (int x = x0; x < x1; x++) {
+                    String state = reader.state(x, y, z);
+                    Integer id = ids.get(state);
+                    if (id == null) {
+                        id = palette.size();
+                        ids.put(state, id);
+                        palette.add(state);
+                    }
+                    indices[i++] = id;
+                }
+            }
+        }
+        int bits = bitsFor(palette.size());
+        int perLong = Long.SIZE / bits;
+        long[] packed = new long[(volume + perLong - 1) / perLong];
+        for (i = 0; i < volume; i++) {
+            packed[i / perLong] |= (long) indices[i] << (i % perLong * bits);
+        }
+        return new PalettedVolume(chunkX, chunkZ, x0, x1, y0, y1, z0, z1, palette.toArray(new String[0]), bits, packed);
+    }
+
+    /**
+     * Index entries never straddle two longs, so a block is one shift and mask.
+     */
+    static int bitsFor(int paletteSize) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(0, paletteSize - 1)));
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    public int size() {
+        return (x1 - x0) * (y1 - y0) * (z1 - z0);
+    }
+
+    public String[] getPalette() {
+        return palette.clone();
+    }
+
+    public int bitsPerBlock() {
+        return bits;
+    }
+
+    /**
+     * @return palette index of block {@code i} in y, z, x order
+     */
+    public int paletteIndex(int i) {
+        int perLong = Long.SIZE / bits;
+        return (int) (packed[i / perLong] >>> (i % perLong * bits)) & ((1 << bits) - 1);
+    }
+
+    public int x(int i) {
+        return x0 + i % (x1 - x0);
+    }
+
+    public int y(int i) {
+        return y0 + i / ((x1 - x0) * (z1 - z0));
+    }
+
+    public int z(int i) {
+        return z0 + i / (x1 - x0) % (z1 - z0);
+    }
+
+    public int minX() {
+        return x0;
+    }
+
+    public int maxX() {
+        return x1;
+    }
+
+    public int minY() {
+        return y0;
+    }
+
+    public int maxY() {
+        return y1;
+    }
+
+    public int minZ() {
+        return z0;
+    }
+
+    public int maxZ() {
+        return z1;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(chunkX);
+        out.writeInt(chunkZ);
+        out.writeByte(x0);
+        out.writeByte(x1);
+        out.writeByte(z0);
+        out.writeByte(z1);
+        out.writeInt(y0);
+        out.writeInt(y1);
+        out.writeInt(palette.length);
+        for (String state : palette) {
+            out.writeUTF(state);
+        }
+        out.writeByte(bits);
+        out.writeInt(packed.length);
+        for (long word : packed) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * @throws IOException if the data is truncated or describes an impossible volume
+     */
+    public static PalettedVolume read(DataInput in) throws IOException {
+        int chunkX = in.readInt();
+        int chunkZ = in.readInt();
+        int x0 = in.readUnsignedByte();
+        int x1 = in.readUnsignedByte();
+        int z0 = in.readUnsignedByte();
+        int z1 = in.readUnsignedByte();
+        int y0 = in.readInt();
+        int y1 = in.readInt();
+        if (x0 >= x1 || x1 > 16 || z0 >= z1 || z1 > 16 || y0 >= y1 || y1 - y0 > 4096) {
+            throw new IOException("Corrupt undo volume bounds");
+        }
+        int paletteSize = in.readInt();
+        if (paletteSize < 1 || paletteSize > (x1 - x0) * (y1 - y0) * (z1 - z0)) {
+            throw new IOException("Corrupt undo palette");
+        }
+        String[] palette = new String[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = in.readUTF();
+        }
+        int bits = in.readUnsignedByte();
+        int words = in.readInt();
+        int perLong = Long.SIZE / Math.max(1, bits);
+        int volume = (x1 - x0) * (y1 - y0) * (z1 - z0);
+        if (bits != bitsFor(paletteSize) || words != (volume + perLong - 1) / perLong) {
+            throw new IOException("Corrupt undo block data");
+        }
+        long[] packed = new long[words];
+        for (int i = 0; i < words; i++) {
+            packed[i] = in.readLong();
+        }
+        return new PalettedVolume(chunkX, chunkZ, x0, x1, y0, y1, z0, z1, palette, bits, packed);
+    }
+}
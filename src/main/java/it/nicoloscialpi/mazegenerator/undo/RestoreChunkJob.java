@@ -0,0 +1,172 @@
+package it.nicoloscialpi.mazegenerator.undo;
+
+import it.nicoloscialpi.mazegenerator.loadbalancer.ChunkBoundJob;
+import it.nicoloscialpi.mazegenerator.loadbalancer.ChunkResidency;
+import it.nicoloscialpi.mazegenerator.loadbalancer.PlacementStats;
+import it.nicoloscialpi.mazegenerator.loadbalancer.SliceableJob;
+import it.nicoloscialpi.mazegenerator.ownership.MazeOwnership;
+import it.nicoloscialpi.mazegenerator.ownership.OwnershipBitset;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Writes a chunk's recorded original blocks back, see {@link UndoJournal}. Like placement jobs it runs a slice at a
+ * time under the build budget, diffs against a chunk snapshot for larger slices so unchanged blocks cost no write,
+ * and keeps its chunk pinned through {@link ChunkResidency}. Once done, the restored box is no longer maze-owned.
+ */
+public class RestoreChunkJob implements ChunkBoundJob, SliceableJob {
+
+    public static final String COST_KEY = "restore-chunk";
+
+    private final World world;
+    private final PalettedVolume volume;
+    private final PlacementStats stats;
+    private final ChunkResidency residency;
+    private final int snapshotMinBlocks;
+    private final int sequence;
+    private final Runnable onRestored;
+    // Parsed on the applying thread the first time a slice runs; null entries are states this server cannot parse
+    private BlockData[] palette;
+    private int applied = 0;
+    private volatile boolean coldChunk = false;
+
+    /**
+     * @param onRestored run on the applying thread once the whole chunk has been written back
+     */
+    public RestoreChunkJob(World world, PalettedVolume volume, PlacementStats stats, ChunkResidency residency,
+                           int snapshotMinBlocks, Runnable onRestored) {
+        this.world = world;
+        this.volume = volume;
+        this.stats = stats;
+        this.residency = residency;
+        this.snapshotMinBlocks = snapshotMinBlocks;
+        this.onRestored = onRestored;
+        this.sequence = residency.retain(volume.getChunkX(), volume.getChunkZ());
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public int getChunkX() {
+        return volume.getChunkX();
+    }
+
+    @Override
+    public int getChunkZ() {
+        return volume.getChunkZ();
+    }
+
+    @Override
+    public boolean prepareChunks() {
+        if (!residency.isNext(getChunkX(), getChunkZ(), sequence)) {
+            return false;
+        }
+        noteChunkState();
+        return residency.ensureLoaded(getChunkX(), getChunkZ());
+    }
+
+    @Override
+    public boolean prefetchChunks() {
+        noteChunkState();
+        return residency.prefetch(getChunkX(), getChunkZ());
+    }
+
+    private void noteChunkState() {
+        if (!coldChunk && !world.isChunkLoaded(getChunkX(), getChunkZ())) {
+            coldChunk = true;
+        }
+    }
+
+    @Override
+    public String getCostKey() {
+        return COST_KEY;
+    }
+
+    @Override
+    public boolean wasChunkLoaded() {
+        return !coldChunk;
+    }
+
+    @Override
+    public long getRemainingBlocks() {
+        return volume.size() - applied;
+    }
+
+    @Override
+    public boolean computeSlice(long maxBlocks) {
+        if (palette == null) {
+            palette = parsePalette(volume.getPalette());
+        }
+        int end = (int) Math.min(volume.size(), applied + Math.max(1L, maxBlocks));
+        apply(applied, end);
+        applied = end;
+        if (applied < volume.size()) {
+            return false;
+        }
+        forgetOwnership();
+        residency.release(getChunkX(), getChunkZ());
+        onRestored.run();
+        return true;
+    }
+
+    private void apply(int from, int to) {
+        ChunkSnapshot snapshot = null;
+        if (snapshotMinBlocks > 0 && to - from >= snapshotMinBlocks) {
+            snapshot = world.getChunkAt(getChunkX(), getChunkZ()).getChunkSnapshot(false, false, false);
+        }
+        int baseX = getChunkX() << 4;
+        int baseZ = getChunkZ() << 4;
+        for (int i = from; i < to; i++) {
+            BlockData original = palette[volume.paletteIndex(i)];
+            if (original == null) {
+                continue;
+            }
+            int x = volume.x(i);
+            int y = volume.y(i);
+            int z = volume.z(i);
+            if (snapshot != null) {
+                if (!original.equals(snapshot.getBlockData(x, y, z))) {
+                    world.getBlockAt(baseX + x, y, baseZ + z).setBlockData(original, false);
+                    stats.recordBlockWrite();
+                }
+                continue;
+            }
+            Block target = world.getBlockAt(baseX + x, y, baseZ + z);
+            if (!original.equals(target.getBlockData())) {
+                target.setBlockData(original, false);
+                stats.recordBlockWrite();
+            }
+        }
+    }
+
+    private BlockData[] parsePalette(String[] states) {
+        BlockData[] parsed = new BlockData[states.length];
+        for (int i = 0; i < states.length; i++) {
+            try {
+                parsed[i] = Bukkit.createBlockData(states[i]);
+            } catch (IllegalArgumentException e) {
+                // E.g. a block removed by a server upgrade since the build: leave those positions as they are
+                parsed[i] = null;
+            }
+        }
+        return parsed;
+    }
+
+    private void forgetOwnership() {
+        OwnershipBitset restored = new OwnershipBitset();
+        for (int y = volume.minY(); y < volume.maxY(); y++) {
+            for (int z = volume.minZ(); z < volume.maxZ(); z++) {
+                for (int x = volume.minX(); x < volume.maxX(); x++) {
+                    restored.mark(x, y, z);
+                }
+            }
+        }
+        MazeOwnership.forget(world.getChunkAt(getChunkX(), getChunkZ()), restored);
+    }
+}
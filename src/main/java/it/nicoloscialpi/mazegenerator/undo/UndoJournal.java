@@ -0,0 +1,465 @@
+package it.nicoloscialpi.mazegenerator.undo;
+
+import it.nicoloscialpi.mazegenerator.MazeGeneratorPlugin;
+import it.nicoloscialpi.mazegenerator.maze.CheckpointStore;
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.ChunkSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+/**
+ * Original blocks of the chunks a build writes to, under {@code plugins/MazeGenerator/undo}, one file per build.
+ * Before a build's first write into a chunk, the placement job hands over a {@link ChunkSnapshot} it takes anyway
+ * for diffing; reading the build's box out of it, palette-compressing it into a {@link PalettedVolume} and appending
+ * it to the file all happen on one background thread, so the chunk's owner only pays for the snapshot.
+ * Layout: a header describing the build, then one length-prefixed record per chunk. The header also holds the
+ * number of records, updated after each one, so listing journals reads only their headers. A crash can leave a
+ * partial record at the end; it is ignored when reading and cut off (and the count corrected) when the build is
+ * resumed.
+ */
+public final class UndoJournal implements AutoCloseable {
+
+    private static final String SUFFIX = ".undo";
+    private static final int MAGIC = 0x4D5A554E; // "MZUN"
+    private static final byte VERSION = 2;
+    // Offset of the record count, right after magic and version
+    private static final int CHUNKS_OFFSET = Integer.BYTES + 1;
+    private static final int HEADER_BYTES = CHUNKS_OFFSET + Integer.BYTES + 6 * Long.BYTES + 1 + 6 * Integer.BYTES;
+    // Largest record written: a 16x16 column of 4096 blocks, each with its own state, is far below this
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MazeGenerator-undo");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Journals being written or replayed in this server, so a running build cannot be undone under itself
+    private static final Set<UUID> BUSY = ConcurrentHashMap.newKeySet();
+    // Headers of the journals on disk as of the last list(), plus those opened since, for tab completion
+    private static final Map<UUID, Info> KNOWN = new ConcurrentHashMap<>();
+
+    /**
+     * A journal's build: its id (the checkpoint id for checkpointed builds), world, the player who started it
+     * (null for the console), block box {@code [min, max)} and how many chunks it has recorded.
+     */
+    public record Info(UUID id, UUID worldId, UUID owner, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                       int chunks, long modifiedMillis) {}
+
+    private final Info info;
+    private final Path file;
+    // Chunks whose original blocks are recorded or queued; only the first write into a chunk captures it
+    private final Set<Long> captured = new HashSet<>();
+    // Only touched on the IO thread
+    private FileChannel channel;
+    private long end;
+    private int chunks;
+    private boolean failed = false;
+    private boolean closed = false;
+
+    private UndoJournal(Info info, Path file, Set<Long> captured, long end) {
+        this.info = info;
+        this.file = file;
+        this.captured.addAll(captured);
+        this.end = end;
+        this.chunks = captured.size();
+    }
+
+    public static Path directory() {
+        return MazeGeneratorPlugin.plugin.getDataFolder().toPath().resolve("undo");
+    }
+
+    /**
+     * Opens the build's journal for writing, continuing an existing one (a resumed build) where it ends: chunks
+     * already recorded there are not captured again, since the build may have written to them before the restart.
+     * Older journals beyond {@code keepBuilds} are deleted in the background.
+     * @param owner the player who started the build, or null for the console
+     * @throws IllegalStateException if the journal is already open or being replayed
+     */
+    public static UndoJournal open(UUID id, UUID worldId, UUID owner, int minX, int minY, int minZ, int maxX, int maxY,
+                                   int maxZ, int keepBuilds) throws IOException {
+        if (!BUSY.add(id)) {
+            throw new IllegalStateException("Undo journal " + id + " is in use");
+        }
+        try {
+            Path dir = directory();
+            Path file = dir.resolve(id + SUFFIX);
+            Files.createDirectories(dir);
+            Set<Long> captured = new HashSet<>();
+            Info info;
+            long end;
+            if (Files.isRegularFile(file)) {
+                try (Reader reader = new Reader(file)) {
+                    info = reader.info();
+                    PalettedVolume volume;
+                    while ((volume = reader.next()) != null) {
+                        captured.add(ChunkKeys.pack(volume.getChunkX(), volume.getChunkZ()));
+                    }
+                    end = reader.position;
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                    writeChunks(channel, captured.size());
+                }
+            } else {
+                info = new Info(id, worldId, owner, minX, minY, minZ, maxX, maxY, maxZ, 0, System.currentTimeMillis());
+                try (DataOutputStream header = new DataOutputStream(Files.newOutputStream(file))) {
+                    writeHeader(header, info);
+                }
+                end = HEADER_BYTES;
+            }
+            UndoJournal journal = new UndoJournal(info, file, captured, end);
+            KNOWN.put(id, info);
+            IO.execute(() -> prune(dir, Math.max(1, keepBuilds)));
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            BUSY.remove(id);
+            throw e;
+        }
+    }
+
+    public UUID id() {
+        return info.id();
+    }
+
+    /**
+     * Marks the chunk as about to be written for the first time. Safe to call from any thread.
+     * @return true exactly once per chunk: the caller must then pass its original blocks to {@link #capture}
+     */
+    public synchronized boolean claimChunk(int chunkX, int chunkZ) {
+        return captured.add(ChunkKeys.pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Records the build's box within the chunk from a snapshot taken before the build's first write into it.
+     * Returns at once; the snapshot is read and the record written on the journal's thread.
+     */
+    public void capture(int chunkX, int chunkZ, ChunkSnapshot snapshot) {
+        int x0 = Math.max(info.minX(), chunkX << 4) - (chunkX << 4);
+        int x1 = Math.min(info.maxX(), (chunkX << 4) + 16) - (chunkX << 4);
+        int z0 = Math.max(info.minZ(), chunkZ << 4) - (chunkZ << 4);
+        int z1 = Math.min(info.maxZ(), (chunkZ << 4) + 16) - (chunkZ << 4);
+        if (x0 >= x1 || z0 >= z1) {
+            return;
+        }
+        IO.execute(() -> {
+            // Jobs of a stopped build may still be finishing on other threads
+            if (failed || closed) {
+                return;
+            }
+            try {
+                PalettedVolume volume = PalettedVolume.capture(chunkX, chunkZ, x0, x1, info.minY(), info.maxY(), z0, z1,
+                        (x, y, z) -> snapshot.getBlockData(x, y, z).getAsString());
+                ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+                DataOutputStream data = new DataOutputStream(record);
+                data.writeInt(0); // length, filled in below
+                volume.write(data);
+                ByteBuffer bytes = ByteBuffer.wrap(record.toByteArray());
+                bytes.putInt(0, bytes.capacity() - Integer.BYTES);
+                if (channel == null) {
+                    channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                }
+                // Written per chunk, so a crash loses at most the chunks still queued here
+                while (bytes.hasRemaining()) {
+                    end += channel.write(bytes, end);
+                }
+                writeChunks(channel, ++chunks);
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                MazeGeneratorPlugin.plugin.getLogger().log(Level.WARNING, "Cannot record undo data in " + file
+                        + "; /maze undo will not restore the chunks this build writes from now on", e);
+            }
+        });
+    }
+
+    /**
+     * Closes the file once every queued capture is written.
+     * @return completes once it is closed
+     */
+    public CompletableFuture<Void> closeAsync() {
+        return CompletableFuture.runAsync(() -> {
+            closed = true;
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                MazeGeneratorPlugin.plugin.getLogger().log(Level.WARNING, "Cannot close undo journal " + file, e);
+            } finally {
+                KNOWN.computeIfPresent(info.id(), (id, known) -> withChunks(known, chunks));
+                BUSY.remove(info.id());
+            }
+        }, IO);
+    }
+
+    @Override
+    public void close() {
+        closeAsync();
+    }
+
+    /**
+     * Reads the header of every journal, not its records.
+     * @return journals of builds that are not running or being undone, newest first; unreadable files are skipped
+     */
+    public static List<Info> list() {
+        Path dir = directory();
+        if (!Files.isDirectory(dir)) {
+            KNOWN.clear();
+            return Collections.emptyList();
+        }
+        Map<UUID, Info> found = new HashMap<>();
+        for (Path file : files(dir)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), HEADER_BYTES))) {
+                Info info = readHeader(in, Files.getLastModifiedTime(file).toMillis());
+                found.put(info.id(), info);
+            } catch (IOException e) {
+                MazeGeneratorPlugin.plugin.getLogger().warning("Skipping unreadable undo journal " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        KNOWN.keySet().retainAll(found.keySet());
+        KNOWN.putAll(found);
+        return notBusy(found.values());
+    }
+
+    /**
+     * Like {@link #list()} but from memory, for tab completion: the journals found by the last {@code list()} and
+     * those opened since. Chunk counts and times may be out of date.
+     */
+    public static List<Info> cached() {
+        return notBusy(KNOWN.values());
+    }
+
+    private static List<Info> notBusy(Collection<Info> infos) {
+        List<Info> journals = new ArrayList<>();
+        for (Info info : infos) {
+            if (!BUSY.contains(info.id())) {
+                journals.add(info);
+            }
+        }
+        journals.sort(Comparator.comparingLong(Info::modifiedMillis).reversed());
+        return journals;
+    }
+
+    /**
+     * Opens the journal for replaying; {@link #release(UUID)} must be called once the replay is over.
+     * @throws IllegalStateException if its build is still running or it is already being replayed
+     */
+    public static Reader replay(UUID id) throws IOException {
+        if (!BUSY.add(id)) {
+            throw new IllegalStateException("That maze is still being built or undone");
+        }
+        try {
+            return new Reader(directory().resolve(id + SUFFIX));
+        } catch (IOException | RuntimeException e) {
+            BUSY.remove(id);
+            throw e;
+        }
+    }
+
+    static void release(UUID id) {
+        BUSY.remove(id);
+    }
+
+    /**
+     * Deletes the journal in the background, after any write still queued for it.
+     */
+    public static CompletableFuture<Void> delete(UUID id) {
+        Path dir = directory();
+        KNOWN.remove(id);
+        return CompletableFuture.runAsync(() -> {
+            try {
+                Files.deleteIfExists(dir.resolve(id + SUFFIX));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, IO);
+    }
+
+    /**
+     * Sequential reader over a journal's chunk records.
+     */
+    public static final class Reader implements AutoCloseable {
+
+        private final DataInputStream in;
+        private final Info info;
+        // Offset after the last complete record
+        private long position;
+
+        Reader(Path file) throws IOException {
+            InputStream stream = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+            this.in = new DataInputStream(stream);
+            try {
+                this.info = readHeader(in, Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+            this.position = HEADER_BYTES;
+        }
+
+        public Info info() {
+            return info;
+        }
+
+        /**
+         * @return the next chunk's original blocks, or null at the end (including a record cut off by a crash)
+         * @throws IOException if a complete record cannot be decoded
+         */
+        public PalettedVolume next() throws IOException {
+            byte[] record = nextRecord();
+            if (record == null) {
+                return null;
+            }
+            PalettedVolume volume = PalettedVolume.read(new DataInputStream(new ByteArrayInputStream(record)));
+            position += Integer.BYTES + record.length;
+            return volume;
+        }
+
+        private byte[] nextRecord() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                throw new IOException("Corrupt undo record length " + length);
+            }
+            byte[] record = new byte[length];
+            try {
+                in.readFully(record);
+            } catch (EOFException e) {
+                return null;
+            }
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, Info info) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(info.chunks());
+        out.writeLong(info.id().getMostSignificantBits());
+        out.writeLong(info.id().getLeastSignificantBits());
+        out.writeLong(info.worldId().getMostSignificantBits());
+        out.writeLong(info.worldId().getLeastSignificantBits());
+        // Fixed size either way, so the records always start at HEADER_BYTES
+        out.writeBoolean(info.owner() != null);
+        out.writeLong(info.owner() != null ? info.owner().getMostSignificantBits() : 0L);
+        out.writeLong(info.owner() != null ? info.owner().getLeastSignificantBits() : 0L);
+        out.writeInt(info.minX());
+        out.writeInt(info.minY());
+        out.writeInt(info.minZ());
+        out.writeInt(info.maxX());
+        out.writeInt(info.maxY());
+        out.writeInt(info.maxZ());
+    }
+
+    private static Info readHeader(DataInputStream in, long modifiedMillis) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an undo journal");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported undo journal version " + version);
+        }
+        int chunks = in.readInt();
+        UUID id = new UUID(in.readLong(), in.readLong());
+        UUID worldId = new UUID(in.readLong(), in.readLong());
+        boolean hasOwner = in.readBoolean();
+        UUID owner = new UUID(in.readLong(), in.readLong());
+        int minX = in.readInt();
+        int minY = in.readInt();
+        int minZ = in.readInt();
+        int maxX = in.readInt();
+        int maxY = in.readInt();
+        int maxZ = in.readInt();
+        if (minX >= maxX || minY >= maxY || minZ >= maxZ || chunks < 0) {
+            throw new IOException("Corrupt undo journal header");
+        }
+        return new Info(id, worldId, hasOwner ? owner : null, minX, minY, minZ, maxX, maxY, maxZ, chunks, modifiedMillis);
+    }
+
+    private static void writeChunks(FileChannel channel, int chunks) throws IOException {
+        ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).putInt(0, chunks);
+        while (count.hasRemaining()) {
+            channel.write(count, CHUNKS_OFFSET + count.position());
+        }
+    }
+
+    private static Info withChunks(Info info, int chunks) {
+        return new Info(info.id(), info.worldId(), info.owner(), info.minX(), info.minY(), info.minZ(), info.maxX(),
+                info.maxY(), info.maxZ(), chunks, System.currentTimeMillis());
+    }
+
+    private static List<Path> files(Path dir) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            MazeGeneratorPlugin.plugin.getLogger().log(Level.WARNING, "Cannot list undo journals in " + dir, e);
+        }
+        return files;
+    }
+
+    /**
+     * Deletes the oldest journals until at most {@code keep} are left, sparing those of running builds and of
+     * interrupted builds that can still be resumed.
+     */
+    private static void prune(Path dir, int keep) {
+        List<Path> files = files(dir);
+        files.sort(Comparator.comparingLong(UndoJournal::modifiedMillis).reversed());
+        for (int i = keep; i < files.size(); i++) {
+            Path file = files.get(i);
+            String name = file.getFileName().toString();
+            try {
+                UUID id = UUID.fromString(name.substring(0, name.length() - SUFFIX.length()));
+                if (!BUSY.contains(id) && !CheckpointStore.hasCheckpoint(id)) {
+                    Files.deleteIfExists(file);
+                    KNOWN.remove(id);
+                }
+            } catch (IllegalArgumentException | IOException ignored) {
+            }
+        }
+    }
+
+    private static long modifiedMillis(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
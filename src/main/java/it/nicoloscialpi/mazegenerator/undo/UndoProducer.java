@@ -0,0 +1,125 @@
+package it.nicoloscialpi.mazegenerator.undo;
+
+import it.nicoloscialpi.mazegenerator.MazeGeneratorPlugin;
+import it.nicoloscialpi.mazegenerator.loadbalancer.ChunkResidency;
+import it.nicoloscialpi.mazegenerator.loadbalancer.JobProducer;
+import it.nicoloscialpi.mazegenerator.loadbalancer.LoadBalancerJob;
+import it.nicoloscialpi.mazegenerator.loadbalancer.PhaseProgressSnapshot;
+import it.nicoloscialpi.mazegenerator.loadbalancer.PlacementStats;
+import it.nicoloscialpi.mazegenerator.loadbalancer.SchedulerBackend;
+import it.nicoloscialpi.mazegenerator.maze.BuildPhase;
+import it.nicoloscialpi.mazegenerator.maze.CheckpointStore;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Undoes a build by replaying its {@link UndoJournal}: every recorded chunk becomes a {@link RestoreChunkJob}, run by
+ * a {@link it.nicoloscialpi.mazegenerator.loadbalancer.LoadBalancer} like any build, so an undo shares the tick budget
+ * and the chunk load limit with running builds. Records are read a few chunks per call, so only the chunks queued
+ * for restoring are held in memory. The journal is deleted once every chunk has been written back; a stopped undo
+ * keeps it and can simply be run again.
+ */
+public class UndoProducer implements JobProducer {
+
+    private static final int CHUNKS_PER_CALL = 16;
+
+    private final World world;
+    private final UUID id;
+    private final UndoJournal.Reader reader;
+    private final int totalChunks;
+    private final PlacementStats stats;
+    private final ChunkResidency residency;
+    private final int snapshotMinBlocks = Math.max(0, MazeGeneratorPlugin.plugin.getConfig().getInt("snapshot-diff-min-blocks", 256));
+    private final AtomicInteger restored = new AtomicInteger();
+    private volatile int read = 0;
+    private volatile boolean exhausted = false;
+    private boolean closed = false;
+
+    /**
+     * @throws IllegalStateException if the build is still running or already being undone
+     */
+    public UndoProducer(World world, UndoJournal.Info journal) throws IOException {
+        this.world = world;
+        this.id = journal.id();
+        this.totalChunks = journal.chunks();
+        this.reader = UndoJournal.replay(id);
+        // An undone build must not be resumed over the restored area
+        CheckpointStore.delete(id);
+        this.stats = new PlacementStats(0);
+        this.residency = new ChunkResidency(MazeGeneratorPlugin.plugin, world,
+                MazeGeneratorPlugin.plugin.getConfig().getInt("max-pinned-chunks", 256), stats, SchedulerBackend.current());
+    }
+
+    @Override
+    public List<LoadBalancerJob> getJobs() {
+        List<LoadBalancerJob> jobs = new ArrayList<>();
+        if (exhausted) {
+            return jobs;
+        }
+        try {
+            for (int i = 0; i < CHUNKS_PER_CALL; i++) {
+                PalettedVolume volume = reader.next();
+                if (volume == null) {
+                    exhausted = true;
+                    break;
+                }
+                read++;
+                jobs.add(new RestoreChunkJob(world, volume, stats, residency, snapshotMinBlocks, restored::incrementAndGet));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read undo journal " + id, e);
+        }
+        return jobs;
+    }
+
+    /**
+     * Like a build's, progress counts the chunks handed out for restoring.
+     */
+    @Override
+    public double getProgressPercentage() {
+        return percentage(read);
+    }
+
+    @Override
+    public PhaseProgressSnapshot getPhaseProgress() {
+        // Nothing to generate: the journal is read as fast as chunks are restored
+        Map<BuildPhase, Double> map = new EnumMap<>(BuildPhase.class);
+        map.put(BuildPhase.GENERATION, 100.0);
+        map.put(BuildPhase.PLACEMENT, percentage(read));
+        return new PhaseProgressSnapshot(BuildPhase.PLACEMENT, map);
+    }
+
+    private double percentage(int chunks) {
+        return Math.min(100.0, 100.0 * chunks / Math.max(1, totalChunks));
+    }
+
+    @Override
+    public String getMessagePrefix() {
+        return "undo";
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        residency.releaseAll();
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+        if (exhausted && restored.get() >= read) {
+            UndoJournal.delete(id);
+        }
+        UndoJournal.release(id);
+    }
+}
@@ -0,0 +1,25 @@
+package it.nicoloscialpi.mazegenerator.util;
+
+/**
+ * Packs chunk coordinates into a single long (x in the high half, z in the low half).
+ */
+public final class ChunkKeys {
+
+    private ChunkKeys() {}
+
+    public static long pack(int chunkX, int chunkZ) {
+        return (((long) chunkX) << 32) ^ (chunkZ & 0xffffffffL);
+    }
+
+    public static long ofBlock(int blockX, int blockZ) {
+        return pack(Math.floorDiv(blockX, 16), Math.floorDiv(blockZ, 16));
+    }
+
+    public static int x(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int z(long key) {
+        return (int) key;
+    }
+}
@@ -0,0 +1,135 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncJobPipelineTest {
+
+    /**
+     * Produces {@code total} numbered jobs in batches and records the thread and the peak queue it ran with.
+     */
+    private static class CountingProducer implements JobProducer {
+        private final int total;
+        private final int batch;
+        private int produced = 0;
+        private volatile Thread thread;
+        private volatile boolean closed = false;
+
+        CountingProducer(int total, int batch) {
+            this.total = total;
+            this.batch = batch;
+        }
+
+        @Override
+        public List<LoadBalancerJob> getJobs() {
+            thread = Thread.currentThread();
+            List<LoadBalancerJob> jobs = new ArrayList<>();
+            for (int i = 0; i < batch && produced < total; i++) {
+                int id = produced++;
+                jobs.add(new NumberedJob(id));
+            }
+            return jobs;
+        }
+
+        @Override
+        public double getProgressPercentage() {
+            return produced * 100.0 / total;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private record NumberedJob(int id) implements LoadBalancerJob {
+        @Override
+        public void compute() {
+        }
+    }
+
+    @Test
+    void deliversEveryJobInOrderFromWorkerThread() {
+        CountingProducer producer = new CountingProducer(10_000, 37);
+        AsyncJobPipeline pipeline = new AsyncJobPipeline(producer, 16, 64);
+        AtomicInteger next = new AtomicInteger();
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (pipeline.isPending()) {
+            assertTrue(System.nanoTime() < deadline, "pipeline did not finish");
+            List<LoadBalancerJob> jobs = pipeline.getJobs();
+            assertTrue(jobs.size() <= 16);
+            for (LoadBalancerJob job : jobs) {
+                assertEquals(next.getAndIncrement(), ((NumberedJob) job).id());
+            }
+        }
+        assertEquals(10_000, next.get());
+        assertTrue(producer.thread != null && producer.thread != Thread.currentThread());
+        assertEquals(100.0, pipeline.getProgressPercentage(), 1e-9);
+        pipeline.close();
+        assertTrue(producer.closed);
+    }
+
+    @Test
+    void closeWaitsForTheWorkerToLeaveTheDelegate() throws InterruptedException {
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean closedWhileBusy = new AtomicBoolean();
+        AtomicBoolean busy = new AtomicBoolean();
+        CountingProducer producer = new CountingProducer(1_000, 10) {
+            @Override
+            public List<LoadBalancerJob> getJobs() {
+                busy.set(true);
+                inside.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                busy.set(false);
+                return super.getJobs();
+            }
+
+            @Override
+            public void close() {
+                closedWhileBusy.compareAndSet(false, busy.get());
+                super.close();
+            }
+        };
+        AsyncJobPipeline pipeline = new AsyncJobPipeline(producer, 16, 64, 50);
+        pipeline.getJobs();
+        assertTrue(inside.await(5, TimeUnit.SECONDS));
+        pipeline.close();
+        assertFalse(producer.closed, "closed under a live worker");
+        release.countDown();
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!producer.closed) {
+            assertTrue(System.nanoTime() < deadline, "worker did not close the producer");
+            Thread.sleep(5);
+        }
+        assertFalse(closedWhileBusy.get());
+    }
+
+    @Test
+    void workerStopsAtHighWatermark() throws InterruptedException {
+        CountingProducer producer = new CountingProducer(1_000_000, 10);
+        AsyncJobPipeline pipeline = new AsyncJobPipeline(producer, 16, 64);
+        assertTrue(pipeline.getJobs().size() <= 16);
+        Thread.sleep(200);
+        // Queue capacity plus one producer batch held back locally
+        assertTrue(producer.produced <= 64 + 16 + 10, "worker ran ahead: " + producer.produced);
+        assertTrue(pipeline.isPending());
+        pipeline.close();
+        assertFalse(producer.thread.isAlive());
+        assertTrue(producer.closed);
+    }
+}
@@ -0,0 +1,149 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkResidencyTest {
+
+    /**
+     * World with a fixed set of loaded chunks that records plugin ticket counts per chunk.
+     */
+    private static final class FakeWorld {
+        final UUID id = UUID.randomUUID();
+        final Set<Long> loaded = new HashSet<>();
+        final Map<Long, Integer> tickets = new HashMap<>();
+
+        World world() {
+            return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "getUID" -> id;
+                case "isChunkLoaded" -> loaded.contains(ChunkKeys.pack((Integer) args[0], (Integer) args[1]));
+                case "getChunkAt" -> chunk(ChunkKeys.pack((Integer) args[0], (Integer) args[1]));
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private Chunk chunk(long key) {
+            return (Chunk) Proxy.newProxyInstance(Chunk.class.getClassLoader(), new Class<?>[]{Chunk.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "addPluginChunkTicket" -> {
+                    tickets.merge(key, 1, Integer::sum);
+                    yield true;
+                }
+                case "removePluginChunkTicket" -> {
+                    tickets.merge(key, -1, Integer::sum);
+                    yield true;
+                }
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        int ticket(int chunkX, int chunkZ) {
+            return tickets.getOrDefault(ChunkKeys.pack(chunkX, chunkZ), 0);
+        }
+    }
+
+    @Test
+    void ticketIsHeldUntilTheLastJobOfTheChunkRuns() {
+        FakeWorld fake = new FakeWorld();
+        fake.loaded.add(ChunkKeys.pack(0, 0));
+        PlacementStats stats = new PlacementStats(1);
+        ChunkResidency residency = new ChunkResidency(null, fake.world(), 16, stats, new FakeScheduler());
+
+        residency.retain(0, 0);
+        residency.retain(0, 0);
+        assertTrue(residency.ensureLoaded(0, 0));
+        assertTrue(residency.ensureLoaded(0, 0));
+        assertEquals(1, fake.ticket(0, 0));
+        assertEquals(1, stats.getPinnedChunks());
+
+        residency.release(0, 0);
+        assertEquals(1, fake.ticket(0, 0), "one job still queued");
+        residency.release(0, 0);
+        assertEquals(0, fake.ticket(0, 0));
+        assertEquals(0, residency.getPinnedCount());
+    }
+
+    @Test
+    void buildsShareOneTicketPerChunk() {
+        FakeWorld fake = new FakeWorld();
+        fake.loaded.add(ChunkKeys.pack(3, -2));
+        World world = fake.world();
+        ChunkResidency first = new ChunkResidency(null, world, 16, new PlacementStats(1), new FakeScheduler());
+        ChunkResidency second = new ChunkResidency(null, world, 16, new PlacementStats(1), new FakeScheduler());
+
+        first.retain(3, -2);
+        second.retain(3, -2);
+        assertTrue(first.ensureLoaded(3, -2));
+        assertTrue(second.ensureLoaded(3, -2));
+        assertEquals(1, fake.ticket(3, -2));
+
+        first.release(3, -2);
+        assertEquals(1, fake.ticket(3, -2), "the other build still needs the chunk");
+        second.releaseAll();
+        assertEquals(0, fake.ticket(3, -2));
+    }
+
+    @Test
+    void pinnedChunksAreCappedPerBuild() {
+        FakeWorld fake = new FakeWorld();
+        ChunkResidency residency = new ChunkResidency(null, fake.world(), 2, new PlacementStats(1), new FakeScheduler());
+        for (int x = 0; x < 4; x++) {
+            fake.loaded.add(ChunkKeys.pack(x, 0));
+            residency.retain(x, 0);
+            assertTrue(residency.ensureLoaded(x, 0), "a loaded chunk runs even without a ticket");
+        }
+        assertEquals(2, residency.getPinnedCount());
+        assertEquals(0, fake.ticket(3, 0));
+
+        residency.releaseAll();
+        assertEquals(0, fake.ticket(0, 0));
+        assertEquals(0, fake.ticket(1, 0));
+    }
+
+    @Test
+    void releaseAllOffTheOwningThreadUnpinsOnTheOwner() {
+        FakeWorld fake = new FakeWorld();
+        fake.loaded.add(ChunkKeys.pack(5, 5));
+        FakeScheduler scheduler = new FakeScheduler();
+        ChunkResidency residency = new ChunkResidency(null, fake.world(), 16, new PlacementStats(1), scheduler);
+        residency.retain(5, 5);
+        assertTrue(residency.ensureLoaded(5, 5));
+
+        scheduler.ownsChunks = false;
+        residency.releaseAll();
+        assertEquals(1, fake.ticket(5, 5), "released on the chunk's owner, not here");
+        scheduler.runTick();
+        assertEquals(0, fake.ticket(5, 5));
+        assertEquals(0, residency.getPinnedCount());
+    }
+
+    @Test
+    void unloadedChunkThatWasWorkedOnCountsAsReload() {
+        FakeWorld fake = new FakeWorld();
+        fake.loaded.add(ChunkKeys.pack(0, 0));
+        PlacementStats stats = new PlacementStats(1);
+        ChunkResidency residency = new ChunkResidency(null, fake.world(), 16, stats, new FakeScheduler());
+
+        residency.retain(0, 0);
+        assertTrue(residency.ensureLoaded(0, 0));
+        residency.release(0, 0);
+
+        fake.loaded.clear();
+        residency.retain(0, 0);
+        assertFalse(residency.ensureLoaded(0, 0));
+        assertFalse(residency.ensureLoaded(0, 0));
+        assertEquals(1, stats.getChunkReloads());
+    }
+}
@@ -0,0 +1,112 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CostModelTest {
+
+    private static final long MILLI = 1_000_000L;
+
+    /**
+     * Job of {@code blocks} writes that advances the fake clock by {@code nanosPerBlock} per write.
+     */
+    private static final class FakeSliceableJob implements SliceableJob {
+        final long[] clock;
+        final long nanosPerBlock;
+        final boolean chunkLoaded;
+        long remaining;
+        int slices = 0;
+
+        FakeSliceableJob(long[] clock, long blocks, long nanosPerBlock, boolean chunkLoaded) {
+            this.clock = clock;
+            this.remaining = blocks;
+            this.nanosPerBlock = nanosPerBlock;
+            this.chunkLoaded = chunkLoaded;
+        }
+
+        @Override
+        public String getCostKey() {
+            return "fake";
+        }
+
+        @Override
+        public boolean wasChunkLoaded() {
+            return chunkLoaded;
+        }
+
+        @Override
+        public long getRemainingBlocks() {
+            return remaining;
+        }
+
+        @Override
+        public boolean computeSlice(long maxBlocks) {
+            long run = Math.min(remaining, maxBlocks);
+            remaining -= run;
+            clock[0] += run * nanosPerBlock;
+            slices++;
+            return remaining == 0;
+        }
+    }
+
+    @Test
+    void estimateFollowsMeasuredCost() {
+        CostModel model = new CostModel(0.5, 1000);
+        assertEquals(1000, model.estimateNanosPerBlock("batch", true), 1e-9);
+
+        model.record("batch", true, 1000, 400_000);
+        assertEquals(400, model.estimateNanosPerBlock("batch", true), 1e-9, "first sample replaces the guess");
+        model.record("batch", true, 1000, 600_000);
+        assertEquals(500, model.estimateNanosPerBlock("batch", true), 1e-9);
+
+        // Tiny slices are mostly overhead and are ignored
+        model.record("batch", true, CostModel.MIN_SAMPLE_BLOCKS - 1, 10 * MILLI);
+        assertEquals(500, model.estimateNanosPerBlock("batch", true), 1e-9);
+    }
+
+    @Test
+    void chunkStatesAreLearnedSeparately() {
+        CostModel model = new CostModel(0.5, 1000);
+        model.record("batch", true, 1000, 300_000);
+        assertEquals(300, model.estimateNanosPerBlock("batch", false), 1e-9, "cold falls back to the warm estimate");
+
+        model.record("batch", false, 1000, 2_000_000);
+        assertEquals(2000, model.estimateNanosPerBlock("batch", false), 1e-9);
+        assertEquals(300, model.estimateNanosPerBlock("batch", true), 1e-9);
+        assertEquals(1000, model.estimateNanosPerBlock("other", true), 1e-9, "other job types start from the guess");
+    }
+
+    @Test
+    void slicesFitTheTimeLeft() {
+        CostModel model = new CostModel(0.5, 1000);
+        assertEquals(2000, model.blocksWithin("batch", true, 2 * MILLI));
+        assertEquals(CostModel.MIN_SLICE_BLOCKS, model.blocksWithin("batch", true, 0));
+        assertEquals(CostModel.MIN_SLICE_BLOCKS, model.blocksWithin("batch", true, -5 * MILLI));
+
+        model.configure(false, 0.5, 1000);
+        assertEquals(Long.MAX_VALUE, model.blocksWithin("batch", true, MILLI), "disabled runs jobs whole");
+    }
+
+    @Test
+    void runSliceCutsTheJobAndLearnsItsCost() {
+        long[] clock = {0};
+        CostModel model = new CostModel(1.0, 1000, () -> clock[0]);
+        FakeSliceableJob job = new FakeSliceableJob(clock, 10_000, 4000, true);
+
+        // The guess lets 3000 blocks in, which really take 12 ms: the model learns 4000 ns/block from that slice
+        assertFalse(model.runSlice(job, 3 * MILLI));
+        assertEquals(7000, job.getRemainingBlocks());
+        assertEquals(4000, model.estimateNanosPerBlock("fake", true), 1e-9);
+
+        long before = clock[0];
+        assertFalse(model.runSlice(job, 3 * MILLI));
+        assertEquals(3 * MILLI, clock[0] - before, "second slice fits the budget");
+
+        assertTrue(model.runSlice(job, 100 * MILLI));
+        assertEquals(0, job.getRemainingBlocks());
+        assertEquals(3, job.slices);
+    }
+}
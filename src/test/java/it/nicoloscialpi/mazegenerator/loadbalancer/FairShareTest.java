@@ -0,0 +1,97 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairShareTest {
+
+    private static final long BUDGET = 5_000_000L;
+
+    /**
+     * Build that uses its whole grant (plus a fixed overrun) while it has work left.
+     */
+    private static final class FakeBuild implements FairShare.Build {
+        long work;
+        final long overrun;
+        long used = 0;
+
+        FakeBuild(long work, long overrun) {
+            this.work = work;
+            this.overrun = overrun;
+        }
+
+        @Override
+        public long tick(long budgetNanos) {
+            long spent = Math.min(work, budgetNanos + overrun);
+            work -= spent;
+            used += spent;
+            return spent;
+        }
+    }
+
+    @Test
+    void budgetIsSplitByWeight() {
+        FairShare fairShare = new FairShare();
+        FakeBuild light = new FakeBuild(Long.MAX_VALUE, 0);
+        FakeBuild heavy = new FakeBuild(Long.MAX_VALUE, 0);
+        fairShare.add(light, 1, false);
+        fairShare.add(heavy, 3, false);
+        for (int tick = 0; tick < 100; tick++) {
+            assertEquals(BUDGET, fairShare.share(BUDGET));
+        }
+        assertEquals(100 * BUDGET / 4, light.used);
+        assertEquals(100 * BUDGET * 3 / 4, heavy.used);
+    }
+
+    @Test
+    void overrunsArePaidBackSoManyBuildsStayWithinTheBudget() {
+        FairShare fairShare = new FairShare();
+        FakeBuild[] builds = new FakeBuild[5];
+        for (int i = 0; i < builds.length; i++) {
+            builds[i] = new FakeBuild(Long.MAX_VALUE, 400_000L); // every tick runs 0.4ms past its grant
+            fairShare.add(builds[i], 1, false);
+        }
+        long total = 0;
+        for (int tick = 0; tick < 200; tick++) {
+            total += fairShare.share(BUDGET);
+        }
+        // Builds that overran sit out until they have paid it back, so the average stays at the budget
+        assertTrue(total <= 200 * BUDGET + builds.length * 400_000L, "total " + total);
+        for (FakeBuild build : builds) {
+            assertTrue(Math.abs(build.used - total / builds.length) <= BUDGET, "unfair share " + build.used);
+        }
+    }
+
+    @Test
+    void timeLeftByAnIdleBuildGoesToABusyOne() {
+        FairShare fairShare = new FairShare();
+        FakeBuild idle = new FakeBuild(1_000_000L, 0);
+        FakeBuild busy = new FakeBuild(Long.MAX_VALUE, 0);
+        fairShare.add(idle, 1, false);
+        fairShare.add(busy, 1, false);
+        assertEquals(BUDGET, fairShare.share(BUDGET));
+        assertEquals(1_000_000L, idle.used);
+        assertEquals(BUDGET - 1_000_000L, busy.used);
+        assertEquals(BUDGET, fairShare.share(BUDGET));
+        assertEquals(2 * BUDGET - 1_000_000L, busy.used);
+    }
+
+    @Test
+    void preemptingBuildPausesTheOthers() {
+        FairShare fairShare = new FairShare();
+        FakeBuild player = new FakeBuild(Long.MAX_VALUE, 0);
+        FakeBuild admin = new FakeBuild(Long.MAX_VALUE, 0);
+        fairShare.add(player, 4, false);
+        fairShare.add(admin, 1, true);
+        fairShare.share(BUDGET);
+        assertEquals(0, player.used);
+        assertEquals(BUDGET, admin.used);
+
+        fairShare.remove(admin);
+        fairShare.share(BUDGET);
+        assertEquals(BUDGET, player.used);
+        assertEquals(BUDGET, fairShare.getLastGrantNanos(player));
+    }
+}
@@ -0,0 +1,77 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Regionized scheduler stand-in: chunk tasks are queued and only run when the test advances a tick.
+ */
+final class FakeScheduler implements SchedulerBackend {
+
+    private record ChunkTask(long chunk, Runnable task, long dueTick) {}
+
+    private final List<ChunkTask> tasks = new ArrayList<>();
+    // Chunks that had a task scheduled on their owner
+    final Set<Long> scheduledChunks = new HashSet<>();
+    // Whether the test thread counts as the owner of every chunk
+    boolean ownsChunks = true;
+    private long tick = 0;
+
+    @Override
+    public Task runAtFixedRate(Runnable task, long periodTicks) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        long chunk = ChunkKeys.pack(chunkX, chunkZ);
+        scheduledChunks.add(chunk);
+        tasks.add(new ChunkTask(chunk, task, tick + Math.max(0, delayTicks)));
+    }
+
+    @Override
+    public boolean ownsChunk(World world, int chunkX, int chunkZ) {
+        return ownsChunks;
+    }
+
+    @Override
+    public boolean isRegionized() {
+        return true;
+    }
+
+    @Override
+    public void cancelAll() {
+        tasks.clear();
+    }
+
+    /**
+     * Runs every task due this tick, including ones scheduled without delay while doing so, then advances the tick.
+     * @return tasks run
+     */
+    int runTick() {
+        int run = 0;
+        boolean ranAny = true;
+        while (ranAny) {
+            ranAny = false;
+            for (ChunkTask task : new ArrayList<>(tasks)) {
+                if (task.dueTick() <= tick) {
+                    tasks.remove(task);
+                    task.task().run();
+                    run++;
+                    ranAny = true;
+                }
+            }
+        }
+        tick++;
+        return run;
+    }
+
+    int pendingTasks() {
+        return tasks.size();
+    }
+}
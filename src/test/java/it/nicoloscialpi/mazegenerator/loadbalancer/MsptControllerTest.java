@@ -0,0 +1,70 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsptControllerTest {
+
+    private static MsptController controller() {
+        return new MsptController(3, 1, 20, 40, 0.2, 0.1, 0.5);
+    }
+
+    /**
+     * Runs ticks of a server whose own work takes {@code baseMillis}, plus the maze budget.
+     */
+    private static double run(MsptController controller, double baseMillis, int ticks) {
+        double budget = controller.getBudgetMillis();
+        for (int i = 0; i < ticks; i++) {
+            double tick = baseMillis + budget;
+            budget = controller.update(tick, tick, false);
+        }
+        return budget;
+    }
+
+    @Test
+    void idleServerGivesBuildsTheFreeTick() {
+        MsptController controller = controller();
+        assertEquals(20, run(controller, 5, 20), 1e-9, "reaches the cap within a second");
+    }
+
+    @Test
+    void loadedServerSettlesAtTheCeiling() {
+        MsptController controller = controller();
+        double budget = run(controller, 34, 200);
+        assertEquals(6, budget, 0.1);
+    }
+
+    @Test
+    void spikeBacksOffWithinTwoTicks() {
+        MsptController controller = controller();
+        run(controller, 5, 50);
+        assertEquals(10, controller.update(70, 20, false), 1e-9);
+        assertEquals(5, controller.update(60, 25, false), 1e-9);
+        // Late for the next tick counts as over the ceiling even if this tick was short
+        assertEquals(2.5, controller.update(30, 30, true), 1e-9);
+    }
+
+    @Test
+    void noWindupAfterALongStretchAtTheCap() {
+        MsptController controller = controller();
+        run(controller, 1, 10_000);
+        controller.update(41, 20, false);
+        assertEquals(10, controller.getBudgetMillis(), 1e-9, "first tick over the ceiling acts at once");
+
+        // Back to light load: it climbs again from where it is instead of jumping on a stored error
+        double next = controller.update(15, 20, false);
+        assertTrue(next > 10 && next < 13, "budget " + next);
+    }
+
+    @Test
+    void highRollingAverageHoldsTheBudgetDown() {
+        MsptController controller = controller();
+        double budget = controller.getBudgetMillis();
+        for (int i = 0; i < 50; i++) {
+            budget = controller.update(10 + budget, 45, false); // quick ticks, but the average is over the ceiling
+        }
+        assertEquals(1, budget, 1e-9);
+    }
+}
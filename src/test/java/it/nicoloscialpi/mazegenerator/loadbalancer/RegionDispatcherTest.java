@@ -0,0 +1,208 @@
+package it.nicoloscialpi.mazegenerator.loadbalancer;
+
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionDispatcherTest {
+
+    private static final long MILLI = 1_000_000L;
+
+    /**
+     * Job that logs its run and advances the fake clock by its cost.
+     */
+    private static class FakeJob implements ChunkBoundJob {
+        final int chunkX;
+        final int chunkZ;
+        final String name;
+        final List<String> log;
+        final long[] clock;
+        final long cost;
+        boolean ready = true;
+
+        FakeJob(int chunkX, int chunkZ, String name, List<String> log, long[] clock, long cost) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.name = name;
+            this.log = log;
+            this.clock = clock;
+            this.cost = cost;
+        }
+
+        @Override
+        public World getWorld() {
+            return null;
+        }
+
+        @Override
+        public int getChunkX() {
+            return chunkX;
+        }
+
+        @Override
+        public int getChunkZ() {
+            return chunkZ;
+        }
+
+        @Override
+        public boolean prepareChunks() {
+            return ready;
+        }
+
+        @Override
+        public void compute() {
+            log.add(name);
+            clock[0] += cost;
+        }
+    }
+
+    /**
+     * Job of {@code blocks} block writes at chunk 0,0 that logs the size of every slice it runs.
+     */
+    private static final class SlicedJob extends FakeJob implements SliceableJob {
+        final long nanosPerBlock;
+        long remaining;
+
+        SlicedJob(List<String> log, long[] clock, long blocks, long nanosPerBlock) {
+            super(0, 0, "long", log, clock, 0);
+            this.remaining = blocks;
+            this.nanosPerBlock = nanosPerBlock;
+        }
+
+        @Override
+        public String getCostKey() {
+            return "fake";
+        }
+
+        @Override
+        public boolean wasChunkLoaded() {
+            return true;
+        }
+
+        @Override
+        public long getRemainingBlocks() {
+            return remaining;
+        }
+
+        @Override
+        public boolean computeSlice(long maxBlocks) {
+            long run = Math.min(remaining, maxBlocks);
+            remaining -= run;
+            clock[0] += run * nanosPerBlock;
+            log.add(name + ":" + run);
+            return remaining == 0;
+        }
+    }
+
+    @Test
+    void jobsRunOnTheirChunkInSubmissionOrder() {
+        FakeScheduler scheduler = new FakeScheduler();
+        long[] clock = {0};
+        RegionDispatcher dispatcher = new RegionDispatcher(scheduler, new RegionBudget(10 * MILLI, () -> clock[0]), new CostModel(0.1, 1000));
+        List<String> log = new ArrayList<>();
+        dispatcher.submit(new FakeJob(0, 0, "a1", log, clock, 0));
+        dispatcher.submit(new FakeJob(4, -2, "b1", log, clock, 0));
+        dispatcher.submit(new FakeJob(0, 0, "a2", log, clock, 0));
+
+        assertEquals(Set.of(ChunkKeys.pack(0, 0), ChunkKeys.pack(4, -2)), scheduler.scheduledChunks);
+        assertTrue(log.isEmpty(), "nothing runs on the submitting thread");
+        assertFalse(dispatcher.isIdle());
+
+        assertEquals(2, scheduler.runTick(), "one drain task per chunk");
+        assertEquals(List.of("a1", "a2", "b1"), log);
+        assertTrue(dispatcher.isIdle());
+        assertEquals(3, dispatcher.getProgress().getCompleted());
+    }
+
+    @Test
+    void spentBudgetMovesTheRestToTheNextTick() {
+        FakeScheduler scheduler = new FakeScheduler();
+        long[] clock = {0};
+        RegionDispatcher dispatcher = new RegionDispatcher(scheduler, new RegionBudget(5 * MILLI, () -> clock[0]), new CostModel(0.1, 1000));
+        List<String> log = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            dispatcher.submit(new FakeJob(1, 1, "j" + i, log, clock, 3 * MILLI));
+        }
+
+        scheduler.runTick();
+        assertEquals(List.of("j0", "j1"), log, "stops once the 5ms budget is used up");
+        assertEquals(2, dispatcher.getProgress().getInFlight());
+
+        clock[0] += 50 * MILLI; // next tick window
+        scheduler.runTick();
+        assertEquals(List.of("j0", "j1", "j2", "j3"), log);
+        assertTrue(dispatcher.isIdle());
+    }
+
+    @Test
+    void waitingJobBlocksItsChunkOnly() {
+        FakeScheduler scheduler = new FakeScheduler();
+        long[] clock = {0};
+        RegionDispatcher dispatcher = new RegionDispatcher(scheduler, new RegionBudget(10 * MILLI, () -> clock[0]), new CostModel(0.1, 1000));
+        List<String> log = new ArrayList<>();
+        FakeJob waiting = new FakeJob(0, 0, "waiting", log, clock, 0);
+        waiting.ready = false;
+        dispatcher.submit(waiting);
+        dispatcher.submit(new FakeJob(0, 0, "after", log, clock, 0));
+        dispatcher.submit(new FakeJob(9, 9, "other", log, clock, 0));
+
+        scheduler.runTick();
+        assertEquals(List.of("other"), log);
+        assertEquals(1, scheduler.pendingTasks(), "the waiting chunk retries next tick");
+
+        waiting.ready = true;
+        scheduler.runTick();
+        assertEquals(List.of("other", "waiting", "after"), log);
+        assertTrue(dispatcher.isIdle());
+    }
+
+    @Test
+    void failingJobStopsTheDispatcher() {
+        FakeScheduler scheduler = new FakeScheduler();
+        long[] clock = {0};
+        RegionDispatcher dispatcher = new RegionDispatcher(scheduler, new RegionBudget(10 * MILLI, () -> clock[0]), new CostModel(0.1, 1000));
+        List<String> log = new ArrayList<>();
+        IllegalStateException boom = new IllegalStateException("boom");
+        dispatcher.submit(new FakeJob(0, 0, "bad", log, clock, 0) {
+            @Override
+            public void compute() {
+                throw boom;
+            }
+        });
+        dispatcher.submit(new FakeJob(0, 0, "skipped", log, clock, 0));
+
+        scheduler.runTick();
+        assertSame(boom, dispatcher.getFailure());
+        assertTrue(log.isEmpty());
+        assertTrue(dispatcher.isIdle(), "dropped jobs still count as done");
+    }
+
+    @Test
+    void longJobIsSlicedAcrossTicksAheadOfItsChunk() {
+        FakeScheduler scheduler = new FakeScheduler();
+        long[] clock = {0};
+        RegionDispatcher dispatcher = new RegionDispatcher(scheduler, new RegionBudget(4 * MILLI, () -> clock[0]),
+                new CostModel(0.5, 1000, () -> clock[0]));
+        List<String> log = new ArrayList<>();
+        dispatcher.submit(new SlicedJob(log, clock, 10_000, 1000));
+        dispatcher.submit(new FakeJob(0, 0, "after", log, clock, 0));
+
+        scheduler.runTick();
+        assertEquals(List.of("long:4000"), log, "cut to the 4ms budget");
+        clock[0] += 50 * MILLI;
+        scheduler.runTick();
+        clock[0] += 50 * MILLI;
+        scheduler.runTick();
+        assertEquals(List.of("long:4000", "long:4000", "long:2000", "after"), log);
+        assertTrue(dispatcher.isIdle());
+    }
+}
@@ -0,0 +1,40 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BuildCheckpointTest {
+
+    private static BuildCheckpoint sample(UUID owner) {
+        return new BuildCheckpoint(UUID.randomUUID(), owner, UUID.randomUUID(), -120, 64, 3000, "forest", 4, 2,
+                true, false, 501, 301, 3, 0.05, true, 7, 9, true, -42L, "tiled", 3,
+                new BuildCheckpoint.Settings(false, true, true, 256), 123_456L);
+    }
+
+    @Test
+    void roundTripsEveryField() throws IOException {
+        BuildCheckpoint checkpoint = sample(UUID.randomUUID());
+        assertEquals(checkpoint, BuildCheckpoint.decode(checkpoint.encode()));
+
+        BuildCheckpoint console = sample(null).withPlacedCells(0);
+        assertEquals(console, BuildCheckpoint.decode(console.encode()));
+    }
+
+    @Test
+    void rejectsCorruptedOrTruncatedData() {
+        byte[] data = sample(UUID.randomUUID()).encode();
+
+        byte[] flipped = data.clone();
+        flipped[flipped.length / 2] ^= 0x10;
+        assertThrows(IOException.class, () -> BuildCheckpoint.decode(flipped));
+
+        assertThrows(IOException.class, () -> BuildCheckpoint.decode(Arrays.copyOf(data, data.length - 3)));
+        assertThrows(IOException.class, () -> BuildCheckpoint.decode(new byte[3]));
+    }
+}
@@ -0,0 +1,75 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkOrderWalkerTest {
+
+    /**
+     * Walks the whole maze and checks every cell comes out once and each chunk is finished in one visit.
+     * @return number of chunk-to-chunk moves that were not to an adjacent chunk
+     */
+    private static int walk(int rows, int cols, int baseX, int baseZ, int cellSize) {
+        ChunkOrderWalker walker = new ChunkOrderWalker(rows, cols, baseX, baseZ, cellSize);
+        BitSet seen = new BitSet();
+        Set<Long> finishedChunks = new HashSet<>();
+        long current = Long.MIN_VALUE;
+        int jumps = 0;
+        long index;
+        while ((index = walker.next()) >= 0) {
+            assertFalse(seen.get((int) index), "cell returned twice: " + index);
+            seen.set((int) index);
+            int cx = Math.floorDiv(baseX + (int) (index / cols) * cellSize, 16);
+            int cz = Math.floorDiv(baseZ + (int) (index % cols) * cellSize, 16);
+            long chunk = ((long) cx << 32) ^ (cz & 0xffffffffL);
+            if (chunk != current) {
+                assertTrue(finishedChunks.add(chunk), "chunk revisited: " + cx + "," + cz);
+                if (current != Long.MIN_VALUE) {
+                    int px = (int) (current >> 32);
+                    int pz = (int) current;
+                    if (Math.abs(px - cx) + Math.abs(pz - cz) != 1) jumps++;
+                }
+                current = chunk;
+            }
+        }
+        assertEquals(rows * cols, seen.cardinality());
+        return jumps;
+    }
+
+    @Test
+    void squarePowerOfTwoFootprintMovesOnlyToAdjacentChunks() {
+        assertEquals(0, walk(128, 128, 0, 0, 1));
+        assertEquals(0, walk(64, 64, -32, 16, 2));
+    }
+
+    @Test
+    void coversOddSizesOffsetsAndLargeCells() {
+        walk(101, 37, 5, -7, 1);
+        walk(45, 91, -3, 11, 3);
+        walk(21, 21, 100, 100, 20); // cells larger than a chunk leave empty tiles
+        assertEquals(0, walk(33, 1025, 0, 0, 1)); // long strip laid out as consecutive square blocks
+    }
+
+    @Test
+    void segmentsMatchCellByCellWalk() {
+        ChunkOrderWalker cells = new ChunkOrderWalker(45, 91, -3, 11, 3);
+        ChunkOrderWalker segments = new ChunkOrderWalker(45, 91, -3, 11, 3);
+        long start;
+        while ((start = segments.nextSegment()) >= 0) {
+            int length = segments.segmentLength();
+            assertTrue(length > 0);
+            assertEquals(start / 91, (start + length - 1) / 91, "segment stays in one row");
+            for (int i = 0; i < length; i++) {
+                assertEquals(cells.next(), start + i);
+            }
+        }
+        assertEquals(-1, cells.next());
+    }
+}
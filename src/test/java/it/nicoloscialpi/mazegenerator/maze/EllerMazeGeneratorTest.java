@@ -0,0 +1,39 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static it.nicoloscialpi.mazegenerator.maze.MazeTestSupport.assertPerfectMaze;
+import static it.nicoloscialpi.mazegenerator.maze.MazeTestSupport.drain;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EllerMazeGeneratorTest {
+
+    @Test
+    void producesPerfectMaze() {
+        EllerMazeGenerator generator = new EllerMazeGenerator(151, 97, 0, 0.0, false, 0, 0, false, new SplittableRandom(3L));
+        assertPerfectMaze(drain(generator, 151, 97));
+        assertEquals(generator.getTotalCells(), generator.getEmittedCount(), "every cell is emitted exactly once");
+    }
+
+    @Test
+    void emitsExitsHolesAndRoom() {
+        EllerMazeGenerator generator = new EllerMazeGenerator(61, 61, 2, 0.2, true, 7, 7, true, new SplittableRandom(11L));
+        byte[][] grid = drain(generator, 61, 61);
+        int exits = 0;
+        int holes = 0;
+        int rooms = 0;
+        for (byte[] row : grid) {
+            for (byte type : row) {
+                if (type == MazeGenerator.EXIT) exits++;
+                if (type == MazeGenerator.HOLE) holes++;
+                if (type == MazeGenerator.ROOM) rooms++;
+            }
+        }
+        assertTrue(exits >= 1 && exits <= 3, "expected up to 3 exits but got " + exits);
+        assertTrue(holes > 0, "erosion should open holes");
+        assertEquals(49, rooms);
+    }
+}
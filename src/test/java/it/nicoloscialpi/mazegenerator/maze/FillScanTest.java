@@ -0,0 +1,98 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FillScanTest {
+
+    /**
+     * Runs a single-pass build the way the placer's getJobs calls do: carve a slice per call, and once carving is
+     * exhausted place runs in the same call until the scan is complete.
+     * @return placed type per cell, -1 where a cell was never placed
+     */
+    private static byte[] singlePassBuild(MazeAlgorithm generator, MazeGrid carved, ChunkOrderWalker order, int batch) {
+        FillScan fill = new FillScan(carved, order);
+        byte[] placed = new byte[(int) carved.getCellCount()];
+        Arrays.fill(placed, (byte) -1);
+        int[] buffer = new int[batch * 3];
+        boolean carvingDone = false;
+        int calls = 0;
+        while (generator.isPending() || !fill.isComplete()) {
+            assertTrue(++calls < 1_000_000, "build never ends");
+            if (!carvingDone) {
+                int count = generator.pollNextCells(buffer, batch);
+                if (carved != generator.getGrid()) {
+                    for (int i = 0; i < count * 3; i += 3) {
+                        carved.set(buffer[i], buffer[i + 1], (byte) buffer[i + 2]);
+                    }
+                }
+                if (count > 0 || !generator.isComplete()) {
+                    continue;
+                }
+                carvingDone = true;
+            }
+            int collected = 0;
+            while (collected < batch && fill.next(false, batch - collected)) {
+                for (long i = fill.runStart(); i < fill.runStart() + fill.runLength(); i++) {
+                    assertEquals(-1, placed[(int) i], "cell placed twice: " + i);
+                    placed[(int) i] = fill.runType();
+                }
+                collected += fill.runLength();
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Placement only tells walls from open cells, so a run of open cells may mix carved types.
+     */
+    private static void assertEveryCellPlaced(byte[] placed, MazeGrid carved) {
+        for (int i = 0; i < placed.length; i++) {
+            assertTrue(placed[i] >= 0, "cell never placed: " + i);
+            assertEquals(carved.isOpen(i), placed[i] != MazeGenerator.WALL, "cell " + i);
+        }
+    }
+
+    @Test
+    void singlePassBuildPlacesEveryCellInRowMajorOrder() {
+        MazeAlgorithm generator = MazeAlgorithmType.BACKTRACKER.create(61, 47, 2, 0.02, true, 5, 7, true, new SplittableRandom(3));
+        MazeGrid carved = generator.getGrid();
+        byte[] placed = singlePassBuild(generator, carved, null, 64);
+        assertEveryCellPlaced(placed, carved);
+        assertTrue(carved.countOpen() > 0);
+    }
+
+    @Test
+    void singlePassBuildPlacesEveryCellInChunkOrder() {
+        MazeAlgorithm generator = MazeAlgorithmType.KRUSKAL.create(75, 33, 0, 0.0, false, 0, 0, true, new SplittableRandom(8));
+        // Engines without their own grid are carved into a separate one, as the placer does
+        MazeGrid carved = generator.getGrid() != null ? generator.getGrid() : new MazeGrid(75, 33);
+        byte[] placed = singlePassBuild(generator, carved, new ChunkOrderWalker(75, 33, -5, 9, 3), 17);
+        assertEveryCellPlaced(placed, carved);
+    }
+
+    @Test
+    void wallPassSkipsCarvedCells() {
+        MazeGrid carved = new MazeGrid(9, 40);
+        for (int c = 3; c < 35; c++) {
+            carved.set(4, c, MazeGenerator.PATH);
+        }
+        FillScan fill = new FillScan(carved, null);
+        long walls = 0;
+        while (fill.next(true, 7)) {
+            assertEquals(IncrementalMazeGenerator.WALL, fill.runType());
+            for (long i = fill.runStart(); i < fill.runStart() + fill.runLength(); i++) {
+                assertFalse(carved.isOpen(i), "carved cell in the wall pass: " + i);
+            }
+            walls += fill.runLength();
+        }
+        assertEquals(9 * 40 - 32, walls);
+        assertEquals(9 * 40, fill.position());
+    }
+}
@@ -0,0 +1,87 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class IncrementalMazeGeneratorTest {
+
+    private static List<IncrementalMazeGenerator.Cell> drain(long seed) {
+        IncrementalMazeGenerator generator = new IncrementalMazeGenerator(41, 41, 2, 0.05, true, 5, 5, true,
+                new SplittableRandom(seed));
+        List<IncrementalMazeGenerator.Cell> cells = new ArrayList<>();
+        while (!generator.isComplete()) {
+            cells.addAll(generator.pollNextCells(64));
+        }
+        return cells;
+    }
+
+    @Test
+    void sameSeedProducesSameMaze() {
+        assertEquals(drain(42L), drain(42L));
+    }
+
+    @Test
+    void differentSeedsProduceDifferentMazes() {
+        assertNotEquals(drain(1L), drain(2L));
+    }
+
+    @Test
+    void primitivePollMatchesCellPoll() {
+        IncrementalMazeGenerator generator = new IncrementalMazeGenerator(41, 41, 2, 0.05, true, 5, 5, true,
+                new SplittableRandom(42L));
+        List<IncrementalMazeGenerator.Cell> cells = new ArrayList<>();
+        int[] buffer = new int[64 * 3];
+        while (!generator.isComplete()) {
+            int count = generator.pollNextCells(buffer, 64);
+            for (int i = 0; i < count * 3; i += 3) {
+                cells.add(new IncrementalMazeGenerator.Cell(buffer[i], buffer[i + 1], (byte) buffer[i + 2]));
+            }
+        }
+        assertEquals(drain(42L), cells);
+    }
+
+    @Test
+    void primitivePollDoesNotAllocatePerCell() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported(), "thread allocation measurement is not available");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int[] buffer = new int[256 * 3];
+        // Warm up so the measured run is compiled code
+        for (int i = 0; i < 3; i++) {
+            streamAll(newLargeGenerator(i), buffer);
+        }
+
+        IncrementalMazeGenerator generator = newLargeGenerator(99L);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        long cells = streamAll(generator, buffer);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        double bytesPerCell = (double) allocated / cells;
+        System.out.printf("backtracker: %d cells, %d bytes allocated (%.4f B/cell)%n", cells, allocated, bytesPerCell);
+        assertTrue(bytesPerCell < 0.05, "carving allocated " + bytesPerCell + " bytes per cell");
+    }
+
+    private static IncrementalMazeGenerator newLargeGenerator(long seed) {
+        // 501x501 is about 250k cells, enough that even a few bytes per cell would stand out over the fixed
+        // per-run allocations, while a run still takes well under a second
+        return new IncrementalMazeGenerator(501, 501, 4, 0.02, true, 9, 9, true, new SplittableRandom(seed));
+    }
+
+    private static long streamAll(MazeAlgorithm generator, int[] buffer) {
+        long cells = 0;
+        while (!generator.isComplete()) {
+            cells += generator.pollNextCells(buffer, 256);
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,62 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static it.nicoloscialpi.mazegenerator.maze.MazeTestSupport.assertPerfectMaze;
+import static it.nicoloscialpi.mazegenerator.maze.MazeTestSupport.drain;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MazeAlgorithmTypeTest {
+
+    private static final int[] SIZE_CLASSES = {101, 501, 2001};
+
+    @Test
+    void everyEngineProducesPerfectMaze() {
+        for (MazeAlgorithmType type : MazeAlgorithmType.values()) {
+            MazeAlgorithm algorithm = type.create(121, 87, 0, 0.0, false, 0, 0, false, new SplittableRandom(5L));
+            assertPerfectMaze(drain(algorithm, 121, 87));
+        }
+    }
+
+    @Test
+    void kruskalRejectsSizesItsArraysCannotHold() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new KruskalMazeGenerator(
+                100_001, 100_001, 0, 0.0, false, 0, 0, false, new SplittableRandom(1L)));
+        assertTrue(e.getMessage().contains("kruskal"), e.getMessage());
+    }
+
+    /**
+     * Same harness for every engine: full generation time per size class, including streaming all cells out.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkEnginesPerSizeClass() {
+        for (int size : SIZE_CLASSES) {
+            for (MazeAlgorithmType type : MazeAlgorithmType.values()) {
+                // Warm-up run so the timed run is not dominated by JIT compilation
+                run(type, size, 1L);
+                long start = System.nanoTime();
+                long cells = run(type, size, 2L);
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%-12s %5dx%-5d %7dms  %6.1f Mcells/s%n", type.getKey(), size, size,
+                        nanos / 1_000_000L, cells * 1000.0 / Math.max(1, nanos));
+            }
+        }
+    }
+
+    private static long run(MazeAlgorithmType type, int size, long seed) {
+        MazeAlgorithm algorithm = type.create(size, size, 1, 0.01, true, 5, 5, true, new SplittableRandom(seed));
+        long cells = 0;
+        while (!algorithm.isComplete()) {
+            cells += algorithm.pollNextCells(4096).size();
+            if (algorithm.isPending()) {
+                Thread.onSpinWait();
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,99 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MazeGridTest {
+
+    @Test
+    void storesEveryCellTypeInThreeBits() {
+        MazeGrid grid = new MazeGrid(7, 9);
+        byte[] types = {MazeGenerator.WALL, MazeGenerator.PATH, MazeGenerator.EXIT, MazeGenerator.HOLE, MazeGenerator.ROOM};
+        for (int i = 0; i < grid.getCellCount(); i++) {
+            grid.set(i, types[i % types.length]);
+        }
+        for (int i = 0; i < grid.getCellCount(); i++) {
+            assertEquals(types[i % types.length], grid.get(i));
+            assertEquals(types[i % types.length] != MazeGenerator.WALL, grid.isOpen(i));
+        }
+        grid.set(1, MazeGenerator.WALL);
+        assertFalse(grid.isOpen(1));
+        assertEquals(3 * 1L, MazeGrid.wordsFor(63));
+    }
+
+    @Test
+    void scansCrossWordBoundaries() {
+        MazeGrid grid = new MazeGrid(13, 17); // 221 cells, 4 words per plane
+        assertEquals(-1, grid.nextOpen(0));
+        assertEquals(0, grid.nextWall(0));
+        grid.set(70L, MazeGenerator.PATH);
+        grid.set(200L, MazeGenerator.ROOM);
+        assertEquals(70, grid.nextOpen(0));
+        assertEquals(200, grid.nextOpen(71));
+        assertEquals(-1, grid.nextOpen(201));
+        assertEquals(2, grid.countOpen());
+
+        for (long i = 0; i < grid.getCellCount(); i++) {
+            if (i != 150) grid.set(i, MazeGenerator.PATH);
+        }
+        assertEquals(150, grid.nextWall(0));
+        // Bits past the last cell in the final word never count as walls
+        assertEquals(-1, grid.nextWall(151));
+        // Bounded scans stop before "to"
+        assertEquals(150, grid.nextWall(10, 151));
+        assertEquals(-1, grid.nextWall(10, 150));
+        assertEquals(-1, grid.nextOpen(150, 151));
+        assertEquals(151, grid.nextOpen(150, 1000));
+    }
+
+    @Test
+    void directBackingMatchesHeap() {
+        SplittableRandom random = new SplittableRandom(7L);
+        MazeGrid heap = new MazeGrid(101, 101);
+        try (MazeGrid direct = new MazeGrid(101, 101, DirectWordStore::new)) {
+            for (int i = 0; i < 5000; i++) {
+                long index = random.nextLong(heap.getCellCount());
+                byte type = (byte) random.nextInt(5);
+                heap.set(index, type);
+                direct.set(index, type);
+            }
+            byte[][] expected = heap.toArray();
+            byte[][] actual = direct.toArray();
+            for (int r = 0; r < 101; r++) {
+                assertArrayEquals(expected[r], actual[r]);
+            }
+            assertEquals(heap.countOpen(), direct.countOpen());
+            assertTrue(heap.countOpen() > 0);
+        }
+    }
+
+    @Test
+    void mappedBackingCarvesAndDeletesItsFiles() throws IOException {
+        Path dir = Files.createTempDirectory("maze-grid");
+        int[] counter = {0};
+        IncrementalMazeGenerator generator = new IncrementalMazeGenerator(301, 301, 2, 0.02, true, 7, 7, true,
+                new SplittableRandom(5L), words -> new MappedWordStore(dir.resolve(MappedWordStore.FILE_PREFIX + counter[0]++), words));
+        IncrementalMazeGenerator reference = new IncrementalMazeGenerator(301, 301, 2, 0.02, true, 7, 7, true,
+                new SplittableRandom(5L));
+        byte[][] mapped = MazeTestSupport.drain(generator, 301, 301);
+        byte[][] heap = MazeTestSupport.drain(reference, 301, 301);
+        for (int r = 0; r < 301; r++) {
+            assertArrayEquals(heap[r], mapped[r]);
+        }
+        assertEquals(2, counter[0]); // grid and carving stack
+        generator.close();
+        try (var files = Files.list(dir)) {
+            assertEquals(0L, files.count());
+        }
+        Files.delete(dir);
+    }
+}
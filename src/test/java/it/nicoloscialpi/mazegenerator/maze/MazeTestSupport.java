@@ -0,0 +1,71 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import java.util.ArrayDeque;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Shared helpers for maze algorithm tests.
+ */
+final class MazeTestSupport {
+
+    private MazeTestSupport() {}
+
+    /**
+     * Drains every cell of the algorithm into a grid. Cells that are never emitted stay WALL.
+     */
+    static byte[][] drain(MazeAlgorithm algorithm, int sizeN, int sizeM) {
+        byte[][] grid = new byte[sizeN][sizeM];
+        while (!algorithm.isComplete()) {
+            for (IncrementalMazeGenerator.Cell cell : algorithm.pollNextCells(1024)) {
+                assertEquals(MazeGenerator.WALL, grid[cell.r()][cell.c()], "cell emitted twice at " + cell);
+                grid[cell.r()][cell.c()] = cell.type();
+            }
+            if (algorithm.isPending()) {
+                Thread.onSpinWait();
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Asserts that the open cells form a perfect maze: every unit (odd, odd) cell is open, all of them
+     * are connected, and there are no loops (passages == units - 1).
+     */
+    static void assertPerfectMaze(byte[][] grid) {
+        int sizeN = grid.length;
+        int sizeM = grid[0].length;
+        long units = 0;
+        long passages = 0;
+        for (int r = 1; r < sizeN - 1; r += 2) {
+            for (int c = 1; c < sizeM - 1; c += 2) {
+                assertTrue(grid[r][c] != MazeGenerator.WALL, "unit cell is not carved at " + r + "," + c);
+                units++;
+                if (c + 2 < sizeM - 1 && grid[r][c + 1] != MazeGenerator.WALL) passages++;
+                if (r + 2 < sizeN - 1 && grid[r + 1][c] != MazeGenerator.WALL) passages++;
+            }
+        }
+        assertEquals(units - 1, passages, "a perfect maze has exactly units - 1 passages");
+
+        boolean[][] seen = new boolean[sizeN][sizeM];
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{1, 1});
+        seen[1][1] = true;
+        long reachedUnits = 0;
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            if (cell[0] % 2 == 1 && cell[1] % 2 == 1) reachedUnits++;
+            int[][] dirs = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+            for (int[] d : dirs) {
+                int nr = cell[0] + d[0];
+                int nc = cell[1] + d[1];
+                if (nr <= 0 || nc <= 0 || nr >= sizeN - 1 || nc >= sizeM - 1) continue;
+                if (seen[nr][nc] || grid[nr][nc] == MazeGenerator.WALL) continue;
+                seen[nr][nc] = true;
+                queue.add(new int[]{nr, nc});
+            }
+        }
+        assertEquals(units, reachedUnits, "every unit cell must be reachable");
+    }
+}
@@ -0,0 +1,39 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PlacementWatermarkTest {
+
+    @Test
+    void advancesOnlyOverFullyPlacedPrefix() {
+        PlacementWatermark watermark = new PlacementWatermark(100);
+
+        PlacementWatermark.Batch first = watermark.open();
+        Runnable a = watermark.track(first);
+        Runnable b = watermark.track(first);
+        watermark.close(first, 150);
+
+        PlacementWatermark.Batch second = watermark.open();
+        Runnable c = watermark.track(second);
+        watermark.close(second, 200);
+
+        // The later batch finishing first does not move the watermark past the unfinished one
+        c.run();
+        assertEquals(100, watermark.getPlacedCells());
+        a.run();
+        assertEquals(100, watermark.getPlacedCells());
+        b.run();
+        assertEquals(200, watermark.getPlacedCells());
+    }
+
+    @Test
+    void batchesWithoutJobsCompleteWhenClosed() {
+        PlacementWatermark watermark = new PlacementWatermark(0);
+        PlacementWatermark.Batch open = watermark.open();
+        assertEquals(0, watermark.getPlacedCells(), "a batch still being filled is not placed");
+        watermark.close(open, 40);
+        assertEquals(40, watermark.getPlacedCells());
+    }
+}
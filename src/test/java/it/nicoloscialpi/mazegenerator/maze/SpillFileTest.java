@@ -0,0 +1,95 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import it.nicoloscialpi.mazegenerator.util.ChunkKeys;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillFileTest {
+
+    /**
+     * Checks the decoded piece covers the same blocks with the same cell phase; runs may come back re-anchored
+     * on a later cell of the run.
+     */
+    private static void assertSamePiece(int[] expected, int e, int[] actual, int a, int cellSize) {
+        assertEquals(expected[e], actual[a], "worldX");
+        assertEquals(expected[e + 1], actual[a + 1], "worldY");
+        assertEquals(expected[e + 3], actual[a + 3], "type");
+        assertEquals(expected[e + 4], actual[a + 4], "xFrom");
+        assertEquals(expected[e + 5], actual[a + 5], "xTo");
+        assertEquals(expected[e + 2] + expected[e + 6], actual[a + 2] + actual[a + 6], "first z block");
+        assertEquals(expected[e + 2] + expected[e + 7], actual[a + 2] + actual[a + 7], "last z block");
+        assertEquals(expected[e + 6] % cellSize, actual[a + 6] % cellSize, "z phase in the cell");
+    }
+
+    @Test
+    void bucketsComeBackInOrderInBoundedReads() throws IOException {
+        Path dir = Files.createTempDirectory("maze-spill");
+        Path file = dir.resolve(SpillFile.FILE_PREFIX + "test.bin");
+        int cellSize = 3;
+        long west = ChunkKeys.pack(-7, 4);
+        long east = ChunkKeys.pack(2, -1);
+        // A cell straddling the chunk's west edge, and a run along Z that started in the chunk before
+        int[] first = {-114, 64, 70, MazeGenerator.WALL, 2, 3, 0, 3, -112, 64, 70, MazeGenerator.PATH, 0, 3, 0, 2};
+        int[] second = {33, -60, -40, MazeGenerator.ROOM, 0, 3, 24, 40};
+        try (SpillFile spill = new SpillFile(file, 1 << 20, cellSize)) {
+            assertTrue(spill.append(west, first, first.length, "a"));
+            assertTrue(spill.append(east, second, second.length, null));
+            assertTrue(spill.hasRemaining());
+
+            int[] out = new int[SpillFile.STRIDE * 4];
+            assertTrue(spill.nextBucket());
+            assertEquals(west, spill.bucketKey());
+            assertEquals("a", spill.bucketTag());
+            assertEquals(1, spill.read(out, 1));
+            assertSamePiece(first, 0, out, 0, cellSize);
+            assertEquals(1, spill.bucketRemaining());
+            assertEquals(1, spill.read(out, 10));
+            assertSamePiece(first, SpillFile.STRIDE, out, 0, cellSize);
+
+            // Appending while reading keeps the order
+            int[] third = {-100, 64, 70, MazeGenerator.EXIT, 0, 1, 0, 1};
+            assertTrue(spill.append(west, third, third.length, "c"));
+
+            assertTrue(spill.nextBucket());
+            assertEquals(east, spill.bucketKey());
+            assertEquals(null, spill.bucketTag());
+            assertEquals(1, spill.read(out, 10));
+            assertSamePiece(second, 0, out, 0, cellSize);
+
+            assertTrue(spill.nextBucket());
+            assertEquals("c", spill.bucketTag());
+            assertEquals(1, spill.read(out, 10));
+            assertSamePiece(third, 0, out, 0, cellSize);
+
+            assertFalse(spill.nextBucket());
+            assertFalse(spill.hasRemaining());
+            assertEquals(0L, Files.size(file), "drained file is truncated");
+        }
+        assertFalse(Files.exists(file));
+        Files.delete(dir);
+    }
+
+    @Test
+    void refusesWhatDoesNotFit() throws IOException {
+        Path dir = Files.createTempDirectory("maze-spill");
+        Path file = dir.resolve(SpillFile.FILE_PREFIX + "test.bin");
+        int[] piece = {16, 64, 16, MazeGenerator.WALL, 0, 1, 0, 1};
+        try (SpillFile spill = new SpillFile(file, SpillFile.HEADER_BYTES + SpillFile.RECORD_BYTES, 1)) {
+            assertTrue(spill.append(ChunkKeys.pack(1, 1), piece, piece.length, null));
+            assertFalse(spill.append(ChunkKeys.pack(1, 1), piece, piece.length, null), "over the size limit");
+        }
+        try (SpillFile spill = new SpillFile(file, 1 << 20, 40_000)) {
+            int[] far = {16 - 39_999, 64, 16, MazeGenerator.WALL, 39_999, 40_000, 0, 1};
+            assertFalse(spill.append(ChunkKeys.pack(1, 1), far, far.length, null), "origin too far from its chunk");
+            assertFalse(spill.hasRemaining());
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,66 @@
+package it.nicoloscialpi.mazegenerator.maze;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static it.nicoloscialpi.mazegenerator.maze.MazeTestSupport.assertPerfectMaze;
+import static it.nicoloscialpi.mazegenerator.maze.MazeTestSupport.drain;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TiledMazeGeneratorTest {
+
+    @Test
+    void stitchedTilesFormPerfectMaze() {
+        TiledMazeGenerator generator = new TiledMazeGenerator(301, 257, 0, 0.0, false, 0, 0, false,
+                new SplittableRandom(7L), ForkJoinPool.commonPool(), 16);
+        assertPerfectMaze(drain(generator, 301, 257));
+    }
+
+    @Test
+    void sameSeedIsReproducibleAcrossPoolSizes() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            byte[][] a = drain(new TiledMazeGenerator(121, 121, 2, 0.05, true, 9, 9, true,
+                    new SplittableRandom(99L), single, 16), 121, 121);
+            byte[][] b = drain(new TiledMazeGenerator(121, 121, 2, 0.05, true, 9, 9, true,
+                    new SplittableRandom(99L), ForkJoinPool.commonPool(), 16), 121, 121);
+            for (int r = 0; r < a.length; r++) {
+                assertArrayEquals(a[r], b[r]);
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    /**
+     * Prints carving time per pool size. Timing depends on the machine, so only a clear slowdown fails it.
+     */
+    @Test
+    @Tag("benchmark")
+    void carvingSpeedupAgainstCoreCount() {
+        int size = 4001; // 2000 x 2000 unit cells
+        int cores = Runtime.getRuntime().availableProcessors();
+        long baseline = 0;
+        long best = Long.MAX_VALUE;
+        for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                long start = System.nanoTime();
+                new TiledMazeGenerator(size, size, 0, 0.0, false, 0, 0, false,
+                        new SplittableRandom(1L), pool, TiledMazeGenerator.DEFAULT_TILE_SIZE).awaitCarved();
+                long millis = (System.nanoTime() - start) / 1_000_000L;
+                if (parallelism == 1) baseline = Math.max(1, millis);
+                best = Math.min(best, millis);
+                System.out.printf("Tiled carving %dx%d on %d thread(s): %dms (speedup %.2fx)%n",
+                        size, size, parallelism, millis, (double) baseline / Math.max(1, millis));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        assertTrue(best <= baseline * 3 / 2, "more threads made carving slower: best " + best + "ms vs " + baseline + "ms on one");
+    }
+}
@@ -0,0 +1,97 @@
+package it.nicoloscialpi.mazegenerator.ownership;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OwnershipBitsetTest {
+
+    @Test
+    void marksSurviveEncodeAndDecode() {
+        OwnershipBitset owned = new OwnershipBitset();
+        owned.mark(0, 64, 0);
+        owned.mark(15, 67, 15);
+        owned.mark(7, -20, 3); // grows the layer range downwards
+
+        OwnershipBitset decoded = OwnershipBitset.decode(owned.encode());
+        assertTrue(decoded.contains(0, 64, 0));
+        assertTrue(decoded.contains(15, 67, 15));
+        assertTrue(decoded.contains(7, -20, 3));
+        assertFalse(decoded.contains(1, 64, 0));
+        assertFalse(decoded.contains(0, 65, 0));
+        assertFalse(decoded.contains(0, 300, 0));
+        assertFalse(decoded.contains(0, -64, 0));
+    }
+
+    @Test
+    void orMergesDisjointLayerRanges() {
+        OwnershipBitset low = new OwnershipBitset();
+        low.mark(2, 10, 2);
+        OwnershipBitset high = new OwnershipBitset();
+        high.mark(3, 90, 4);
+
+        OwnershipBitset merged = new OwnershipBitset();
+        merged.or(high);
+        merged.or(low);
+        assertTrue(merged.contains(2, 10, 2));
+        assertTrue(merged.contains(3, 90, 4));
+        assertFalse(merged.contains(2, 50, 2));
+    }
+
+    @Test
+    void andNotClearsOnlyOverlappingLayers() {
+        OwnershipBitset owned = new OwnershipBitset();
+        owned.mark(1, 64, 1);
+        owned.mark(2, 64, 2);
+        owned.mark(1, 70, 1);
+        OwnershipBitset removed = new OwnershipBitset();
+        removed.mark(1, 64, 1);
+        removed.mark(5, 20, 5); // below every owned layer
+
+        owned.andNot(removed);
+        assertFalse(owned.contains(1, 64, 1));
+        assertTrue(owned.contains(2, 64, 2));
+        assertTrue(owned.contains(1, 70, 1));
+
+        owned.andNot(owned);
+        assertTrue(owned.isEmpty());
+    }
+
+    @Test
+    void solidMazeColumnsCompressWell() {
+        OwnershipBitset owned = new OwnershipBitset();
+        for (int y = 64; y < 68; y++) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    owned.mark(x, y, z);
+                }
+            }
+        }
+        byte[] encoded = owned.encode();
+        assertTrue(encoded.length < 64, "encoded size " + encoded.length);
+        assertEquals(4 * 256, countMarked(OwnershipBitset.decode(encoded)));
+    }
+
+    @Test
+    void rejectsForeignData() {
+        assertThrows(IllegalArgumentException.class, () -> OwnershipBitset.decode(new byte[]{42, 0, 0, 0}));
+        assertTrue(OwnershipBitset.decode(new OwnershipBitset().encode()).isEmpty());
+    }
+
+    private static int countMarked(OwnershipBitset owned) {
+        int count = 0;
+        for (int y = 60; y < 72; y++) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    if (owned.contains(x, y, z)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+}
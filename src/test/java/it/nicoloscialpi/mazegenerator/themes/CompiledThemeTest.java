@@ -0,0 +1,99 @@
+package it.nicoloscialpi.mazegenerator.themes;
+
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledThemeTest {
+
+    @Test
+    void aliasSamplerFollowsWeights() {
+        long[] weights = {1, 3, 0, 12};
+        AliasSampler sampler = new AliasSampler(new int[]{0, 1, 2, 3}, weights);
+        SplittableRandom random = new SplittableRandom(7);
+        int draws = 160_000;
+        int[] counts = new int[4];
+        for (int i = 0; i < draws; i++) {
+            counts[sampler.sample(random)]++;
+        }
+        assertEquals(0, counts[2], "zero weight is never drawn");
+        for (int i = 0; i < weights.length; i++) {
+            double expected = draws * weights[i] / 16.0;
+            assertTrue(Math.abs(counts[i] - expected) <= 0.03 * draws, "outcome " + i + ": " + counts[i] + " vs " + expected);
+        }
+    }
+
+    @Test
+    void aliasSamplerRejectsEmptyWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new int[0], new long[0]));
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new int[]{1}, new long[]{0}));
+    }
+
+    @Test
+    void paletteStartsWithAirAndEmptySectionsFallBackToStone() {
+        Theme theme = new Theme();
+        theme.addFloorMaterialWeight(Material.DIRT, 5);
+        theme.addWallMaterialWeight(Material.DIRT, 1);
+        CompiledTheme compiled = CompiledTheme.compile(theme, material -> null);
+
+        assertEquals(Material.AIR, compiled.material(CompiledTheme.AIR));
+        assertEquals(3, compiled.paletteSize());
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Material.DIRT, compiled.material(compiled.floor(random)));
+            assertEquals(Material.DIRT, compiled.material(compiled.wall(random)));
+            assertEquals(Material.STONE, compiled.material(compiled.top(random)));
+        }
+    }
+
+    @Test
+    void weightsIterateInMaterialOrder() {
+        Theme theme = new Theme();
+        theme.addFloorMaterialWeight(Material.DIRT, 1);
+        theme.addFloorMaterialWeight(Material.STONE, 1);
+        theme.addFloorMaterialWeight(Material.SAND, 1);
+        assertEquals(List.of(Material.STONE, Material.SAND, Material.DIRT), List.copyOf(theme.getFloorMaterialWeights().keySet()));
+    }
+
+    @Test
+    void paletteAndPicksDoNotDependOnInsertionOrder() {
+        Theme forward = new Theme();
+        Theme backward = new Theme();
+        Material[] materials = {Material.STONE, Material.SAND, Material.GRASS_BLOCK, Material.DIRT};
+        for (int i = 0; i < materials.length; i++) {
+            forward.addWallMaterialWeight(materials[i], i + 1);
+            Material last = materials[materials.length - 1 - i];
+            backward.addWallMaterialWeight(last, materials.length - i);
+        }
+        CompiledTheme a = CompiledTheme.compile(forward, material -> null);
+        CompiledTheme b = CompiledTheme.compile(backward, material -> null);
+        assertEquals(a.paletteSize(), b.paletteSize());
+        for (int i = 0; i < a.paletteSize(); i++) {
+            assertEquals(a.material(i), b.material(i));
+        }
+        SplittableRandom ra = new SplittableRandom(5);
+        SplittableRandom rb = new SplittableRandom(5);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.wall(ra), b.wall(rb));
+        }
+    }
+
+    @Test
+    void samePickSequenceForSameSeed() {
+        Theme theme = new Theme();
+        theme.addWallMaterialWeight(Material.STONE, 2);
+        theme.addWallMaterialWeight(Material.SAND, 1);
+        theme.addWallMaterialWeight(Material.DIRT, 1);
+        SplittableRandom a = new SplittableRandom(99);
+        SplittableRandom b = new SplittableRandom(99);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(theme.getRandomWallMaterial(a), theme.getRandomWallMaterial(b));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package it.nicoloscialpi.mazegenerator.undo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PalettedVolumeTest {
+
+    private static String terrain(int x, int y, int z) {
+        if (y < 62) {
+            return "minecraft:stone";
+        }
+        if (y == 62) {
+            return (x + z) % 5 == 0 ? "minecraft:dirt" : "minecraft:grass_block[snowy=false]";
+        }
+        return "minecraft:air";
+    }
+
+    private static PalettedVolume roundTrip(PalettedVolume volume) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        volume.write(new DataOutputStream(bytes));
+        return PalettedVolume.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    void blocksSurviveWriteAndRead() throws IOException {
+        PalettedVolume volume = PalettedVolume.capture(-3, 7, 2, 13, 60, 66, 0, 16, PalettedVolumeTest::terrain);
+        assertEquals(2, volume.bitsPerBlock(), "4 states");
+
+        PalettedVolume decoded = roundTrip(volume);
+        assertEquals(-3, decoded.getChunkX());
+        assertEquals(7, decoded.getChunkZ());
+        assertEquals(11 * 6 * 16, decoded.size());
+        String[] palette = decoded.getPalette();
+        for (int i = 0; i < decoded.size(); i++) {
+            int x = decoded.x(i);
+            int y = decoded.y(i);
+            int z = decoded.z(i);
+            assertEquals(terrain(x, y, z), palette[decoded.paletteIndex(i)], x + "," + y + "," + z);
+        }
+        assertEquals(2, decoded.x(0));
+        assertEquals(60, decoded.y(0));
+        assertEquals(12, decoded.x(decoded.size() - 1));
+        assertEquals(65, decoded.y(decoded.size() - 1));
+        assertEquals(15, decoded.z(decoded.size() - 1));
+    }
+
+    @Test
+    void usesAsFewBitsAsThePaletteNeeds() throws IOException {
+        PalettedVolume uniform = PalettedVolume.capture(0, 0, 0, 16, 0, 4, 0, 16, (x, y, z) -> "minecraft:water");
+        assertEquals(1, uniform.bitsPerBlock());
+        PalettedVolume water = roundTrip(uniform);
+        assertEquals("minecraft:water", water.getPalette()[water.paletteIndex(water.size() - 1)]);
+
+        // 20 states need 5 bits, so 12 entries per long and none straddling two
+        PalettedVolume varied = PalettedVolume.capture(0, 0, 0, 16, 0, 1, 0, 16, (x, y, z) -> "s" + (x + z) % 20);
+        assertEquals(5, varied.bitsPerBlock());
+        PalettedVolume decoded = roundTrip(varied);
+        String[] palette = decoded.getPalette();
+        for (int i = 0; i < decoded.size(); i++) {
+            assertEquals("s" + (decoded.x(i) + decoded.z(i)) % 20, palette[decoded.paletteIndex(i)]);
+        }
+        assertEquals(20, Arrays.stream(palette).distinct().count());
+    }
+
+    @Test
+    void rejectsCorruptData() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PalettedVolume.capture(1, 1, 0, 4, 0, 4, 0, 4, PalettedVolumeTest::terrain).write(new DataOutputStream(bytes));
+        byte[] data = bytes.toByteArray();
+        assertThrows(IOException.class, () -> PalettedVolume.read(new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 3))));
+        data[9] = 17; // x end past the chunk
+        assertThrows(IOException.class, () -> PalettedVolume.read(new DataInputStream(new ByteArrayInputStream(data))));
+    }
+}